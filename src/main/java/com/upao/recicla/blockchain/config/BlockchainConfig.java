@@ -1,5 +1,7 @@
 package com.upao.recicla.blockchain.config;
 
+import com.upao.recicla.blockchain.rpc.MultiEndpointService;
+import com.upao.recicla.blockchain.simulator.SimulatedChainService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -7,10 +9,10 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.web3j.crypto.Credentials;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
 import org.web3j.protocol.http.HttpService;
-import org.web3j.tx.gas.StaticGasProvider;
 
-import java.math.BigInteger;
+import java.util.List;
 
 @Configuration
 @ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true", matchIfMissing = false)
@@ -20,22 +22,49 @@ public class BlockchainConfig {
     @Value("${blockchain.rpc-url}")
     private String rpcUrl;
 
+    @Value("${blockchain.rpc-urls:}")
+    private List<String> rpcUrls;
+
+    @Value("${blockchain.rpc.timeout-ms:30000}")
+    private long rpcTimeoutMs;
+
+    @Value("${blockchain.rpc.hedge-minimo-ms:50}")
+    private long rpcHedgeMinimoMs;
+
+    @Value("${blockchain.rpc.hedge-maximo-ms:2000}")
+    private long rpcHedgeMaximoMs;
+
     @Value("${blockchain.backend-private-key}")
     private String privateKey;
 
     @Value("${blockchain.token-address}")
     private String tokenAddress;
 
-    @Value("${blockchain.gas-price:20000000000}")
-    private String gasPrice;
+    @Value("${blockchain.chain-id:31337}")
+    private long chainId;
+
+    @Value("${blockchain.simulator.block-time-ms:0}")
+    private long simBlockTimeMs;
+
+    @Value("${blockchain.simulator.latencia-ms:0}")
+    private long simLatenciaMs;
+
+    @Value("${blockchain.simulator.jitter-ms:0}")
+    private long simJitterMs;
+
+    @Value("${blockchain.simulator.tasa-fallos-red:0}")
+    private double simTasaFallosRed;
 
-    @Value("${blockchain.gas-limit:3000000}")
-    private String gasLimit;
+    @Value("${blockchain.simulator.tasa-errores:0}")
+    private double simTasaErrores;
+
+    @Value("${blockchain.simulator.historial-bloques:128}")
+    private int simHistorialBloques;
 
     @Bean
     public Web3j web3j() {
-        log.info("🔗 Conectando a blockchain en: {}", rpcUrl);
-        Web3j web3j = Web3j.build(new HttpService(rpcUrl));
+        log.info("🔗 Conectando a blockchain en: {}", rpcUrls.size() > 1 ? rpcUrls.size() + " nodos" : rpcUrl);
+        Web3j web3j = Web3j.build(web3jService());
 
         try {
             String clientVersion = web3j.web3ClientVersion().send().getWeb3ClientVersion();
@@ -47,20 +76,28 @@ public class BlockchainConfig {
         return web3j;
     }
 
+    /**
+     * HTTP hacia el nodo configurado, varios nodos con failover si se define
+     * blockchain.rpc-urls, o la cadena simulada en memoria si la URL usa el
+     * esquema sim:// (pruebas y benchmarks sin red)
+     */
+    private Web3jService web3jService() {
+        if (rpcUrls.size() > 1) {
+            return new MultiEndpointService(rpcUrls, rpcTimeoutMs, rpcHedgeMinimoMs, rpcHedgeMaximoMs);
+        }
+        if (rpcUrl.startsWith(SimulatedChainService.ESQUEMA)) {
+            return new SimulatedChainService(tokenAddress, chainId, simBlockTimeMs, simLatenciaMs, simJitterMs,
+                    simTasaFallosRed, simTasaErrores, simHistorialBloques);
+        }
+        return new HttpService(rpcUrl);
+    }
+
     @Bean
     public Credentials backendCredentials() {
         log.info("🔑 Cargando credenciales del backend");
         return Credentials.create(privateKey);
     }
 
-    @Bean
-    public StaticGasProvider gasProvider() {
-        return new StaticGasProvider(
-                new BigInteger(gasPrice),
-                new BigInteger(gasLimit)
-        );
-    }
-
     @Bean
     public String tokenContractAddress() {
         return tokenAddress;
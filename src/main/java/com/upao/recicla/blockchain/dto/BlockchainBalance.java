@@ -16,4 +16,7 @@ public class BlockchainBalance {
     private BigDecimal totalEarned;
     private BigDecimal totalSpent;
     private boolean isWhitelisted;
+    // Bloque en el que el balance es válido y antigüedad de esa confirmación
+    private Long blockNumber;
+    private Long stalenessMs;
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.upao.recicla.blockchain.dto;
+
+import com.upao.recicla.domain.entity.TipoMovimientoToken;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * REC acuñados o quemados en un día para un material
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BucketTokens {
+    private LocalDate fecha;
+    private TipoMovimientoToken tipo;
+    private String material;
+    private BigDecimal cantidad;
+    private Long eventos;
+}
@@ -0,0 +1,28 @@
+package com.upao.recicla.blockchain.dto;
+
+import com.upao.recicla.domain.entity.EstadoPropuesta;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Transición de estado de una propuesta, emitida por el stream SSE de
+ * propuestas
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CambioEstadoPropuesta {
+    private Long actividadId;
+    private EstadoPropuesta estado;
+    private Integer aprobaciones;
+    private Integer aprobacionesRequeridas;
+    private String tipoMaterial;
+    private String usuarioWallet;
+    private String transactionHash;
+    private Long blockNumber;
+    // true si el cambio revierte estado tras una reorganización de la cadena
+    private boolean reorganizacion;
+}
@@ -0,0 +1,18 @@
+package com.upao.recicla.blockchain.dto;
+
+import lombok.Data;
+
+import jakarta.validation.constraints.NotNull;
+
+@Data
+public class DecisionActividad {
+
+    @NotNull(message = "ID de la actividad es requerido")
+    private Long actividadId;
+
+    @NotNull(message = "Decisión (aprobar) es requerida")
+    private Boolean aprobar;
+
+    // Obligatoria cuando aprobar = false
+    private String razon;
+}
@@ -0,0 +1,21 @@
+package com.upao.recicla.blockchain.dto;
+
+import lombok.Data;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Data
+public class DecisionLoteRequest {
+
+    @NotBlank(message = "Wallet del validador es requerido")
+    private String validadorWallet;
+
+    @NotBlank(message = "Private key del validador es requerida")
+    private String validadorPrivateKey;
+
+    @NotEmpty(message = "Debe indicar al menos una decisión")
+    private List<@Valid DecisionActividad> decisiones;
+}
@@ -0,0 +1,23 @@
+package com.upao.recicla.blockchain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cola de transacciones del backend enviadas y aún no minadas
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadoTransaccionesPendientes {
+    private String direccion;
+    private int pendientes;
+    private int atascadas;
+    private Long nonceMasAntiguo;
+    private long edadMaximaMs;
+    private long siguienteNonce;
+    private long reemplazosTotales;
+}
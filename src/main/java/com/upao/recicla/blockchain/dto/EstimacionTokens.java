@@ -0,0 +1,25 @@
+package com.upao.recicla.blockchain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Tokens que el contrato calcularía para una actividad, según la réplica
+ * local de ratesPorMaterial
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstimacionTokens {
+    private String tipoMaterial;
+    private Integer pesoKg;
+    private BigDecimal ratePorKg;
+    private BigDecimal tokensEstimados;
+    // Bloque hasta el que la réplica de rates está al día
+    private Long blockNumber;
+}
@@ -0,0 +1,24 @@
+package com.upao.recicla.blockchain.dto;
+
+import com.upao.recicla.domain.entity.EstadoTransaccion;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de una decisión de un lote de aprobaciones/rechazos. Se emite
+ * PENDIENTE al enviar la transacción y CONFIRMADA/FALLIDA al conocer el recibo.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultadoDecision {
+    private Long actividadId;
+    private boolean aprobar;
+    private EstadoTransaccion estado;
+    private String transactionHash;
+    private Long blockNumber;
+    private String errorMessage;
+}
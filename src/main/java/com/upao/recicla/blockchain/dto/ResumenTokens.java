@@ -0,0 +1,29 @@
+package com.upao.recicla.blockchain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Totales de REC acuñados y quemados en un rango de días
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumenTokens {
+    private LocalDate desde;
+    private LocalDate hasta;
+    private BigDecimal acunados;
+    private BigDecimal quemados;
+    private Long eventos;
+    private Map<String, BigDecimal> acunadosPorMaterial;
+    private Map<String, BigDecimal> quemadosPorMaterial;
+    // Último bloque ingerido; los eventos posteriores aún no se reflejan
+    private Long blockNumber;
+}
@@ -13,7 +13,12 @@ public class TransactionResult {
     private boolean success;
     private String transactionHash;
     private Long blockNumber;
+    private boolean pending;
     private String errorMessage;
+    // Fallo previo a difundir la transacción (sin conexión con el nodo): se puede reintentar
+    private boolean transitorio;
+    // Difundida sin respuesta del nodo: queda pendiente pero indica un nodo que no responde
+    private boolean difusionNoConfirmada;
 
     public static TransactionResult success(String txHash, Long blockNumber) {
         return TransactionResult.builder()
@@ -23,10 +28,46 @@ public class TransactionResult {
                 .build();
     }
 
+    /**
+     * Transacción enviada cuyo recibo aún no se conoce
+     */
+    public static TransactionResult pending(String txHash) {
+        return TransactionResult.builder()
+                .success(true)
+                .pending(true)
+                .transactionHash(txHash)
+                .build();
+    }
+
+    /**
+     * Transacción difundida sin que el nodo confirmase haberla recibido
+     * (timeout, error tras la difusión): pendiente con ese hash
+     */
+    public static TransactionResult difusionNoConfirmada(String txHash) {
+        return TransactionResult.builder()
+                .success(true)
+                .pending(true)
+                .difusionNoConfirmada(true)
+                .transactionHash(txHash)
+                .build();
+    }
+
     public static TransactionResult failure(String errorMessage) {
         return TransactionResult.builder()
                 .success(false)
                 .errorMessage(errorMessage)
                 .build();
     }
+
+    /**
+     * Fallo en el que la transacción no llegó a difundirse; reintentarla no
+     * puede duplicarla
+     */
+    public static TransactionResult transitorio(String errorMessage) {
+        return TransactionResult.builder()
+                .success(false)
+                .transitorio(true)
+                .errorMessage(errorMessage)
+                .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,270 @@
+package com.upao.recicla.blockchain.rpc;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import org.web3j.protocol.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cliente JSON-RPC sobre varios nodos con failover y lecturas con cobertura
+ *
+ * Lecturas: se envían al nodo de menor costo (latencia media / salud); si no
+ * responde dentro de su p95 se lanza la misma petición a un segundo nodo y se
+ * usa la primera respuesta. Un fallo pasa al siguiente nodo.
+ *
+ * Escrituras (eth_sendRawTransaction) y consultas de nonce: siempre al mismo
+ * nodo sano, para que el mempool vea las transacciones de cada wallet en
+ * orden. Si ese nodo falla se elige otro; reenviar una transacción firmada es
+ * idempotente.
+ *
+ * Rondas de sincronización ({@link #enMismoNodo}): la cabecera y los logs o
+ * bloques que se leen a partir de ella deben venir del mismo nodo; si no, un
+ * nodo retrasado puede devolver vacío un rango que otro ya minó y la ronda
+ * avanzaría sin ver sus eventos. Dentro de la ronda todas las lecturas van al
+ * primer nodo que respondió, sin cobertura; si falla, la ronda falla y se
+ * reintenta en la siguiente. Las rondas prefieren el nodo de la anterior para
+ * que las proyecciones lean del mismo nodo que verificó los bloques.
+ */
+@Slf4j
+public class MultiEndpointService extends Service {
+
+    private final List<RpcEndpoint> endpoints;
+    private final long hedgeMinimoMs;
+    private final long hedgeMaximoMs;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final ThreadLocal<Ronda> RONDA = new ThreadLocal<>();
+
+    private volatile RpcEndpoint escritor;
+    private volatile RpcEndpoint lectorRondas;
+
+    public MultiEndpointService(List<String> urls, long timeoutMs, long hedgeMinimoMs, long hedgeMaximoMs) {
+        super(false);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+        this.endpoints = urls.stream().map(url -> new RpcEndpoint(url, client)).toList();
+        this.hedgeMinimoMs = hedgeMinimoMs;
+        this.hedgeMaximoMs = hedgeMaximoMs;
+
+        log.info("🔗 RPC con {} nodos: {}", endpoints.size(),
+                endpoints.stream().map(RpcEndpoint::getNombre).toList());
+    }
+
+    @Override
+    protected InputStream performIO(String payload) throws IOException {
+        Ronda ronda = RONDA.get();
+        byte[] respuesta = esFijo(payload)
+                ? enviarFijo(payload)
+                : ronda != null ? enviarEnRonda(ronda, payload) : enviarLectura(payload);
+        return new ByteArrayInputStream(respuesta);
+    }
+
+    /**
+     * Ejecuta una ronda de lecturas (cabecera más los logs o bloques hasta
+     * ella) contra un único nodo. Con un solo nodo o el simulador no tiene
+     * efecto. Las rondas anidadas usan el nodo de la exterior.
+     */
+    public static void enMismoNodo(RondaLecturas lecturas) throws Exception {
+        if (RONDA.get() != null) {
+            lecturas.ejecutar();
+            return;
+        }
+        RONDA.set(new Ronda());
+        try {
+            lecturas.ejecutar();
+        } finally {
+            RONDA.remove();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Estado de cada nodo (para diagnóstico)
+     */
+    public List<EstadoNodo> getEstado() {
+        RpcEndpoint actual = escritor;
+        return endpoints.stream()
+                .map(endpoint -> new EstadoNodo(endpoint.getNombre(), endpoint.getSalud(),
+                        endpoint.getLatenciaMedia(), endpoint.p95(-1), endpoint.disponible(), endpoint == actual))
+                .toList();
+    }
+
+    private byte[] enviarLectura(String payload) throws IOException {
+        List<RpcEndpoint> candidatos = ordenados();
+        CompletionService<byte[]> carrera = new ExecutorCompletionService<>(executor);
+        List<Future<byte[]>> lanzadas = new ArrayList<>(2);
+        int siguiente = 0;
+        int enVuelo = 0;
+        boolean cubierta = false;
+        IOException ultimoError = null;
+
+        try {
+            lanzadas.add(carrera.submit(() -> enviar(candidatos.get(0), payload)));
+            siguiente++;
+            enVuelo++;
+
+            while (enVuelo > 0) {
+                Future<byte[]> terminada;
+                if (!cubierta && siguiente < candidatos.size()) {
+                    long espera = Math.min(hedgeMaximoMs, candidatos.get(0).p95(hedgeMaximoMs));
+                    terminada = carrera.poll(Math.max(hedgeMinimoMs, espera), TimeUnit.MILLISECONDS);
+                    if (terminada == null) {
+                        // Sin respuesta dentro del p95: cubrir con el siguiente nodo
+                        RpcEndpoint cobertura = candidatos.get(siguiente++);
+                        lanzadas.add(carrera.submit(() -> enviar(cobertura, payload)));
+                        enVuelo++;
+                        cubierta = true;
+                        continue;
+                    }
+                } else {
+                    terminada = carrera.take();
+                }
+
+                enVuelo--;
+                try {
+                    return terminada.get();
+                } catch (ExecutionException e) {
+                    ultimoError = comoIOException(e.getCause());
+                    if (enVuelo == 0 && siguiente < candidatos.size()) {
+                        RpcEndpoint respaldo = candidatos.get(siguiente++);
+                        lanzadas.add(carrera.submit(() -> enviar(respaldo, payload)));
+                        enVuelo++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Lectura RPC interrumpida");
+        } finally {
+            lanzadas.forEach(future -> future.cancel(true));
+        }
+
+        throw ultimoError != null ? ultimoError : new IOException("Ningún nodo RPC disponible");
+    }
+
+    private byte[] enviarEnRonda(Ronda ronda, String payload) throws IOException {
+        if (ronda.nodo != null) {
+            return enviar(ronda.nodo, payload);
+        }
+
+        // Primera lectura de la ronda: el nodo de la ronda anterior si sigue disponible
+        List<RpcEndpoint> candidatos = ordenados();
+        RpcEndpoint anterior = lectorRondas;
+        if (anterior != null && anterior.disponible()) {
+            candidatos.remove(anterior);
+            candidatos.add(0, anterior);
+        }
+
+        IOException ultimoError = null;
+        for (RpcEndpoint nodo : candidatos) {
+            try {
+                byte[] respuesta = enviar(nodo, payload);
+                ronda.nodo = nodo;
+                lectorRondas = nodo;
+                return respuesta;
+            } catch (IOException e) {
+                ultimoError = e;
+            }
+        }
+        throw ultimoError != null ? ultimoError : new IOException("Ningún nodo RPC disponible");
+    }
+
+    private byte[] enviarFijo(String payload) throws IOException {
+        IOException ultimoError = null;
+        for (int intento = 0; intento < endpoints.size(); intento++) {
+            RpcEndpoint nodo = nodoFijo();
+            try {
+                return enviar(nodo, payload);
+            } catch (IOException e) {
+                ultimoError = e;
+                synchronized (this) {
+                    if (escritor == nodo) {
+                        escritor = null;
+                    }
+                }
+                log.warn("⚠️ Nodo de escritura {} falló, cambiando de nodo: {}", nodo.getNombre(), e.getMessage());
+            }
+        }
+        throw ultimoError;
+    }
+
+    private synchronized RpcEndpoint nodoFijo() {
+        if (escritor == null || !escritor.disponible()) {
+            escritor = ordenados().get(0);
+            log.info("✍️ Nodo de escritura: {}", escritor.getNombre());
+        }
+        return escritor;
+    }
+
+    private byte[] enviar(RpcEndpoint nodo, String payload) throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            byte[] respuesta = nodo.enviar(payload);
+            nodo.registrarExito(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+            return respuesta;
+        } catch (IOException e) {
+            // Una cobertura cancelada no cuenta como fallo del nodo
+            if (!Thread.currentThread().isInterrupted()) {
+                nodo.registrarFallo();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Nodos disponibles ordenados por costo; si todos están apartados se
+     * prueban igualmente
+     */
+    private List<RpcEndpoint> ordenados() {
+        List<RpcEndpoint> disponibles = new ArrayList<>(endpoints.stream().filter(RpcEndpoint::disponible).toList());
+        if (disponibles.isEmpty()) {
+            disponibles.addAll(endpoints);
+        }
+        disponibles.sort(Comparator.comparingDouble(RpcEndpoint::costo));
+        return disponibles;
+    }
+
+    private static boolean esFijo(String payload) {
+        return payload.contains("\"eth_sendRawTransaction\"")
+                || payload.contains("\"eth_sendTransaction\"")
+                || payload.contains("\"eth_getTransactionCount\"");
+    }
+
+    private static IOException comoIOException(Throwable causa) {
+        return causa instanceof IOException io ? io : new IOException(causa);
+    }
+
+    @FunctionalInterface
+    public interface RondaLecturas {
+        void ejecutar() throws Exception;
+    }
+
+    private static final class Ronda {
+        private RpcEndpoint nodo;
+    }
+
+    public record EstadoNodo(String nombre, double salud, double latenciaMediaMs, long p95Ms,
+            boolean disponible, boolean escritura) {
+    }
+}
@@ -0,0 +1,120 @@
+package com.upao.recicla.blockchain.rpc;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+
+/**
+ * Nodo RPC con métricas de salud y latencia
+ *
+ * La salud es una media móvil de éxitos (1) y fallos (0). Tras varios fallos
+ * consecutivos el nodo se aparta durante un tiempo creciente. La latencia se
+ * guarda en una ventana circular para calcular el p95 usado en las lecturas
+ * con cobertura (hedging).
+ */
+class RpcEndpoint {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final int VENTANA_LATENCIAS = 128;
+    private static final int FALLOS_PARA_APARTAR = 3;
+    private static final long APARTADO_MINIMO_MS = 5_000;
+    private static final long APARTADO_MAXIMO_MS = 60_000;
+    private static final double ALFA = 0.2;
+
+    private final String url;
+    private final String nombre;
+    private final OkHttpClient client;
+
+    private final long[] latencias = new long[VENTANA_LATENCIAS];
+    private int muestras;
+    private int posicion;
+    private double latenciaMedia = -1;
+    private double salud = 1.0;
+    private int fallosConsecutivos;
+    private long apartadoHasta;
+
+    RpcEndpoint(String url, OkHttpClient client) {
+        this.url = url;
+        this.nombre = URI.create(url).getHost();
+        this.client = client;
+    }
+
+    /**
+     * Envía un payload JSON-RPC (petición o batch) y devuelve el cuerpo de la
+     * respuesta completo
+     */
+    byte[] enviar(String payload) throws IOException {
+        Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(payload, JSON))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("HTTP " + response.code() + " desde " + nombre);
+            }
+            return body.bytes();
+        }
+    }
+
+    synchronized void registrarExito(long duracionMs) {
+        latencias[posicion] = duracionMs;
+        posicion = (posicion + 1) % VENTANA_LATENCIAS;
+        muestras = Math.min(muestras + 1, VENTANA_LATENCIAS);
+        latenciaMedia = latenciaMedia < 0 ? duracionMs : ALFA * duracionMs + (1 - ALFA) * latenciaMedia;
+        salud = ALFA + (1 - ALFA) * salud;
+        fallosConsecutivos = 0;
+        apartadoHasta = 0;
+    }
+
+    synchronized void registrarFallo() {
+        salud = (1 - ALFA) * salud;
+        fallosConsecutivos++;
+        if (fallosConsecutivos >= FALLOS_PARA_APARTAR) {
+            long espera = Math.min(APARTADO_MAXIMO_MS,
+                    APARTADO_MINIMO_MS << Math.min(fallosConsecutivos - FALLOS_PARA_APARTAR, 4));
+            apartadoHasta = System.currentTimeMillis() + espera;
+        }
+    }
+
+    synchronized boolean disponible() {
+        return System.currentTimeMillis() >= apartadoHasta;
+    }
+
+    /**
+     * Costo estimado de usar el nodo: latencia media penalizada por la salud
+     * (menor es mejor). Los nodos sin muestras se prueban primero.
+     */
+    synchronized double costo() {
+        double latencia = latenciaMedia < 0 ? 0 : latenciaMedia;
+        return (latencia + 1) / Math.max(salud, 0.01);
+    }
+
+    synchronized long p95(long porDefecto) {
+        if (muestras < 10) {
+            return porDefecto;
+        }
+        long[] copia = Arrays.copyOf(latencias, muestras);
+        Arrays.sort(copia);
+        return copia[(int) Math.ceil(muestras * 0.95) - 1];
+    }
+
+    synchronized double getSalud() {
+        return salud;
+    }
+
+    synchronized double getLatenciaMedia() {
+        return latenciaMedia;
+    }
+
+    String getNombre() {
+        return nombre;
+    }
+}
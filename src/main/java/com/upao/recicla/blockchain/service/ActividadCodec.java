@@ -0,0 +1,166 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.ActividadPropuesta;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Convert;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codificación ABI precompilada de las lecturas de actividades del contrato
+ *
+ * Los selectores se calculan una sola vez y las respuestas de
+ * actividades(uint256) y getActividad(uint256) se decodifican directamente
+ * desde el hex de eth_call a {@link ActividadPropuesta}, sin construir
+ * Function, TypeReference ni los Type intermedios de web3j.
+ *
+ * Ambas tuplas comparten disposición: actividades(uint256) antepone el id.
+ * <pre>
+ * [id], usuario, pesoKg, tipoMaterial*, evidenciaIPFS*, tokensCalculados,
+ * timestamp, aprobaciones, ejecutada, rechazada, propuestoPor
+ * </pre>
+ * (*) strings dinámicos: la cabecera guarda el offset desde el inicio de la tupla.
+ */
+public final class ActividadCodec {
+
+    private static final String SELECTOR_ACTIVIDADES = selector("actividades(uint256)");
+    private static final String SELECTOR_GET_ACTIVIDAD = selector("getActividad(uint256)");
+    private static final String SELECTOR_CONTADOR = selector("actividadCounter()");
+
+    private static final int HEX_POR_PALABRA = 64;
+
+    // Posición de la primera palabra de la disposición común en cada tupla
+    private static final int INICIO_ACTIVIDADES = 1;
+    private static final int INICIO_GET_ACTIVIDAD = 0;
+    private static final int CAMPOS_COMUNES = 10;
+
+    private ActividadCodec() {
+    }
+
+    public static String llamadaActividades(BigInteger actividadId) {
+        return SELECTOR_ACTIVIDADES + Numeric.toHexStringNoPrefixZeroPadded(actividadId, HEX_POR_PALABRA);
+    }
+
+    public static String llamadaGetActividad(BigInteger actividadId) {
+        return SELECTOR_GET_ACTIVIDAD + Numeric.toHexStringNoPrefixZeroPadded(actividadId, HEX_POR_PALABRA);
+    }
+
+    public static String llamadaContador() {
+        return SELECTOR_CONTADOR;
+    }
+
+    /**
+     * Decodifica la respuesta de actividades(uint256)
+     *
+     * @return La actividad, o null si la respuesta está vacía
+     */
+    public static ActividadPropuesta decodificarActividades(long actividadId, String respuesta) {
+        return decodificar(actividadId, respuesta, INICIO_ACTIVIDADES);
+    }
+
+    /**
+     * Decodifica la respuesta de getActividad(uint256)
+     *
+     * @return La actividad, o null si la respuesta está vacía
+     */
+    public static ActividadPropuesta decodificarGetActividad(long actividadId, String respuesta) {
+        return decodificar(actividadId, respuesta, INICIO_GET_ACTIVIDAD);
+    }
+
+    /**
+     * Decodifica la respuesta de actividadCounter()
+     */
+    public static BigInteger decodificarContador(String respuesta) {
+        int base = inicioDatos(respuesta);
+        if (respuesta == null || respuesta.length() < base + HEX_POR_PALABRA) {
+            return BigInteger.ZERO;
+        }
+        return new BigInteger(respuesta.substring(base, base + HEX_POR_PALABRA), 16);
+    }
+
+    private static ActividadPropuesta decodificar(long actividadId, String hex, int inicio) {
+        int base = inicioDatos(hex);
+        if (hex == null || hex.length() < base + (inicio + CAMPOS_COMUNES) * HEX_POR_PALABRA) {
+            return null;
+        }
+
+        return ActividadPropuesta.builder()
+                .actividadId(actividadId)
+                .usuarioWallet(leerDireccion(hex, base, inicio))
+                .pesoKg((int) leerEntero(hex, base, inicio + 1))
+                .tipoMaterial(leerString(hex, base, inicio + 2))
+                .evidenciaIPFS(leerString(hex, base, inicio + 3))
+                .tokensCalculados(Convert.fromWei(leerUint256(hex, base, inicio + 4).toString(), Convert.Unit.ETHER))
+                .aprobaciones((int) leerEntero(hex, base, inicio + 6))
+                .ejecutada(leerEntero(hex, base, inicio + 7) != 0)
+                .rechazada(leerEntero(hex, base, inicio + 8) != 0)
+                .build();
+    }
+
+    /**
+     * Primeros 4 bytes del keccak256 de la firma, con prefijo 0x
+     */
+    private static String selector(String firma) {
+        return Hash.sha3String(firma).substring(0, 10);
+    }
+
+    private static int inicioDatos(String hex) {
+        return hex != null && hex.startsWith("0x") ? 2 : 0;
+    }
+
+    private static int posicion(int base, int palabra) {
+        return base + palabra * HEX_POR_PALABRA;
+    }
+
+    private static BigInteger leerUint256(String hex, int base, int palabra) {
+        int desde = posicion(base, palabra);
+        return new BigInteger(hex.substring(desde, desde + HEX_POR_PALABRA), 16);
+    }
+
+    /**
+     * Lee una palabra que cabe en un long (uint pequeños, uint8, bool, offsets)
+     * sin crear BigInteger. Valores mayores se rechazan.
+     */
+    private static long leerEntero(String hex, int base, int palabra) {
+        int desde = posicion(base, palabra);
+        int fin = desde + HEX_POR_PALABRA;
+        int bajos = fin - 15; // 60 bits: sin riesgo de desbordar el signo
+
+        for (int i = desde; i < bajos; i++) {
+            if (hex.charAt(i) != '0') {
+                throw new IllegalArgumentException("Valor ABI fuera de rango en palabra " + palabra);
+            }
+        }
+
+        long valor = 0;
+        for (int i = bajos; i < fin; i++) {
+            valor = (valor << 4) | Character.digit(hex.charAt(i), 16);
+        }
+        return valor;
+    }
+
+    private static String leerDireccion(String hex, int base, int palabra) {
+        int fin = posicion(base, palabra) + HEX_POR_PALABRA;
+        return "0x" + hex.substring(fin - 40, fin);
+    }
+
+    private static String leerString(String hex, int base, int palabra) {
+        long offsetBytes = leerEntero(hex, base, palabra);
+        int palabraLongitud = (int) (offsetBytes / 32);
+        int longitud = (int) leerEntero(hex, base, palabraLongitud);
+
+        int desde = posicion(base, palabraLongitud + 1);
+        if (hex.length() < desde + longitud * 2) {
+            throw new IllegalArgumentException("String ABI truncado en palabra " + palabra);
+        }
+
+        byte[] bytes = new byte[longitud];
+        for (int i = 0; i < longitud; i++) {
+            int p = desde + i * 2;
+            bytes[i] = (byte) ((Character.digit(hex.charAt(p), 16) << 4) | Character.digit(hex.charAt(p + 1), 16));
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
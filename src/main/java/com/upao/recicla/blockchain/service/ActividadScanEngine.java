@@ -0,0 +1,172 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.ActividadPropuesta;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Predicate;
+
+/**
+ * Recorrido completo de las actividades on-chain (0 .. actividadCounter - 1)
+ * mientras no exista un índice local
+ *
+ * El rango de IDs se divide en chunks; cada chunk se lee con un único batch
+ * JSON-RPC de eth_call en un hilo virtual. Un semáforo compartido limita los
+ * batches en vuelo para todos los recorridos simultáneos. Si un chunk falla
+ * por un error de red (E/S, timeout, HTTP) se reintenta completo con espera
+ * exponencial; un error JSON-RPC en la respuesta (p. ej. execution reverted)
+ * es determinista y falla sin reintentar. Los resultados se combinan en orden
+ * de ID.
+ *
+ * Todas las lecturas se fijan al mismo bloque para obtener un estado consistente.
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class ActividadScanEngine {
+
+    private final ContractReadBatcher readBatcher;
+    private final ContractLogReader logReader;
+    private final int tamanoChunk;
+    private final int maxIntentos;
+    private final long backoffMs;
+
+    private final Semaphore enVuelo;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ActividadScanEngine(ContractReadBatcher readBatcher,
+            ContractLogReader logReader,
+            @Value("${blockchain.scan.tamano-chunk:50}") int tamanoChunk,
+            @Value("${blockchain.scan.max-en-vuelo:4}") int maxEnVuelo,
+            @Value("${blockchain.scan.max-intentos:3}") int maxIntentos,
+            @Value("${blockchain.scan.backoff-ms:250}") long backoffMs) {
+        this.readBatcher = readBatcher;
+        this.logReader = logReader;
+        this.tamanoChunk = tamanoChunk;
+        this.maxIntentos = maxIntentos;
+        this.backoffMs = backoffMs;
+        this.enVuelo = new Semaphore(maxEnVuelo);
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Recorre las actividades en el último bloque
+     */
+    public List<ActividadPropuesta> escanear(Predicate<ActividadPropuesta> filtro) throws IOException {
+        return escanear(logReader.getUltimoBloque(), filtro);
+    }
+
+    /**
+     * Recorre todas las actividades tal como estaban en el bloque indicado
+     *
+     * @param bloque Número de bloque en el que se fija la lectura
+     * @param filtro Actividades a conservar
+     * @return Actividades que cumplen el filtro, en orden de ID
+     */
+    public List<ActividadPropuesta> escanear(long bloque, Predicate<ActividadPropuesta> filtro) throws IOException {
+        DefaultBlockParameter parametroBloque = DefaultBlockParameter.valueOf(BigInteger.valueOf(bloque));
+
+        String contador = conReintentos("contador",
+                () -> readBatcher.llamarEnLote(List.of(ActividadCodec.llamadaContador()), parametroBloque)).get(0);
+        long total = ActividadCodec.decodificarContador(contador).longValueExact();
+
+        log.info("📊 Recorriendo {} actividades en el bloque {}", total, bloque);
+
+        List<Future<List<ActividadPropuesta>>> chunks = new ArrayList<>();
+        for (long desde = 0; desde < total; desde += tamanoChunk) {
+            long inicio = desde;
+            long fin = Math.min(total, desde + tamanoChunk);
+            chunks.add(executor.submit(() -> leerChunk(inicio, fin, parametroBloque)));
+        }
+
+        List<ActividadPropuesta> actividades = new ArrayList<>();
+        try {
+            for (Future<List<ActividadPropuesta>> chunk : chunks) {
+                for (ActividadPropuesta actividad : chunk.get()) {
+                    if (filtro.test(actividad)) {
+                        actividades.add(actividad);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Recorrido de actividades interrumpido", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Recorrido de actividades fallido: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            chunks.forEach(chunk -> chunk.cancel(true));
+        }
+        return actividades;
+    }
+
+    private List<ActividadPropuesta> leerChunk(long desde, long hasta, DefaultBlockParameter bloque)
+            throws IOException, InterruptedException {
+        enVuelo.acquire();
+        try {
+            List<String> datos = new ArrayList<>((int) (hasta - desde));
+            for (long id = desde; id < hasta; id++) {
+                datos.add(ActividadCodec.llamadaActividades(BigInteger.valueOf(id)));
+            }
+
+            List<String> respuestas = conReintentos("chunk " + desde + "-" + (hasta - 1),
+                    () -> readBatcher.llamarEnLote(datos, bloque));
+
+            List<ActividadPropuesta> actividades = new ArrayList<>(respuestas.size());
+            for (int i = 0; i < respuestas.size(); i++) {
+                ActividadPropuesta actividad = ActividadCodec.decodificarActividades(desde + i, respuestas.get(i));
+                if (actividad != null) {
+                    actividades.add(actividad);
+                }
+            }
+            return actividades;
+        } finally {
+            enVuelo.release();
+        }
+    }
+
+    private <T> T conReintentos(String descripcion, Lectura<T> lectura) throws IOException {
+        for (int intento = 1;; intento++) {
+            try {
+                return lectura.leer();
+            } catch (ContractReadBatcher.ErrorRespuesta e) {
+                throw e;
+            } catch (IOException | ClientConnectionException e) {
+                if (intento >= maxIntentos) {
+                    throw e instanceof IOException io ? io : new IOException(e.getMessage(), e);
+                }
+                long espera = backoffMs << (intento - 1);
+                log.warn("⚠️ Error leyendo {} (intento {}/{}), reintentando en {} ms: {}",
+                        descripcion, intento, maxIntentos, espera, e.getMessage());
+                try {
+                    Thread.sleep(espera);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Reintento interrumpido", ie);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lectura<T> {
+        T leer() throws IOException;
+    }
+}
@@ -0,0 +1,268 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.contracts.ReciclaToken;
+import com.upao.recicla.blockchain.dto.BucketTokens;
+import com.upao.recicla.blockchain.dto.ResumenTokens;
+import com.upao.recicla.domain.entity.CheckpointBlockchain;
+import com.upao.recicla.domain.entity.PropuestaBlockchain;
+import com.upao.recicla.domain.entity.TipoMovimientoToken;
+import com.upao.recicla.domain.entity.TokenBucketDiario;
+import com.upao.recicla.infra.repository.CheckpointBlockchainRepository;
+import com.upao.recicla.infra.repository.PropuestaBlockchainRepository;
+import com.upao.recicla.infra.repository.TokenBucketDiarioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Convert;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Serie temporal de REC acuñados y quemados para las analíticas de
+ * administración
+ *
+ * Ingiere los eventos TokensMinted y TokensBurned y los acumula en buckets
+ * diarios por material (tokens_buckets_diarios), de modo que las consultas por
+ * rango suman buckets ya agregados en lugar de recorrer eventos. El día sale
+ * del timestamp del bloque en la zona horaria configurada.
+ *
+ * El material de una acuñación se toma de la propuesta ejecutada en la misma
+ * transacción (ActividadEjecutada) o, si no hay, del motivo "Reciclaje: X";
+ * las quemas se agrupan bajo "canje".
+ *
+ * Solo se ingieren bloques finales ({@link BlockTracker#getUltimoBloqueFinal()}):
+ * los buckets solo crecen y no hay que revertirlos ante reorganizaciones.
+ * Buckets y checkpoint se guardan en la misma transacción por rango.
+ */
+@Service
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class AnaliticaTokensService {
+
+    static final String CHECKPOINT = "analitica-tokens";
+    static final String MATERIAL_CANJE = "canje";
+    static final String MATERIAL_OTROS = "otros";
+
+    private static final String PREFIJO_RECICLAJE = "Reciclaje: ";
+
+    private static final String TOPICO_MINTED = ContractLogReader.topico(ReciclaToken.TOKENSMINTED_EVENT);
+    private static final String TOPICO_BURNED = ContractLogReader.topico(ReciclaToken.TOKENSBURNED_EVENT);
+    private static final String TOPICO_EJECUTADA = ContractLogReader.topico(ReciclaToken.ACTIVIDADEJECUTADA_EVENT);
+
+    private final ContractLogReader logReader;
+    private final BlockTracker blockTracker;
+    private final TokenBucketDiarioRepository bucketRepository;
+    private final CheckpointBlockchainRepository checkpointRepository;
+    private final PropuestaBlockchainRepository propuestaRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxBloques;
+    private final int maxRangosPorRonda;
+    private final long bloqueInicial;
+    private final ZoneId zona;
+
+    public AnaliticaTokensService(ContractLogReader logReader,
+            BlockTracker blockTracker,
+            TokenBucketDiarioRepository bucketRepository,
+            CheckpointBlockchainRepository checkpointRepository,
+            PropuestaBlockchainRepository propuestaRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${blockchain.indexer.max-bloques:2000}") long maxBloques,
+            @Value("${blockchain.analitica.max-rangos-por-ronda:20}") int maxRangosPorRonda,
+            @Value("${blockchain.analitica.bloque-inicial:0}") long bloqueInicial,
+            @Value("${blockchain.analitica.zona-horaria:America/Lima}") String zona) {
+        this.logReader = logReader;
+        this.blockTracker = blockTracker;
+        this.bucketRepository = bucketRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.propuestaRepository = propuestaRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxBloques = maxBloques;
+        this.maxRangosPorRonda = maxRangosPorRonda;
+        this.bloqueInicial = bloqueInicial;
+        this.zona = ZoneId.of(zona);
+    }
+
+    /**
+     * Ingiere los eventos de los bloques finales posteriores al checkpoint.
+     * Cada ronda procesa como máximo maxRangosPorRonda rangos para no acaparar
+     * el scheduler durante la carga inicial del histórico.
+     */
+    @Scheduled(fixedDelayString = "${blockchain.analitica.intervalo-ms:60000}", initialDelayString = "${blockchain.indexer.retraso-inicial-ms:5000}")
+    public void sincronizar() {
+        try {
+            long ultimoFinal = blockTracker.getUltimoBloqueFinal();
+            if (ultimoFinal < 0) {
+                return;
+            }
+
+            long desde = checkpointRepository.findById(CHECKPOINT)
+                    .map(checkpoint -> checkpoint.getUltimoBloque() + 1)
+                    .orElse(bloqueInicial);
+
+            for (int rango = 0; rango < maxRangosPorRonda && desde <= ultimoFinal; rango++) {
+                long hasta = Math.min(ultimoFinal, desde + maxBloques - 1);
+                int eventos = ingerir(desde, hasta);
+                if (eventos > 0) {
+                    log.info("📈 Ingeridos {} movimientos de tokens (bloques {}-{})", eventos, desde, hasta);
+                }
+                desde = hasta + 1;
+            }
+        } catch (Exception e) {
+            log.error("❌ Error ingiriendo serie temporal de tokens", e);
+        }
+    }
+
+    /**
+     * Buckets diarios del rango [desde, hasta], opcionalmente de un material
+     */
+    public List<BucketTokens> getSerie(LocalDate desde, LocalDate hasta, String material) {
+        List<TokenBucketDiario> buckets = material == null || material.isBlank()
+                ? bucketRepository.findByFechaBetweenOrderByFechaAscMaterialAsc(desde, hasta)
+                : bucketRepository.findByFechaBetweenAndMaterialOrderByFechaAsc(desde, hasta, material);
+
+        return buckets.stream()
+                .map(bucket -> BucketTokens.builder()
+                        .fecha(bucket.getFecha())
+                        .tipo(bucket.getTipo())
+                        .material(bucket.getMaterial())
+                        .cantidad(bucket.getCantidad())
+                        .eventos(bucket.getEventos())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Totales del rango [desde, hasta] sumando los buckets diarios
+     */
+    public ResumenTokens getResumen(LocalDate desde, LocalDate hasta) {
+        Map<String, BigDecimal> acunados = new TreeMap<>();
+        Map<String, BigDecimal> quemados = new TreeMap<>();
+        long eventos = 0;
+
+        for (TokenBucketDiario bucket : bucketRepository.findByFechaBetweenOrderByFechaAscMaterialAsc(desde, hasta)) {
+            Map<String, BigDecimal> destino = bucket.getTipo() == TipoMovimientoToken.ACUNACION ? acunados : quemados;
+            destino.merge(bucket.getMaterial(), bucket.getCantidad(), BigDecimal::add);
+            eventos += bucket.getEventos();
+        }
+
+        return ResumenTokens.builder()
+                .desde(desde)
+                .hasta(hasta)
+                .acunados(acunados.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add))
+                .quemados(quemados.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add))
+                .eventos(eventos)
+                .acunadosPorMaterial(acunados)
+                .quemadosPorMaterial(quemados)
+                .blockNumber(checkpointRepository.findById(CHECKPOINT)
+                        .map(CheckpointBlockchain::getUltimoBloque)
+                        .orElse(null))
+                .build();
+    }
+
+    private int ingerir(long desde, long hasta) throws IOException {
+        List<Log> logs = logReader.leerLogs(desde, hasta,
+                ReciclaToken.TOKENSMINTED_EVENT,
+                ReciclaToken.TOKENSBURNED_EVENT,
+                ReciclaToken.ACTIVIDADEJECUTADA_EVENT);
+
+        // Actividad ejecutada por transacción, para atribuir el material de la acuñación
+        Map<String, BigInteger> actividadPorTx = new HashMap<>();
+        Set<Long> bloques = new TreeSet<>();
+        for (Log evento : logs) {
+            if (ContractLogReader.esEvento(evento, TOPICO_EJECUTADA)) {
+                actividadPorTx.put(evento.getTransactionHash(),
+                        ReciclaToken.getActividadEjecutadaEventFromLog(evento).actividadId);
+            } else {
+                bloques.add(evento.getBlockNumber().longValue());
+            }
+        }
+        Map<Long, Long> timestamps = logReader.leerTimestamps(bloques);
+
+        Map<ClaveBucket, Acumulado> acumulados = new LinkedHashMap<>();
+        for (Log evento : logs) {
+            long bloque = evento.getBlockNumber().longValue();
+            if (ContractLogReader.esEvento(evento, TOPICO_MINTED)) {
+                ReciclaToken.TokensMintedEventResponse e = ReciclaToken.getTokensMintedEventFromLog(evento);
+                String material = materialAcunacion(actividadPorTx.get(evento.getTransactionHash()), e.reason);
+                acumular(acumulados, fecha(timestamps.get(bloque)), TipoMovimientoToken.ACUNACION, material, e.amount, bloque);
+            } else if (ContractLogReader.esEvento(evento, TOPICO_BURNED)) {
+                ReciclaToken.TokensBurnedEventResponse e = ReciclaToken.getTokensBurnedEventFromLog(evento);
+                acumular(acumulados, fecha(timestamps.get(bloque)), TipoMovimientoToken.QUEMA, MATERIAL_CANJE, e.amount, bloque);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            acumulados.forEach(this::sumarABucket);
+            checkpointRepository.save(new CheckpointBlockchain(CHECKPOINT, hasta, LocalDateTime.now()));
+        });
+        return acumulados.values().stream().mapToInt(a -> (int) a.eventos).sum();
+    }
+
+    private void sumarABucket(ClaveBucket clave, Acumulado acumulado) {
+        TokenBucketDiario bucket = bucketRepository
+                .findByFechaAndTipoAndMaterial(clave.fecha(), clave.tipo(), clave.material())
+                .orElseGet(() -> new TokenBucketDiario(null, clave.fecha(), clave.tipo(), clave.material(),
+                        BigDecimal.ZERO, 0L, null));
+
+        bucket.setCantidad(bucket.getCantidad().add(Convert.fromWei(new BigDecimal(acumulado.wei), Convert.Unit.ETHER)));
+        bucket.setEventos(bucket.getEventos() + acumulado.eventos);
+        bucket.setUltimoBloque(acumulado.ultimoBloque);
+        bucketRepository.save(bucket);
+    }
+
+    private String materialAcunacion(BigInteger actividadId, String motivo) {
+        if (actividadId != null) {
+            String material = propuestaRepository.findById(actividadId.longValue())
+                    .map(PropuestaBlockchain::getTipoMaterial)
+                    .orElse(null);
+            if (material != null) {
+                return material;
+            }
+        }
+        if (motivo != null && motivo.startsWith(PREFIJO_RECICLAJE)) {
+            String material = motivo.substring(PREFIJO_RECICLAJE.length()).trim();
+            if (!material.isEmpty() && material.length() <= 50) {
+                return material;
+            }
+        }
+        return MATERIAL_OTROS;
+    }
+
+    private LocalDate fecha(long timestampSegundos) {
+        return Instant.ofEpochSecond(timestampSegundos).atZone(zona).toLocalDate();
+    }
+
+    private static void acumular(Map<ClaveBucket, Acumulado> acumulados, LocalDate fecha,
+            TipoMovimientoToken tipo, String material, BigInteger wei, long bloque) {
+        Acumulado acumulado = acumulados.computeIfAbsent(new ClaveBucket(fecha, tipo, material), k -> new Acumulado());
+        acumulado.wei = acumulado.wei.add(wei);
+        acumulado.eventos++;
+        acumulado.ultimoBloque = Math.max(acumulado.ultimoBloque, bloque);
+    }
+
+    private record ClaveBucket(LocalDate fecha, TipoMovimientoToken tipo, String material) {
+    }
+
+    private static final class Acumulado {
+        private BigInteger wei = BigInteger.ZERO;
+        private long eventos;
+        private long ultimoBloque;
+    }
+}
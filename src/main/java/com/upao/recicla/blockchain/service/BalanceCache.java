@@ -0,0 +1,218 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.contracts.ReciclaToken;
+import com.upao.recicla.blockchain.dto.BlockchainBalance;
+import com.upao.recicla.blockchain.rpc.MultiEndpointService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caché de balances on-chain por wallet
+ *
+ * Los balances solo cambian con los eventos Transfer, TokensMinted y
+ * TokensBurned (y el estado de whitelist con UserWhitelisted /
+ * UserRemovedFromWhitelist). Un sondeo periódico de esos logs invalida las
+ * wallets afectadas, de modo que una entrada es válida hasta el último bloque
+ * procesado. El TTL acota la antigüedad si el sondeo deja de avanzar.
+ *
+ * Cada respuesta informa el bloque al que corresponde y su antigüedad.
+ *
+ * Guardar una entrada y aplicar un lote de eventos (invalidaciones más el
+ * avance de procesadoHasta) se hacen bajo el mismo cerrojo, el de entradas:
+ * una entrada leída antes de un evento o se guarda antes de que este la
+ * invalide o se descarta por haber quedado atrás.
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class BalanceCache {
+
+    private static final String TOPICO_TRANSFER = ContractLogReader.topico(ReciclaToken.TRANSFER_EVENT);
+    private static final String TOPICO_MINTED = ContractLogReader.topico(ReciclaToken.TOKENSMINTED_EVENT);
+    private static final String TOPICO_BURNED = ContractLogReader.topico(ReciclaToken.TOKENSBURNED_EVENT);
+    private static final String TOPICO_WHITELISTED = ContractLogReader.topico(ReciclaToken.USERWHITELISTED_EVENT);
+    private static final String TOPICO_REMOVED = ContractLogReader.topico(ReciclaToken.USERREMOVEDFROMWHITELIST_EVENT);
+
+    private final ContractLogReader logReader;
+    private final long ttlMs;
+    private final long maxBloques;
+    private final Map<String, Entrada> entradas;
+
+    // Último bloque cuyos eventos ya se aplicaron (-1 = sondeo aún no inicializado)
+    private volatile long procesadoHasta = -1;
+    private volatile long sincronizadoEn;
+
+    public BalanceCache(ContractLogReader logReader,
+            @Value("${blockchain.balance-cache.max-size:10000}") int maxEntradas,
+            @Value("${blockchain.balance-cache.ttl-ms:60000}") long ttlMs,
+            @Value("${blockchain.indexer.max-bloques:2000}") long maxBloques) {
+        this.logReader = logReader;
+        this.ttlMs = ttlMs;
+        this.maxBloques = maxBloques;
+        this.entradas = Collections.synchronizedMap(new LinkedHashMap<String, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                return size() > maxEntradas;
+            }
+        });
+    }
+
+    /**
+     * Balance cacheado de la wallet, con blockNumber y stalenessMs, o null si
+     * no hay entrada vigente
+     */
+    public BlockchainBalance obtener(String wallet) {
+        Entrada entrada = entradas.get(wallet.toLowerCase());
+        if (entrada == null) {
+            return null;
+        }
+
+        long ahora = System.currentTimeMillis();
+        if (ahora - entrada.cargadaEn > ttlMs) {
+            entradas.remove(wallet.toLowerCase(), entrada);
+            return null;
+        }
+
+        // Sin eventos para la wallet hasta procesadoHasta: la entrada sigue vigente en ese bloque
+        long bloque = entrada.bloque;
+        long vigenteDesde = entrada.cargadaEn;
+        long procesado = procesadoHasta;
+        if (procesado > bloque) {
+            bloque = procesado;
+            vigenteDesde = Math.max(vigenteDesde, sincronizadoEn);
+        }
+
+        BlockchainBalance balance = entrada.balance;
+        return BlockchainBalance.builder()
+                .currentBalance(balance.getCurrentBalance())
+                .totalEarned(balance.getTotalEarned())
+                .totalSpent(balance.getTotalSpent())
+                .isWhitelisted(balance.isWhitelisted())
+                .blockNumber(bloque)
+                .stalenessMs(ahora - vigenteDesde)
+                .build();
+    }
+
+    /**
+     * Guarda un balance leído en el bloque indicado. Solo se cachea si el
+     * sondeo ya está inicializado y no ha avanzado más allá de ese bloque (si
+     * no, podría haberse perdido una invalidación).
+     */
+    public void guardar(String wallet, BlockchainBalance balance, long bloque) {
+        synchronized (entradas) {
+            if (procesadoHasta < 0 || bloque < procesadoHasta) {
+                return;
+            }
+            entradas.put(wallet.toLowerCase(), new Entrada(balance, bloque, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Último bloque cuyos eventos ya se aplicaron; -1 si el sondeo aún no se
+     * ha inicializado
+     */
+    public long getProcesadoHasta() {
+        return procesadoHasta;
+    }
+
+    public void invalidar(String wallet) {
+        if (wallet != null) {
+            entradas.remove(wallet.toLowerCase());
+        }
+    }
+
+    /**
+     * Aplica los eventos nuevos invalidando las wallets afectadas
+     */
+    @Scheduled(fixedDelayString = "${blockchain.balance-cache.intervalo-ms:5000}")
+    public void sincronizar() {
+        try {
+            // Cabecera y logs/bloques del mismo nodo
+            MultiEndpointService.enMismoNodo(this::sincronizarRonda);
+        } catch (Exception e) {
+            log.error("❌ Error sincronizando caché de balances", e);
+        }
+    }
+
+    private void sincronizarRonda() throws Exception {
+        long ultimoBloque = logReader.getUltimoBloque();
+
+        if (procesadoHasta < 0 || ultimoBloque - procesadoHasta > maxBloques) {
+            if (procesadoHasta >= 0) {
+                log.warn("⚠️ Caché de balances desfasada {} bloques, se vacía", ultimoBloque - procesadoHasta);
+            }
+            synchronized (entradas) {
+                entradas.clear();
+                marcarProcesado(ultimoBloque);
+            }
+            return;
+        }
+
+        if (ultimoBloque <= procesadoHasta) {
+            marcarProcesado(procesadoHasta);
+            return;
+        }
+
+        List<Log> logs = logReader.leerLogs(procesadoHasta + 1, ultimoBloque,
+                ReciclaToken.TRANSFER_EVENT,
+                ReciclaToken.TOKENSMINTED_EVENT,
+                ReciclaToken.TOKENSBURNED_EVENT,
+                ReciclaToken.USERWHITELISTED_EVENT,
+                ReciclaToken.USERREMOVEDFROMWHITELIST_EVENT);
+
+        synchronized (entradas) {
+            for (Log evento : logs) {
+                aplicarEvento(evento);
+            }
+            marcarProcesado(ultimoBloque);
+        }
+    }
+
+    /**
+     * Tras una reorganización los balances cacheados pueden venir de bloques
+     * descartados: se vacía la caché y se reprocesa desde el ancestro común
+     */
+    @EventListener
+    public void alReorganizar(ReorganizacionBlockchainEvent evento) {
+        synchronized (entradas) {
+            entradas.clear();
+            if (procesadoHasta > evento.ancestroComun()) {
+                procesadoHasta = evento.ancestroComun();
+            }
+        }
+    }
+
+    private void aplicarEvento(Log evento) {
+        if (ContractLogReader.esEvento(evento, TOPICO_TRANSFER)) {
+            ReciclaToken.TransferEventResponse e = ReciclaToken.getTransferEventFromLog(evento);
+            invalidar(e.from);
+            invalidar(e.to);
+        } else if (ContractLogReader.esEvento(evento, TOPICO_MINTED)) {
+            invalidar(ReciclaToken.getTokensMintedEventFromLog(evento).to);
+        } else if (ContractLogReader.esEvento(evento, TOPICO_BURNED)) {
+            invalidar(ReciclaToken.getTokensBurnedEventFromLog(evento).from);
+        } else if (ContractLogReader.esEvento(evento, TOPICO_WHITELISTED)) {
+            invalidar(ReciclaToken.getUserWhitelistedEventFromLog(evento).user);
+        } else if (ContractLogReader.esEvento(evento, TOPICO_REMOVED)) {
+            invalidar(ReciclaToken.getUserRemovedFromWhitelistEventFromLog(evento).user);
+        }
+    }
+
+    private void marcarProcesado(long bloque) {
+        sincronizadoEn = System.currentTimeMillis();
+        procesadoHasta = bloque;
+    }
+
+    private record Entrada(BlockchainBalance balance, long bloque, long cargadaEn) {
+    }
+}
@@ -0,0 +1,219 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.rpc.MultiEndpointService;
+import com.upao.recicla.domain.entity.BloqueBlockchain;
+import com.upao.recicla.infra.repository.BloqueBlockchainRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Seguimiento de la cadena canónica compartido por las proyecciones
+ *
+ * Guarda el hash y el hash padre de los últimos bloques (ventana de
+ * confirmación) y en cada ronda comprueba que el último bloque registrado sigue
+ * siendo canónico y que los nuevos encadenan con él. Si no, busca el ancestro
+ * común dentro de la ventana, descarta los bloques posteriores y publica
+ * {@link ReorganizacionBlockchainEvent} para que cada proyección vuelva a ese
+ * bloque y reindexe solo desde ahí.
+ *
+ * Las proyecciones procesan como máximo hasta
+ * {@link #getUltimoBloqueVerificado()}, de modo que todo bloque aplicado tiene
+ * su hash registrado. Bloques más antiguos que la ventana se consideran finales.
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class BlockTracker {
+
+    private final Web3j web3j;
+    private final BloqueBlockchainRepository bloqueRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int ventana;
+
+    // -1 hasta la primera verificación
+    private volatile long ultimoVerificado = -1;
+
+    public BlockTracker(Web3j web3j,
+            BloqueBlockchainRepository bloqueRepository,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${blockchain.reorg.ventana-bloques:64}") int ventana) {
+        this.web3j = web3j;
+        this.bloqueRepository = bloqueRepository;
+        this.eventPublisher = eventPublisher;
+        this.ventana = ventana;
+    }
+
+    @Scheduled(fixedDelayString = "${blockchain.reorg.intervalo-ms:5000}")
+    public void sincronizar() {
+        try {
+            // Cabecera y logs/bloques del mismo nodo
+            MultiEndpointService.enMismoNodo(this::sincronizarRonda);
+        } catch (Exception e) {
+            log.error("❌ Error verificando bloques de la cadena", e);
+        }
+    }
+
+    private void sincronizarRonda() throws Exception {
+        EthBlock.Block cabeza = cabecera(DefaultBlockParameterName.LATEST);
+        long ultimoBloque = cabeza.getNumber().longValue();
+        Optional<BloqueBlockchain> ultimo = bloqueRepository.findTopByOrderByNumeroDesc();
+
+        if (ultimo.isEmpty()) {
+            guardar(cabeza);
+            ultimoVerificado = ultimoBloque;
+            log.info("🧱 Seguimiento de bloques iniciado en el bloque {}", ultimoBloque);
+            return;
+        }
+
+        // ¿El último bloque registrado sigue siendo canónico?
+        BloqueBlockchain registrado = ultimo.get();
+        EthBlock.Block canonico = registrado.getNumero() == ultimoBloque
+                ? cabeza
+                : registrado.getNumero() < ultimoBloque
+                        ? cabecera(DefaultBlockParameter.valueOf(BigInteger.valueOf(registrado.getNumero())))
+                        : null;
+        if (canonico == null || !canonico.getHash().equalsIgnoreCase(registrado.getHash())) {
+            resolverReorganizacion(Math.min(registrado.getNumero(), ultimoBloque));
+            return;
+        }
+
+        // Anexar los bloques nuevos comprobando que encadenan
+        long desde = Math.max(registrado.getNumero() + 1, ultimoBloque - ventana + 1);
+        String hashPadre = desde == registrado.getNumero() + 1 ? registrado.getHash() : null;
+        long verificado = registrado.getNumero();
+        for (EthBlock.Block bloque : leerCabeceras(desde, ultimoBloque)) {
+            if (hashPadre != null && !bloque.getParentHash().equalsIgnoreCase(hashPadre)) {
+                // Reorganización en curso: se resuelve en la próxima ronda
+                break;
+            }
+            guardar(bloque);
+            hashPadre = bloque.getHash();
+            verificado = bloque.getNumber().longValue();
+        }
+        ultimoVerificado = verificado;
+
+        bloqueRepository.deleteByNumeroLessThan(verificado - ventana);
+    }
+
+    /**
+     * Último bloque cuyo hash está registrado y encadenado; -1 si aún no se
+     * ha verificado ninguno
+     */
+    public long getUltimoBloqueVerificado() {
+        return ultimoVerificado;
+    }
+
+    /**
+     * Último bloque fuera de la ventana de confirmación, que ya no puede
+     * revertirse; -1 si aún no se ha verificado ninguno
+     */
+    public long getUltimoBloqueFinal() {
+        long verificado = ultimoVerificado;
+        return verificado < 0 ? -1 : Math.max(-1, verificado - ventana);
+    }
+
+    private void resolverReorganizacion(long desde) throws IOException {
+        List<BloqueBlockchain> registrados = bloqueRepository.findByNumeroLessThanEqualOrderByNumeroDesc(desde);
+        long descartadoHasta = bloqueRepository.findTopByOrderByNumeroDesc().map(BloqueBlockchain::getNumero).orElse(desde);
+
+        long ancestro = -1;
+        if (!registrados.isEmpty()) {
+            long masAntiguo = registrados.get(registrados.size() - 1).getNumero();
+            Map<Long, String> canonicos = new HashMap<>();
+            for (EthBlock.Block bloque : leerCabeceras(masAntiguo, desde)) {
+                canonicos.put(bloque.getNumber().longValue(), bloque.getHash());
+            }
+            for (BloqueBlockchain bloque : registrados) {
+                if (bloque.getHash().equalsIgnoreCase(canonicos.get(bloque.getNumero()))) {
+                    ancestro = bloque.getNumero();
+                    break;
+                }
+            }
+            if (ancestro < 0) {
+                ancestro = masAntiguo - 1;
+                log.error("🚨 Reorganización más profunda que la ventana de {} bloques; se vuelve al bloque {}",
+                        ventana, ancestro);
+            }
+        } else {
+            ancestro = desde - 1;
+        }
+
+        log.warn("🔀 Reorganización detectada: bloques {}-{} descartados, ancestro común {}",
+                ancestro + 1, descartadoHasta, ancestro);
+
+        bloqueRepository.deleteByNumeroGreaterThan(ancestro);
+        ultimoVerificado = ancestro;
+        eventPublisher.publishEvent(new ReorganizacionBlockchainEvent(ancestro, descartadoHasta));
+    }
+
+    private void guardar(EthBlock.Block bloque) {
+        bloqueRepository.save(new BloqueBlockchain(
+                bloque.getNumber().longValue(), bloque.getHash(), bloque.getParentHash()));
+    }
+
+    private EthBlock.Block cabecera(DefaultBlockParameter parametro) throws IOException {
+        EthBlock response = web3j.ethGetBlockByNumber(parametro, false).send();
+        if (response.hasError()) {
+            throw new IOException("eth_getBlockByNumber falló: " + response.getError().getMessage());
+        }
+        return response.getBlock();
+    }
+
+    /**
+     * Cabeceras del rango [desde, hasta] en un único batch, en orden; se corta
+     * en el primer bloque que el nodo aún no conozca
+     */
+    private List<EthBlock.Block> leerCabeceras(long desde, long hasta) throws IOException {
+        List<EthBlock.Block> bloques = new ArrayList<>();
+        if (desde > hasta) {
+            return bloques;
+        }
+
+        BatchRequest batch = web3j.newBatch();
+        List<Request<?, EthBlock>> requests = new ArrayList<>();
+        for (long numero = desde; numero <= hasta; numero++) {
+            Request<?, EthBlock> request = web3j.ethGetBlockByNumber(
+                    DefaultBlockParameter.valueOf(BigInteger.valueOf(numero)), false);
+            requests.add(request);
+            batch.add(request);
+        }
+
+        BatchResponse batchResponse = batch.send();
+        Map<Long, Response<?>> porId = new HashMap<>();
+        for (Response<?> response : batchResponse.getResponses()) {
+            porId.put(response.getId(), response);
+        }
+
+        for (Request<?, EthBlock> request : requests) {
+            EthBlock response = (EthBlock) porId.get(request.getId());
+            if (response == null || response.hasError()) {
+                throw new IOException("eth_getBlockByNumber falló en batch");
+            }
+            if (response.getBlock() == null) {
+                break;
+            }
+            bloques.add(response.getBlock());
+        }
+        return bloques;
+    }
+}
@@ -0,0 +1,166 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.TransactionResult;
+import com.upao.recicla.infra.exception.BlockchainNoDisponibleException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker y bulkhead para las llamadas a blockchain en rutas HTTP
+ *
+ * - Bulkhead: como máximo N llamadas concurrentes; si no hay cupo en el
+ *   tiempo de espera configurado la llamada se rechaza.
+ * - Circuito: tras varios fallos transitorios seguidos (incluidas las
+ *   difusiones sin respuesta del nodo, que quedan pendientes) se abre y rechaza las
+ *   llamadas de inmediato durante un tiempo; luego deja pasar una llamada de
+ *   prueba (semiabierto) que lo cierra o lo vuelve a abrir.
+ *
+ * Las llamadas rechazadas lanzan {@link BlockchainNoDisponibleException} para
+ * que el llamador difiera el trabajo a la cola de reintentos.
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class BlockchainCircuitBreaker {
+
+    public enum EstadoCircuito {
+        CERRADO,
+        ABIERTO,
+        SEMIABIERTO
+    }
+
+    private final Semaphore bulkhead;
+    private final long esperaBulkheadMs;
+    private final int umbralFallos;
+    private final long aperturaMs;
+
+    private EstadoCircuito estado = EstadoCircuito.CERRADO;
+    private int fallosConsecutivos;
+    private long abiertoHasta;
+    private boolean pruebaEnCurso;
+
+    public BlockchainCircuitBreaker(
+            @Value("${blockchain.circuit-breaker.max-concurrentes:8}") int maxConcurrentes,
+            @Value("${blockchain.circuit-breaker.espera-bulkhead-ms:200}") long esperaBulkheadMs,
+            @Value("${blockchain.circuit-breaker.umbral-fallos:5}") int umbralFallos,
+            @Value("${blockchain.circuit-breaker.apertura-ms:30000}") long aperturaMs) {
+        this.bulkhead = new Semaphore(maxConcurrentes);
+        this.esperaBulkheadMs = esperaBulkheadMs;
+        this.umbralFallos = umbralFallos;
+        this.aperturaMs = aperturaMs;
+    }
+
+    /**
+     * Ejecuta la llamada si el circuito y el bulkhead lo permiten
+     *
+     * @throws BlockchainNoDisponibleException si el circuito está abierto o no
+     *                                         hay cupo en el bulkhead
+     */
+    public TransactionResult ejecutar(Supplier<TransactionResult> llamada) {
+        boolean esPrueba = autorizar();
+
+        boolean adquirido;
+        try {
+            adquirido = bulkhead.tryAcquire(esperaBulkheadMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            adquirido = false;
+        }
+        if (!adquirido) {
+            liberarPrueba(esPrueba);
+            throw new BlockchainNoDisponibleException("Blockchain saturado: sin cupo para nuevas llamadas");
+        }
+
+        try {
+            TransactionResult result = llamada.get();
+            if (esFalloTransitorio(result) || result.isDifusionNoConfirmada()) {
+                registrarFallo();
+            } else {
+                registrarExito();
+            }
+            return result;
+        } catch (RuntimeException e) {
+            registrarFallo();
+            throw e;
+        } finally {
+            bulkhead.release();
+            liberarPrueba(esPrueba);
+        }
+    }
+
+    /**
+     * Indica si vale la pena intentar llamadas ahora (usado por la cola de
+     * reintentos para no insistir con el circuito abierto)
+     */
+    public synchronized boolean permiteLlamadas() {
+        return estado == EstadoCircuito.CERRADO
+                || (estado == EstadoCircuito.ABIERTO && System.currentTimeMillis() >= abiertoHasta)
+                || (estado == EstadoCircuito.SEMIABIERTO && !pruebaEnCurso);
+    }
+
+    public synchronized EstadoCircuito getEstado() {
+        return estado;
+    }
+
+    /**
+     * Fallo que se puede reintentar: ocurrió antes de difundir la transacción.
+     * Un revert o un rechazo del nodo es un error de negocio y un envío
+     * difundido sin confirmación queda pendiente, no fallido (aunque el
+     * circuito lo cuente como fallo del nodo)
+     */
+    public static boolean esFalloTransitorio(TransactionResult result) {
+        return !result.isSuccess() && result.isTransitorio();
+    }
+
+    /**
+     * @return true si la llamada es la prueba del estado semiabierto
+     */
+    private synchronized boolean autorizar() {
+        if (estado == EstadoCircuito.ABIERTO) {
+            if (System.currentTimeMillis() < abiertoHasta) {
+                throw new BlockchainNoDisponibleException("Circuito blockchain abierto");
+            }
+            estado = EstadoCircuito.SEMIABIERTO;
+            log.info("🟡 Circuito blockchain semiabierto: probando conexión");
+        }
+        if (estado == EstadoCircuito.SEMIABIERTO) {
+            if (pruebaEnCurso) {
+                throw new BlockchainNoDisponibleException("Circuito blockchain semiabierto: prueba en curso");
+            }
+            pruebaEnCurso = true;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void liberarPrueba(boolean esPrueba) {
+        if (esPrueba) {
+            pruebaEnCurso = false;
+        }
+    }
+
+    private synchronized void registrarExito() {
+        if (estado != EstadoCircuito.CERRADO) {
+            log.info("🟢 Circuito blockchain cerrado");
+        }
+        estado = EstadoCircuito.CERRADO;
+        fallosConsecutivos = 0;
+    }
+
+    private synchronized void registrarFallo() {
+        fallosConsecutivos++;
+        if (estado == EstadoCircuito.SEMIABIERTO || fallosConsecutivos >= umbralFallos) {
+            if (estado != EstadoCircuito.ABIERTO) {
+                log.warn("🔴 Circuito blockchain abierto tras {} fallos seguidos", fallosConsecutivos);
+            }
+            estado = EstadoCircuito.ABIERTO;
+            abiertoHasta = System.currentTimeMillis() + aperturaMs;
+        }
+    }
+}
@@ -4,31 +4,33 @@ import com.upao.recicla.blockchain.contracts.ReciclaToken;
 import com.upao.recicla.blockchain.dto.ActividadPropuesta;
 import com.upao.recicla.blockchain.dto.BlockchainBalance;
 import com.upao.recicla.blockchain.dto.TransactionResult;
+import com.upao.recicla.blockchain.service.NonceManagedTransactionManager.RegistroEnvio;
+import com.upao.recicla.infra.exception.TransaccionDifundidaException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.web3j.abi.FunctionEncoder;
-import org.web3j.abi.FunctionReturnDecoder;
-import org.web3j.abi.TypeReference;
-import org.web3j.abi.datatypes.Function;
-import org.web3j.abi.datatypes.Type;
 import org.web3j.crypto.Credentials;
 import org.web3j.crypto.Hash;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.protocol.core.methods.request.Transaction;
 import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthTransaction;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
-import org.web3j.tx.gas.StaticGasProvider;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+import org.web3j.tx.response.EmptyTransactionReceipt;
 import org.web3j.utils.Convert;
+import org.web3j.utils.Numeric;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 @Service
 @ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
@@ -36,34 +38,102 @@ import java.util.List;
 @Slf4j
 public class BlockchainService {
 
+    /**
+     * Situación de una transacción del backend cuyo hash y nonce se guardaron
+     * antes de difundirla
+     */
+    public enum EnvioPrevio {
+        /** El nodo la conoce (en el pool o minada): no se reenvía */
+        PRESENTE,
+        /** No existe y no puede aparecer: se puede reenviar */
+        AUSENTE,
+        /** Otra transacción ocupa su nonce en el pool: esperar a que se mine */
+        INDETERMINADO
+    }
+
     private final Web3j web3j;
     private final Credentials backendCredentials;
-    private final StaticGasProvider gasProvider;
     private final String tokenContractAddress;
+    private final ContractReadBatcher readBatcher;
+    private final ReciclaTokenRegistry contractRegistry;
+    private final GasOracle gasOracle;
+    private final ActividadScanEngine scanEngine;
+    private final BalanceCache balanceCache;
 
     public TransactionResult registerUserOnChain(String walletAddress, String dni) {
+        return registerUserOnChain(walletAddress, dni, null);
+    }
+
+    /**
+     * Registro en whitelist con registro previo del hash y el nonce (ver
+     * {@link #proponerActividad(String, Integer, String, String, RegistroEnvio)})
+     */
+    public TransactionResult registerUserOnChain(String walletAddress, String dni, RegistroEnvio registro) {
         try {
             log.info("📝 Registrando usuario en blockchain: wallet={}", walletAddress);
 
             String dniHash = Hash.sha3String(dni);
 
-            ReciclaToken contract = ReciclaToken.load(
-                    tokenContractAddress,
-                    web3j,
-                    backendCredentials,
-                    gasProvider);
+            ReciclaToken contract = contractRegistry.backend();
 
-            TransactionReceipt receipt = contract.addToWhitelist(walletAddress, dniHash).send();
+            TransactionReceipt receipt = enviarRegistrado(registro,
+                    () -> contract.addToWhitelist(walletAddress, dniHash).send());
 
             log.info("✅ Usuario registrado. TX: {}", receipt.getTransactionHash());
 
-            return TransactionResult.success(
-                    receipt.getTransactionHash(),
-                    receipt.getBlockNumber().longValue());
+            return resultado(receipt, ReciclaToken.FUNC_ADDTOWHITELIST);
 
+        } catch (TransaccionDifundidaException e) {
+            log.warn("⚠️ Registro en whitelist difundido sin confirmación, queda pendiente: {}", e.getMessage());
+            return TransactionResult.difusionNoConfirmada(e.getTransactionHash());
         } catch (Exception e) {
             log.error("❌ Error registrando usuario", e);
-            return TransactionResult.failure(e.getMessage());
+            return fallo(e);
+        }
+    }
+
+    /**
+     * Registra varios usuarios en la whitelist con una sola transacción
+     * (addMultipleToWhitelist)
+     *
+     * @param walletAddresses Wallets de los usuarios
+     * @param dnis            DNIs en el mismo orden que las wallets
+     * @return Resultado de la transacción
+     */
+    public TransactionResult registerUsersOnChain(List<String> walletAddresses, List<String> dnis) {
+        return registerUsersOnChain(walletAddresses, dnis, null);
+    }
+
+    /**
+     * Registro por lotes con registro previo del hash y el nonce
+     */
+    public TransactionResult registerUsersOnChain(List<String> walletAddresses, List<String> dnis,
+            RegistroEnvio registro) {
+        try {
+            log.info("📝 Registrando {} usuarios en blockchain", walletAddresses.size());
+
+            List<String> dniHashes = dnis.stream().map(Hash::sha3String).toList();
+
+            // El consumo crece con el tamaño del lote: estimar en vez de usar el límite aprendido
+            String data = contractRegistry.backend().addMultipleToWhitelist(walletAddresses, dniHashes)
+                    .encodeFunctionCall();
+            BigInteger gasLimit = gasOracle.estimarGasLimit(backendCredentials.getAddress(), tokenContractAddress, data);
+
+            ReciclaToken contract = contractRegistry.backend(gasOracle.conGasLimit(gasLimit));
+
+            TransactionReceipt receipt = enviarRegistrado(registro,
+                    () -> contract.addMultipleToWhitelist(walletAddresses, dniHashes).send());
+
+            log.info("✅ {} usuarios registrados. TX: {}", walletAddresses.size(), receipt.getTransactionHash());
+
+            return resultado(receipt, ReciclaToken.FUNC_ADDMULTIPLETOWHITELIST);
+
+        } catch (TransaccionDifundidaException e) {
+            log.warn("⚠️ Lote de whitelist difundido sin confirmación, queda pendiente: {}", e.getMessage());
+            return TransactionResult.difusionNoConfirmada(e.getTransactionHash());
+        } catch (Exception e) {
+            log.error("❌ Error registrando usuarios en lote", e);
+            return fallo(e);
         }
     }
 
@@ -82,33 +152,41 @@ public class BlockchainService {
      */
     public TransactionResult proponerActividad(String userWallet, Integer pesoKg, String tipoMaterial,
             String evidenciaIPFS) {
+        return proponerActividad(userWallet, pesoKg, tipoMaterial, evidenciaIPFS, null);
+    }
+
+    /**
+     * Igual que {@link #proponerActividad(String, Integer, String, String)}
+     * avisando al registro con el hash y el nonce antes de difundir la
+     * transacción. Si falla después de difundirla el resultado queda
+     * pendiente con ese hash en lugar de fallido.
+     */
+    public TransactionResult proponerActividad(String userWallet, Integer pesoKg, String tipoMaterial,
+            String evidenciaIPFS, RegistroEnvio registro) {
         try {
             log.info("📝 Proponiendo actividad: usuario={}, material={}, peso={}kg, evidencia={}",
                     userWallet, tipoMaterial, pesoKg, evidenciaIPFS);
 
-            ReciclaToken contract = ReciclaToken.load(
-                    tokenContractAddress,
-                    web3j,
-                    backendCredentials,
-                    gasProvider);
+            ReciclaToken contract = contractRegistry.backend();
 
             // Llamar a proponerActividad en el contrato
-            TransactionReceipt receipt = contract.proponerActividad(
+            TransactionReceipt receipt = enviarRegistrado(registro, () -> contract.proponerActividad(
                     userWallet,
                     BigInteger.valueOf(pesoKg),
                     tipoMaterial,
-                    evidenciaIPFS).send();
+                    evidenciaIPFS).send());
 
             log.info("✅ Actividad propuesta. TX: {} - Esperando aprobación de validadores (0/2)",
                     receipt.getTransactionHash());
 
-            return TransactionResult.success(
-                    receipt.getTransactionHash(),
-                    receipt.getBlockNumber().longValue());
+            return resultado(receipt, ReciclaToken.FUNC_PROPONERACTIVIDAD);
 
+        } catch (TransaccionDifundidaException e) {
+            log.warn("⚠️ Propuesta difundida sin confirmación, queda pendiente: {}", e.getMessage());
+            return TransactionResult.difusionNoConfirmada(e.getTransactionHash());
         } catch (Exception e) {
             log.error("❌ Error proponiendo actividad", e);
-            return TransactionResult.failure(e.getMessage());
+            return fallo(e);
         }
     }
 
@@ -124,19 +202,14 @@ public class BlockchainService {
         try {
             log.info("✅ Validador aprobando actividad #{}", actividadId);
 
-            ReciclaToken contract = ReciclaToken.load(
-                    tokenContractAddress,
-                    web3j,
-                    validadorCredentials, // Importante: usar credenciales del validador
-                    gasProvider);
+            // Importante: usar credenciales del validador
+            ReciclaToken contract = contractRegistry.contrato(validadorCredentials);
 
             TransactionReceipt receipt = contract.aprobarActividad(actividadId).send();
 
             log.info("✅ Actividad aprobada. TX: {}", receipt.getTransactionHash());
 
-            return TransactionResult.success(
-                    receipt.getTransactionHash(),
-                    receipt.getBlockNumber().longValue());
+            return resultado(receipt, ReciclaToken.FUNC_APROBARACTIVIDAD);
 
         } catch (Exception e) {
             log.error("❌ Error aprobando actividad", e);
@@ -156,19 +229,13 @@ public class BlockchainService {
         try {
             log.info("❌ Validador rechazando actividad #{}: {}", actividadId, razon);
 
-            ReciclaToken contract = ReciclaToken.load(
-                    tokenContractAddress,
-                    web3j,
-                    validadorCredentials,
-                    gasProvider);
+            ReciclaToken contract = contractRegistry.contrato(validadorCredentials);
 
             TransactionReceipt receipt = contract.rechazarActividad(actividadId, razon).send();
 
             log.info("✅ Actividad rechazada. TX: {}", receipt.getTransactionHash());
 
-            return TransactionResult.success(
-                    receipt.getTransactionHash(),
-                    receipt.getBlockNumber().longValue());
+            return resultado(receipt, ReciclaToken.FUNC_RECHAZARACTIVIDAD);
 
         } catch (Exception e) {
             log.error("❌ Error rechazando actividad", e);
@@ -176,6 +243,21 @@ public class BlockchainService {
         }
     }
 
+    /**
+     * Con envío asíncrono el contrato devuelve un recibo vacío (solo hash):
+     * la transacción queda pendiente hasta que el tracker obtenga el recibo.
+     * Con recibo real se registra el gas consumido por la función.
+     */
+    private TransactionResult resultado(TransactionReceipt receipt, String funcion) {
+        if (receipt instanceof EmptyTransactionReceipt) {
+            return TransactionResult.pending(receipt.getTransactionHash());
+        }
+        gasOracle.registrarConsumo(funcion, receipt.getGasUsed());
+        return TransactionResult.success(
+                receipt.getTransactionHash(),
+                receipt.getBlockNumber().longValue());
+    }
+
     /**
      * Consulta información de una actividad propuesta
      *
@@ -184,26 +266,8 @@ public class BlockchainService {
      */
     public ActividadPropuesta getActividad(BigInteger actividadId) {
         try {
-            ReciclaToken contract = ReciclaToken.load(
-                    tokenContractAddress,
-                    web3j,
-                    backendCredentials,
-                    gasProvider);
-
-            org.web3j.tuples.generated.Tuple10<String, BigInteger, String, String, BigInteger, BigInteger, BigInteger, Boolean, Boolean, String> actividad = contract
-                    .getActividad(actividadId).send();
-
-            return ActividadPropuesta.builder()
-                    .actividadId(actividadId.longValue())
-                    .usuarioWallet(actividad.component1())
-                    .pesoKg(actividad.component2().intValue())
-                    .tipoMaterial(actividad.component3())
-                    .evidenciaIPFS(actividad.component4())
-                    .tokensCalculados(Convert.fromWei(actividad.component5().toString(), Convert.Unit.ETHER))
-                    .aprobaciones(actividad.component7().intValue())
-                    .ejecutada(actividad.component8())
-                    .rechazada(actividad.component9())
-                    .build();
+            String respuesta = llamar(ActividadCodec.llamadaGetActividad(actividadId), DefaultBlockParameterName.LATEST);
+            return ActividadCodec.decodificarGetActividad(actividadId.longValue(), respuesta);
 
         } catch (Exception e) {
             log.error("❌ Error consultando actividad", e);
@@ -212,41 +276,144 @@ public class BlockchainService {
     }
 
     public TransactionResult burnTokensForRedemption(String userWallet, BigDecimal tokenAmount, String description) {
+        return burnTokensForRedemption(userWallet, tokenAmount, description, null);
+    }
+
+    /**
+     * Quema con registro previo del hash y el nonce (ver
+     * {@link #proponerActividad(String, Integer, String, String, RegistroEnvio)})
+     */
+    public TransactionResult burnTokensForRedemption(String userWallet, BigDecimal tokenAmount, String description,
+            RegistroEnvio registro) {
         try {
             log.info("🔥 Quemando {} REC de {}", tokenAmount, userWallet);
 
             BigInteger amountInWei = Convert.toWei(tokenAmount, Convert.Unit.ETHER).toBigInteger();
 
-            ReciclaToken contract = ReciclaToken.load(tokenContractAddress, web3j, backendCredentials, gasProvider);
+            ReciclaToken contract = contractRegistry.backend();
 
-            TransactionReceipt receipt = contract.burnForRedemption(userWallet, amountInWei, description).send();
+            TransactionReceipt receipt = enviarRegistrado(registro,
+                    () -> contract.burnForRedemption(userWallet, amountInWei, description).send());
 
             log.info("✅ Tokens quemados. TX: {}", receipt.getTransactionHash());
 
-            return TransactionResult.success(receipt.getTransactionHash(), receipt.getBlockNumber().longValue());
+            return resultado(receipt, ReciclaToken.FUNC_BURNFORREDEMPTION);
 
+        } catch (TransaccionDifundidaException e) {
+            log.warn("⚠️ Quema difundida sin confirmación, queda pendiente: {}", e.getMessage());
+            return TransactionResult.difusionNoConfirmada(e.getTransactionHash());
         } catch (Exception e) {
             log.error("❌ Error quemando tokens", e);
-            return TransactionResult.failure(e.getMessage());
+            return fallo(e);
+        }
+    }
+
+    /**
+     * Comprueba si una transacción del backend ya registrada (hash y nonce
+     * guardados antes de difundirla) existe antes de reenviarla:
+     * - el nodo la conoce por su hash: PRESENTE
+     * - su nonce ya está minado por otra transacción, o no hay nada en el pool
+     *   con ese nonce: AUSENTE
+     * - otra transacción ocupa su nonce en el pool: INDETERMINADO
+     *
+     * @param nonce Nonce de la transacción, o null si no se conoce
+     */
+    public EnvioPrevio consultarEnvioPrevio(String hash, Long nonce) throws IOException {
+        EthTransaction transaccion = web3j.ethGetTransactionByHash(hash).send();
+        if (transaccion.hasError()) {
+            throw new IOException("eth_getTransactionByHash falló: " + transaccion.getError().getMessage());
+        }
+        if (transaccion.getTransaction().isPresent()) {
+            return EnvioPrevio.PRESENTE;
+        }
+        if (nonce == null || contarTransacciones(DefaultBlockParameterName.LATEST) > nonce) {
+            return EnvioPrevio.AUSENTE;
+        }
+        return contarTransacciones(DefaultBlockParameterName.PENDING) > nonce
+                ? EnvioPrevio.INDETERMINADO
+                : EnvioPrevio.AUSENTE;
+    }
+
+    private long contarTransacciones(DefaultBlockParameterName bloque) throws IOException {
+        EthGetTransactionCount response = web3j
+                .ethGetTransactionCount(backendCredentials.getAddress(), bloque)
+                .send();
+        if (response.hasError()) {
+            throw new IOException("eth_getTransactionCount falló: " + response.getError().getMessage());
+        }
+        return response.getTransactionCount().longValue();
+    }
+
+    private <T> T enviarRegistrado(RegistroEnvio registro, Callable<T> envio) throws Exception {
+        if (registro == null) {
+            return envio.call();
+        }
+        return contractRegistry.backendTransactionManager().enviarRegistrado(registro, envio);
+    }
+
+    /**
+     * Los fallos sin difusión de la transacción (red caída, nodo sin responder
+     * a las lecturas previas, nonce ya usado) son transitorios; un revert u
+     * otro rechazo del nodo no se reintenta
+     */
+    private static TransactionResult fallo(Exception e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof ContractReadBatcher.ErrorRespuesta) {
+                break;
+            }
+            if (causa instanceof IOException || causa instanceof ClientConnectionException) {
+                return TransactionResult.transitorio(e.getMessage());
+            }
+        }
+        String mensaje = e.getMessage() != null ? e.getMessage().toLowerCase() : "";
+        if (mensaje.contains("nonce too low") || mensaje.contains("replacement transaction underpriced")) {
+            return TransactionResult.transitorio(e.getMessage());
         }
+        return TransactionResult.failure(e.getMessage());
     }
 
+    /**
+     * Consulta balance, totales y estado de whitelist de un usuario en un único
+     * batch JSON-RPC. Se sirve desde la caché mientras no haya eventos que
+     * afecten a la wallet.
+     *
+     * El batch se fija al último bloque procesado por la caché, sin consultar
+     * antes eth_blockNumber; mientras la caché no esté inicializada se lee en
+     * latest y el resultado no se cachea.
+     */
     public BlockchainBalance getUserBalance(String walletAddress) {
+        BlockchainBalance cacheado = balanceCache.obtener(walletAddress);
+        if (cacheado != null) {
+            return cacheado;
+        }
+
         try {
-            ReciclaToken contract = ReciclaToken.load(tokenContractAddress, web3j, backendCredentials, gasProvider);
-
-            BigInteger balance = contract.balanceOf(walletAddress).send();
-            BigInteger earned = contract.totalTokensEarnedByUser(walletAddress).send();
-            BigInteger spent = contract.totalTokensSpentByUser(walletAddress).send();
-            boolean isWhitelisted = contract.isWhitelisted(walletAddress).send();
-
-            return BlockchainBalance.builder()
-                    .currentBalance(Convert.fromWei(balance.toString(), Convert.Unit.ETHER))
-                    .totalEarned(Convert.fromWei(earned.toString(), Convert.Unit.ETHER))
-                    .totalSpent(Convert.fromWei(spent.toString(), Convert.Unit.ETHER))
-                    .isWhitelisted(isWhitelisted)
+            ReciclaToken contract = contractRegistry.backend();
+
+            long bloque = balanceCache.getProcesadoHasta();
+            ContractReadBatcher.Lote lote = readBatcher.nuevoLote(bloque >= 0
+                    ? DefaultBlockParameter.valueOf(BigInteger.valueOf(bloque))
+                    : DefaultBlockParameterName.LATEST);
+            ContractReadBatcher.Lectura<BigInteger> balance = lote.agregar(contract.balanceOf(walletAddress));
+            ContractReadBatcher.Lectura<BigInteger> earned = lote.agregar(contract.totalTokensEarnedByUser(walletAddress));
+            ContractReadBatcher.Lectura<BigInteger> spent = lote.agregar(contract.totalTokensSpentByUser(walletAddress));
+            ContractReadBatcher.Lectura<Boolean> isWhitelisted = lote.agregar(contract.isWhitelisted(walletAddress));
+            lote.ejecutar();
+
+            BlockchainBalance resultado = BlockchainBalance.builder()
+                    .currentBalance(Convert.fromWei(balance.get().toString(), Convert.Unit.ETHER))
+                    .totalEarned(Convert.fromWei(earned.get().toString(), Convert.Unit.ETHER))
+                    .totalSpent(Convert.fromWei(spent.get().toString(), Convert.Unit.ETHER))
+                    .isWhitelisted(isWhitelisted.get())
+                    .blockNumber(bloque >= 0 ? bloque : null)
+                    .stalenessMs(0L)
                     .build();
 
+            if (bloque >= 0) {
+                balanceCache.guardar(walletAddress, resultado, bloque);
+            }
+            return resultado;
+
         } catch (Exception e) {
             log.error("❌ Error consultando balance", e);
             return null;
@@ -255,141 +422,64 @@ public class BlockchainService {
 
     /**
      * Obtiene todas las actividades pendientes (no ejecutadas ni rechazadas)
+     * recorriendo el contrato por chunks concurrentes
      */
     public List<ActividadPropuesta> getPropuestasPendientes() {
-        List<ActividadPropuesta> propuestasPendientes = new ArrayList<>();
-
         try {
-            // Obtener el contador total de actividades llamando directamente al contrato
-            BigInteger totalActividades = getActividadCounter();
-
-            log.info("📊 Total de actividades en blockchain: {}", totalActividades);
-
-            // Iterar sobre todas las actividades y filtrar las pendientes
-            for (BigInteger i = BigInteger.ZERO; i.compareTo(totalActividades) < 0; i = i.add(BigInteger.ONE)) {
-                try {
-                    ActividadPropuesta propuesta = getActividadDirecta(i);
-
-                    // Solo incluir actividades pendientes (no ejecutadas ni rechazadas)
-                    if (propuesta != null && !propuesta.getEjecutada() && !propuesta.getRechazada()) {
-                        propuestasPendientes.add(propuesta);
-                    }
-                } catch (Exception e) {
-                    log.warn("⚠️ Error procesando actividad {}: {}", i, e.getMessage());
-                }
-            }
+            List<ActividadPropuesta> propuestasPendientes = scanEngine.escanear(
+                    propuesta -> !propuesta.getEjecutada() && !propuesta.getRechazada());
 
             log.info("✅ Propuestas pendientes encontradas: {}", propuestasPendientes.size());
+            return propuestasPendientes;
 
         } catch (Exception e) {
             log.error("❌ Error obteniendo propuestas pendientes", e);
+            return new ArrayList<>();
         }
-
-        return propuestasPendientes;
     }
 
     /**
-     * Obtiene una actividad llamando directamente al contrato sin wrapper
+     * Obtiene todas las actividades (pendientes o no) tal como estaban en un
+     * bloque concreto. Usado para inicializar el índice local de propuestas.
+     *
+     * @param bloque Número de bloque en el que se fija la lectura
+     * @return Actividades en orden de ID
      */
-    private ActividadPropuesta getActividadDirecta(BigInteger actividadId) throws Exception {
-        // Crear la función para llamar a actividades(uint256)
-        Function function = new Function(
-                "actividades",
-                Collections.singletonList(new org.web3j.abi.datatypes.generated.Uint256(actividadId)),
-                Arrays.asList(
-                        new TypeReference<org.web3j.abi.datatypes.generated.Uint256>() {
-                        }, // id
-                        new TypeReference<org.web3j.abi.datatypes.Address>() {
-                        }, // usuario
-                        new TypeReference<org.web3j.abi.datatypes.generated.Uint256>() {
-                        }, // pesoKg
-                        new TypeReference<org.web3j.abi.datatypes.Utf8String>() {
-                        }, // tipoMaterial
-                        new TypeReference<org.web3j.abi.datatypes.Utf8String>() {
-                        }, // evidenciaIPFS
-                        new TypeReference<org.web3j.abi.datatypes.generated.Uint256>() {
-                        }, // tokensCalculados
-                        new TypeReference<org.web3j.abi.datatypes.generated.Uint256>() {
-                        }, // timestamp
-                        new TypeReference<org.web3j.abi.datatypes.generated.Uint8>() {
-                        }, // aprobaciones
-                        new TypeReference<org.web3j.abi.datatypes.Bool>() {
-                        }, // ejecutada
-                        new TypeReference<org.web3j.abi.datatypes.Bool>() {
-                        }, // rechazada
-                        new TypeReference<org.web3j.abi.datatypes.Address>() {
-                        } // propuestoPor
-                ));
-
-        String encodedFunction = FunctionEncoder.encode(function);
-
-        EthCall response = web3j.ethCall(
-                Transaction.createEthCallTransaction(
-                        backendCredentials.getAddress(),
-                        tokenContractAddress,
-                        encodedFunction),
-                DefaultBlockParameterName.LATEST).send();
-
-        List<Type> result = FunctionReturnDecoder.decode(
-                response.getValue(),
-                function.getOutputParameters());
+    public List<ActividadPropuesta> getActividadesEnBloque(long bloque) throws Exception {
+        return scanEngine.escanear(bloque, propuesta -> true);
+    }
 
-        if (result.isEmpty() || result.size() < 11) {
+    /**
+     * Estado de una actividad tal como estaba en un bloque concreto
+     *
+     * @return La actividad, o null si no existía en ese bloque
+     */
+    public ActividadPropuesta getActividadEnBloque(BigInteger actividadId, long bloque) throws IOException {
+        String respuesta = llamar(ActividadCodec.llamadaActividades(actividadId),
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(bloque)));
+        ActividadPropuesta actividad = ActividadCodec.decodificarActividades(actividadId.longValue(), respuesta);
+        // Un ID aún no creado devuelve la estructura vacía (usuario = 0x0)
+        if (actividad == null || new BigInteger(Numeric.cleanHexPrefix(actividad.getUsuarioWallet()), 16).signum() == 0) {
             return null;
         }
-
-        // Extraer valores del resultado
-        String usuarioWallet = result.get(1).getValue().toString();
-        BigInteger pesoKg = (BigInteger) result.get(2).getValue();
-        String tipoMaterial = result.get(3).getValue().toString();
-        String evidenciaIPFS = result.get(4).getValue().toString();
-        BigInteger tokensCalculadosWei = (BigInteger) result.get(5).getValue();
-        BigInteger aprobaciones = (BigInteger) result.get(7).getValue();
-        Boolean ejecutada = (Boolean) result.get(8).getValue();
-        Boolean rechazada = (Boolean) result.get(9).getValue();
-
-        return ActividadPropuesta.builder()
-                .actividadId(actividadId.longValue())
-                .usuarioWallet(usuarioWallet)
-                .pesoKg(pesoKg.intValue())
-                .tipoMaterial(tipoMaterial)
-                .evidenciaIPFS(evidenciaIPFS)
-                .tokensCalculados(Convert.fromWei(tokensCalculadosWei.toString(), Convert.Unit.ETHER))
-                .aprobaciones(aprobaciones.intValue())
-                .ejecutada(ejecutada)
-                .rechazada(rechazada)
-                .build();
+        return actividad;
     }
 
     /**
-     * Obtiene el contador de actividades directamente del contrato
+     * eth_call al contrato con datos ya codificados; devuelve el hex de la respuesta
      */
-    private BigInteger getActividadCounter() throws Exception {
-        // Crear la función para llamar a actividadCounter()
-        Function function = new Function(
-                "actividadCounter",
-                Collections.emptyList(),
-                Collections.singletonList(new TypeReference<org.web3j.abi.datatypes.generated.Uint256>() {
-                }));
-
-        String encodedFunction = FunctionEncoder.encode(function);
-
+    private String llamar(String data, DefaultBlockParameter bloque) throws IOException {
         EthCall response = web3j.ethCall(
                 Transaction.createEthCallTransaction(
                         backendCredentials.getAddress(),
                         tokenContractAddress,
-                        encodedFunction),
-                DefaultBlockParameterName.LATEST).send();
+                        data),
+                bloque).send();
 
-        List<Type> result = FunctionReturnDecoder.decode(
-                response.getValue(),
-                function.getOutputParameters());
-
-        if (result.isEmpty()) {
-            return BigInteger.ZERO;
+        if (response.hasError()) {
+            throw new IOException("eth_call falló: " + response.getError().getMessage());
         }
-
-        return (BigInteger) result.get(0).getValue();
+        return response.getValue();
     }
 
 }
\ No newline at end of file
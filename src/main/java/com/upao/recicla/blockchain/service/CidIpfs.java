@@ -0,0 +1,263 @@
+package com.upao.recicla.blockchain.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cálculo y validación local de CIDs de IPFS
+ *
+ * {@link #calcularCidV0(InputStream)} reproduce lo que hace Pinata (kubo) con
+ * pinFileToIPFS por defecto: CIDv0, troceado en bloques de 256 KiB, hojas
+ * dag-pb con datos UnixFS y, si hay más de un bloque, un nodo raíz que los
+ * enlaza. Se lee en streaming con un buffer del tamaño de un bloque.
+ *
+ * {@link #esValido(String)} decodifica el CID y comprueba su multihash.
+ */
+public final class CidIpfs {
+
+    static final int TAMANO_BLOQUE = 256 * 1024;
+    // Enlaces máximos por nodo en el layout balanceado de kubo; más bloques requieren varios niveles
+    static final int MAX_ENLACES = 174;
+
+    private static final int MULTIHASH_SHA2_256 = 0x12;
+    private static final int LONGITUD_SHA2_256 = 32;
+    private static final int UNIXFS_FILE = 2;
+
+    private static final String ALFABETO_BASE58 = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+    private static final String ALFABETO_BASE32 = "abcdefghijklmnopqrstuvwxyz234567";
+    private static final BigInteger CINCUENTA_Y_OCHO = BigInteger.valueOf(58);
+
+    private CidIpfs() {
+    }
+
+    /**
+     * CIDv0 del contenido tal como lo fijaría Pinata
+     *
+     * @return El CID, o null si el contenido necesitaría un DAG de más de un
+     *         nivel (más de 174 bloques, ~43 MB)
+     */
+    public static String calcularCidV0(InputStream in) throws IOException {
+        byte[] buffer = new byte[TAMANO_BLOQUE];
+        List<byte[]> hashesHojas = new ArrayList<>();
+        List<Long> tamanosHojas = new ArrayList<>();
+        List<Long> tamanosBloques = new ArrayList<>();
+        byte[] primeraHoja = null;
+        long total = 0;
+
+        int leidos;
+        while ((leidos = leerBloque(in, buffer)) > 0) {
+            if (hashesHojas.size() == MAX_ENLACES) {
+                return null;
+            }
+            byte[] hoja = nodo(List.of(), List.of(), unixfs(buffer, leidos, leidos, List.of()));
+            if (primeraHoja == null) {
+                primeraHoja = hoja;
+            }
+            hashesHojas.add(multihash(hoja));
+            tamanosHojas.add((long) hoja.length);
+            tamanosBloques.add((long) leidos);
+            total += leidos;
+        }
+
+        if (hashesHojas.isEmpty()) {
+            return base58(multihash(nodo(List.of(), List.of(), unixfs(null, 0, 0, List.of()))));
+        }
+        if (hashesHojas.size() == 1) {
+            return base58(multihash(primeraHoja));
+        }
+        byte[] raiz = nodo(hashesHojas, tamanosHojas, unixfs(null, 0, total, tamanosBloques));
+        return base58(multihash(raiz));
+    }
+
+    /**
+     * true si el texto es un CIDv0 (base58, multihash sha2-256) o un CIDv1
+     * (multibase base32 "b" o base58 "z") con un multihash bien formado
+     */
+    public static boolean esValido(String cid) {
+        if (cid == null || cid.isEmpty()) {
+            return false;
+        }
+        try {
+            if (cid.length() == 46 && cid.startsWith("Qm")) {
+                byte[] multihash = decodificarBase58(cid);
+                return multihash.length == 2 + LONGITUD_SHA2_256
+                        && multihash[0] == MULTIHASH_SHA2_256
+                        && multihash[1] == LONGITUD_SHA2_256;
+            }
+
+            byte[] bytes;
+            if (cid.charAt(0) == 'b') {
+                bytes = decodificarBase32(cid.substring(1));
+            } else if (cid.charAt(0) == 'z') {
+                bytes = decodificarBase58(cid.substring(1));
+            } else {
+                return false;
+            }
+
+            int[] posicion = {0};
+            long version = leerVarint(bytes, posicion);
+            leerVarint(bytes, posicion); // codec del contenido (dag-pb, raw, ...)
+            leerVarint(bytes, posicion); // función de hash
+            long longitud = leerVarint(bytes, posicion);
+            return version == 1 && longitud > 0 && bytes.length - posicion[0] == longitud;
+
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Nodo dag-pb; como en kubo, los enlaces se serializan antes que Data
+     */
+    private static byte[] nodo(List<byte[]> hashes, List<Long> tamanos, byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + hashes.size() * 48 + 8);
+        for (int i = 0; i < hashes.size(); i++) {
+            ByteArrayOutputStream enlace = new ByteArrayOutputStream(48);
+            campoBytes(enlace, 1, hashes.get(i), hashes.get(i).length); // Hash
+            campoBytes(enlace, 2, new byte[0], 0);                     // Name (vacío, siempre presente)
+            campoVarint(enlace, 3, tamanos.get(i));                    // Tsize
+            campoBytes(out, 2, enlace.toByteArray(), enlace.size());
+        }
+        campoBytes(out, 1, data, data.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Mensaje UnixFS de tipo File
+     */
+    private static byte[] unixfs(byte[] datos, int longitud, long tamanoArchivo, List<Long> tamanosBloques) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(longitud + 16 + tamanosBloques.size() * 4);
+        campoVarint(out, 1, UNIXFS_FILE);
+        if (datos != null) {
+            campoBytes(out, 2, datos, longitud);
+        }
+        campoVarint(out, 3, tamanoArchivo);
+        for (Long tamano : tamanosBloques) {
+            campoVarint(out, 4, tamano);
+        }
+        return out.toByteArray();
+    }
+
+    private static void campoBytes(ByteArrayOutputStream out, int campo, byte[] valor, int longitud) {
+        escribirVarint(out, (long) campo << 3 | 2);
+        escribirVarint(out, longitud);
+        out.write(valor, 0, longitud);
+    }
+
+    private static void campoVarint(ByteArrayOutputStream out, int campo, long valor) {
+        escribirVarint(out, (long) campo << 3);
+        escribirVarint(out, valor);
+    }
+
+    private static void escribirVarint(ByteArrayOutputStream out, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            out.write((int) (valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        out.write((int) valor);
+    }
+
+    private static long leerVarint(byte[] bytes, int[] posicion) {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            if (posicion[0] >= bytes.length) {
+                throw new IllegalArgumentException("Varint truncado");
+            }
+            int b = bytes[posicion[0]++] & 0xFF;
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IllegalArgumentException("Varint demasiado largo");
+    }
+
+    private static byte[] multihash(byte[] bloque) {
+        byte[] digest = sha256(bloque);
+        byte[] multihash = new byte[2 + digest.length];
+        multihash[0] = MULTIHASH_SHA2_256;
+        multihash[1] = (byte) digest.length;
+        System.arraycopy(digest, 0, multihash, 2, digest.length);
+        return multihash;
+    }
+
+    private static byte[] sha256(byte[] datos) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(datos);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int leerBloque(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int leidos = in.read(buffer, total, buffer.length - total);
+            if (leidos < 0) {
+                break;
+            }
+            total += leidos;
+        }
+        return total;
+    }
+
+    private static String base58(byte[] bytes) {
+        StringBuilder texto = new StringBuilder();
+        BigInteger valor = new BigInteger(1, bytes);
+        while (valor.signum() > 0) {
+            BigInteger[] division = valor.divideAndRemainder(CINCUENTA_Y_OCHO);
+            texto.append(ALFABETO_BASE58.charAt(division[1].intValue()));
+            valor = division[0];
+        }
+        for (int i = 0; i < bytes.length && bytes[i] == 0; i++) {
+            texto.append(ALFABETO_BASE58.charAt(0));
+        }
+        return texto.reverse().toString();
+    }
+
+    private static byte[] decodificarBase58(String texto) {
+        BigInteger valor = BigInteger.ZERO;
+        int cerosIniciales = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            int digito = ALFABETO_BASE58.indexOf(texto.charAt(i));
+            if (digito < 0) {
+                throw new IllegalArgumentException("Carácter no base58: " + texto.charAt(i));
+            }
+            if (valor.signum() == 0 && digito == 0) {
+                cerosIniciales++;
+            }
+            valor = valor.multiply(CINCUENTA_Y_OCHO).add(BigInteger.valueOf(digito));
+        }
+
+        byte[] magnitud = valor.signum() == 0 ? new byte[0] : valor.toByteArray();
+        int inicio = magnitud.length > 1 && magnitud[0] == 0 ? 1 : 0;
+        byte[] bytes = new byte[cerosIniciales + magnitud.length - inicio];
+        System.arraycopy(magnitud, inicio, bytes, cerosIniciales, magnitud.length - inicio);
+        return bytes;
+    }
+
+    private static byte[] decodificarBase32(String texto) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(texto.length() * 5 / 8);
+        int acumulado = 0;
+        int bits = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            int digito = ALFABETO_BASE32.indexOf(texto.charAt(i));
+            if (digito < 0) {
+                throw new IllegalArgumentException("Carácter no base32: " + texto.charAt(i));
+            }
+            acumulado = (acumulado << 5) | digito;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                out.write((acumulado >> bits) & 0xFF);
+            }
+        }
+        return out.toByteArray();
+    }
+}
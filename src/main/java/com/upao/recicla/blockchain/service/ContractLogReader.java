@@ -0,0 +1,124 @@
+package com.upao.recicla.blockchain.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.datatypes.Event;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lectura de logs del contrato ReciclaToken por rangos de bloques
+ * Compartido por las proyecciones que se construyen a partir de eventos
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ContractLogReader {
+
+    private final Web3j web3j;
+    private final String tokenContractAddress;
+
+    @Value("${blockchain.logs.bloques-por-batch:100}")
+    private int bloquesPorBatch;
+
+    /**
+     * Obtiene los logs del contrato en el rango [desde, hasta] que coincidan con
+     * cualquiera de los eventos indicados, en orden de bloque y posición
+     */
+    public List<Log> leerLogs(long desde, long hasta, Event... eventos) throws IOException {
+        EthFilter filter = new EthFilter(
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(desde)),
+                DefaultBlockParameter.valueOf(BigInteger.valueOf(hasta)),
+                tokenContractAddress);
+
+        String[] topicos = new String[eventos.length];
+        for (int i = 0; i < eventos.length; i++) {
+            topicos[i] = topico(eventos[i]);
+        }
+        filter.addOptionalTopics(topicos);
+
+        EthLog ethLog = web3j.ethGetLogs(filter).send();
+        if (ethLog.hasError()) {
+            throw new IOException("eth_getLogs falló: " + ethLog.getError().getMessage());
+        }
+
+        List<Log> logs = new ArrayList<>(ethLog.getLogs().size());
+        for (EthLog.LogResult<?> resultado : ethLog.getLogs()) {
+            logs.add((Log) resultado.get());
+        }
+        return logs;
+    }
+
+    public long getUltimoBloque() throws IOException {
+        EthBlockNumber response = web3j.ethBlockNumber().send();
+        if (response.hasError()) {
+            throw new IOException("eth_blockNumber falló: " + response.getError().getMessage());
+        }
+        return response.getBlockNumber().longValue();
+    }
+
+    /**
+     * Timestamp (segundos) de cada bloque indicado, con eth_getBlockByNumber
+     * sin transacciones en batches de como máximo bloquesPorBatch bloques
+     * (los proveedores limitan el tamaño de un batch)
+     */
+    public Map<Long, Long> leerTimestamps(Collection<Long> bloques) throws IOException {
+        Map<Long, Long> timestamps = new HashMap<>();
+        Iterator<Long> pendientes = bloques.iterator();
+        while (pendientes.hasNext()) {
+            BatchRequest batch = web3j.newBatch();
+            Map<Long, Long> bloquePorId = new HashMap<>();
+            while (pendientes.hasNext() && bloquePorId.size() < bloquesPorBatch) {
+                Long bloque = pendientes.next();
+                Request<?, EthBlock> request = web3j.ethGetBlockByNumber(
+                        DefaultBlockParameter.valueOf(BigInteger.valueOf(bloque)), false);
+                bloquePorId.put(request.getId(), bloque);
+                batch.add(request);
+            }
+
+            BatchResponse batchResponse = batch.send();
+            for (Response<?> response : batchResponse.getResponses()) {
+                Long bloque = bloquePorId.get(response.getId());
+                if (bloque == null || response.hasError() || ((EthBlock) response).getBlock() == null) {
+                    throw new IOException("eth_getBlockByNumber falló en batch para el bloque " + bloque);
+                }
+                timestamps.put(bloque, ((EthBlock) response).getBlock().getTimestamp().longValue());
+            }
+        }
+        if (timestamps.size() < bloques.size()) {
+            throw new IOException("Respuesta incompleta de eth_getBlockByNumber en batch");
+        }
+        return timestamps;
+    }
+
+    public static String topico(Event evento) {
+        return EventEncoder.encode(evento);
+    }
+
+    public static boolean esEvento(Log log, String topico) {
+        return !log.getTopics().isEmpty() && topico.equalsIgnoreCase(log.getTopics().get(0));
+    }
+}
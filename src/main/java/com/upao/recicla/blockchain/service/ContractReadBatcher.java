@@ -0,0 +1,185 @@
+package com.upao.recicla.blockchain.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.RemoteFunctionCall;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthCall;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agrupa varias funciones de solo lectura del contrato en un único batch
+ * JSON-RPC (un solo viaje de red), todas evaluadas sobre el mismo parámetro de
+ * bloque.
+ *
+ * Uso:
+ * <pre>
+ * ContractReadBatcher.Lote lote = readBatcher.nuevoLote();
+ * ContractReadBatcher.Lectura&lt;BigInteger&gt; balance = lote.agregar(contract.balanceOf(wallet));
+ * lote.ejecutar();
+ * balance.get();
+ * </pre>
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ContractReadBatcher {
+
+    private final Web3j web3j;
+    private final Credentials backendCredentials;
+    private final String tokenContractAddress;
+
+    public Lote nuevoLote() {
+        return new Lote(DefaultBlockParameterName.LATEST);
+    }
+
+    /**
+     * Lote fijado a un bloque concreto, para leer un estado consistente
+     */
+    public Lote nuevoLote(DefaultBlockParameter bloque) {
+        return new Lote(bloque);
+    }
+
+    public final class Lote {
+        private final DefaultBlockParameter bloque;
+        private final List<Lectura<?>> lecturas = new ArrayList<>();
+
+        private Lote(DefaultBlockParameter bloque) {
+            this.bloque = bloque;
+        }
+
+        public <T> Lectura<T> agregar(RemoteFunctionCall<T> llamada) {
+            Lectura<T> lectura = new Lectura<>(llamada);
+            lecturas.add(lectura);
+            return lectura;
+        }
+
+        /**
+         * Envía todas las lecturas en un único batch y resuelve cada
+         * {@link Lectura}
+         */
+        public void ejecutar() throws IOException {
+            if (lecturas.isEmpty()) {
+                return;
+            }
+
+            List<String> datos = new ArrayList<>(lecturas.size());
+            for (Lectura<?> lectura : lecturas) {
+                datos.add(lectura.llamada.encodeFunctionCall());
+            }
+
+            List<String> respuestas = llamarEnLote(datos, bloque);
+            for (int i = 0; i < lecturas.size(); i++) {
+                lecturas.get(i).resolver(respuestas.get(i));
+            }
+        }
+    }
+
+    /**
+     * Envía varias llamadas ya codificadas (selector + argumentos) en un único
+     * batch y devuelve el hex de cada respuesta, en el mismo orden
+     *
+     * @throws ErrorRespuesta si el nodo respondió con un error JSON-RPC o la
+     *         llamada revirtió
+     * @throws IOException si falla el transporte o falta alguna respuesta
+     */
+    public List<String> llamarEnLote(List<String> datos, DefaultBlockParameter bloque) throws IOException {
+        if (datos.isEmpty()) {
+            return List.of();
+        }
+
+        BatchRequest batch = web3j.newBatch();
+        List<Request<?, EthCall>> requests = new ArrayList<>(datos.size());
+        for (String data : datos) {
+            Request<?, EthCall> request = web3j.ethCall(
+                    Transaction.createEthCallTransaction(
+                            backendCredentials.getAddress(),
+                            tokenContractAddress,
+                            data),
+                    bloque);
+            requests.add(request);
+            batch.add(request);
+        }
+
+        BatchResponse batchResponse = batch.send();
+
+        // El orden de las respuestas de un batch JSON-RPC no está garantizado
+        Map<Long, Response<?>> porId = new HashMap<>();
+        for (Response<?> response : batchResponse.getResponses()) {
+            porId.put(response.getId(), response);
+        }
+
+        List<String> respuestas = new ArrayList<>(datos.size());
+        for (int i = 0; i < datos.size(); i++) {
+            EthCall response = (EthCall) porId.get(requests.get(i).getId());
+            if (response == null) {
+                throw new IOException("Respuesta faltante en batch para lectura #" + i);
+            }
+            if (response.hasError()) {
+                throw new ErrorRespuesta("eth_call falló: " + response.getError().getMessage());
+            }
+            if (response.isReverted()) {
+                throw new ErrorRespuesta("eth_call revertido: " + response.getRevertReason());
+            }
+            respuestas.add(response.getValue());
+        }
+        return respuestas;
+    }
+
+    /**
+     * El nodo respondió a la lectura con un error JSON-RPC (p. ej. execution
+     * reverted): a diferencia de un fallo de transporte, repetirla en el mismo
+     * bloque da el mismo resultado
+     */
+    public static final class ErrorRespuesta extends IOException {
+        public ErrorRespuesta(String mensaje) {
+            super(mensaje);
+        }
+    }
+
+    public static final class Lectura<T> {
+        private final RemoteFunctionCall<T> llamada;
+        private List<Type> valores;
+
+        private Lectura(RemoteFunctionCall<T> llamada) {
+            this.llamada = llamada;
+        }
+
+        private void resolver(String valorHex) {
+            this.valores = llamada.decodeFunctionResponse(valorHex);
+        }
+
+        /**
+         * Valores ABI decodificados (útil para funciones que devuelven tuplas)
+         */
+        public List<Type> getValores() {
+            if (valores == null) {
+                throw new IllegalStateException("El lote aún no se ha ejecutado");
+            }
+            return valores;
+        }
+
+        /**
+         * Valor de una función con un único retorno
+         */
+        @SuppressWarnings("unchecked")
+        public T get() {
+            return (T) getValores().get(0).getValue();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.DecisionActividad;
+import com.upao.recicla.blockchain.dto.ResultadoDecision;
+import com.upao.recicla.blockchain.dto.TransactionResult;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aprobación/rechazo de actividades por lotes para un validador
+ *
+ * Las transacciones se firman con las credenciales cacheadas del validador y
+ * se envían una tras otra; con envío asíncrono cada envío vuelve en cuanto el
+ * nodo la acepta y el NonceManager del validador encadena los nonces. Después
+ * se consultan los recibos de todas las pendientes en un único batch por
+ * ronda.
+ *
+ * Cada resultado se emite por SSE (evento "resultado"): PENDIENTE al enviar,
+ * CONFIRMADA o FALLIDA al conocer el recibo. Al terminar se emite "fin".
+ *
+ * Cada lote ocupa un hilo mientras espera sus recibos (hasta
+ * espera-maxima-ms), así que se procesan en un pool propio y acotado, sin
+ * compartir el executor de otros servicios; si está lleno el lote se rechaza.
+ */
+@Service
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class DecisionLoteService {
+
+    private final BlockchainService blockchainService;
+    private final TransactionReceiptTracker receiptTracker;
+    private final long intervaloMs;
+    private final long esperaMaximaMs;
+    private final ThreadPoolExecutor workers;
+
+    public DecisionLoteService(BlockchainService blockchainService,
+            TransactionReceiptTracker receiptTracker,
+            @Value("${blockchain.decisiones-lote.intervalo-ms:2000}") long intervaloMs,
+            @Value("${blockchain.decisiones-lote.espera-maxima-ms:300000}") long esperaMaximaMs,
+            @Value("${blockchain.decisiones-lote.hilos:4}") int hilos,
+            @Value("${blockchain.decisiones-lote.cola:8}") int cola) {
+        this.blockchainService = blockchainService;
+        this.receiptTracker = receiptTracker;
+        this.intervaloMs = intervaloMs;
+        this.esperaMaximaMs = esperaMaximaMs;
+
+        AtomicInteger contador = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cola), runnable -> {
+                    Thread thread = new Thread(runnable, "decisiones-lote-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Encola el lote para procesarlo en segundo plano
+     *
+     * @return false si el pool de lotes está lleno
+     */
+    public boolean procesar(Credentials validador, List<DecisionActividad> decisiones, SseEmitter emitter) {
+        try {
+            workers.execute(() -> procesarLote(validador, decisiones, emitter));
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("⚠️ Cola de lotes de decisiones llena, lote de {} rechazado", validador.getAddress());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        workers.shutdownNow();
+    }
+
+    private void procesarLote(Credentials validador, List<DecisionActividad> decisiones, SseEmitter emitter) {
+        Emisor emisor = new Emisor(emitter);
+        log.info("🗳️ Procesando lote de {} decisiones del validador {}", decisiones.size(), validador.getAddress());
+
+        try {
+            Map<String, ResultadoDecision> pendientes = enviar(validador, decisiones, emisor);
+            esperarConfirmaciones(pendientes, emisor);
+            emisor.fin(decisiones.size());
+        } catch (Exception e) {
+            log.error("❌ Error procesando lote de decisiones", e);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private Map<String, ResultadoDecision> enviar(Credentials validador, List<DecisionActividad> decisiones,
+            Emisor emisor) {
+        Map<String, ResultadoDecision> pendientes = new LinkedHashMap<>();
+
+        for (DecisionActividad decision : decisiones) {
+            BigInteger actividadId = BigInteger.valueOf(decision.getActividadId());
+            TransactionResult result = decision.getAprobar()
+                    ? blockchainService.aprobarActividad(actividadId, validador)
+                    : blockchainService.rechazarActividad(actividadId, decision.getRazon(), validador);
+
+            ResultadoDecision resultado = ResultadoDecision.builder()
+                    .actividadId(decision.getActividadId())
+                    .aprobar(decision.getAprobar())
+                    .transactionHash(result.getTransactionHash())
+                    .blockNumber(result.getBlockNumber())
+                    .errorMessage(result.getErrorMessage())
+                    .build();
+
+            if (!result.isSuccess()) {
+                resultado.setEstado(EstadoTransaccion.FALLIDA);
+            } else if (result.isPending()) {
+                resultado.setEstado(EstadoTransaccion.PENDIENTE);
+                pendientes.put(result.getTransactionHash(), resultado);
+            } else {
+                resultado.setEstado(EstadoTransaccion.CONFIRMADA);
+            }
+            emisor.resultado(resultado);
+        }
+        return pendientes;
+    }
+
+    private void esperarConfirmaciones(Map<String, ResultadoDecision> pendientes, Emisor emisor)
+            throws InterruptedException {
+        long limite = System.currentTimeMillis() + esperaMaximaMs;
+
+        while (!pendientes.isEmpty() && System.currentTimeMillis() < limite && emisor.conectado) {
+            Thread.sleep(intervaloMs);
+
+            Map<String, TransactionReceipt> recibos;
+            try {
+                recibos = receiptTracker.consultarRecibos(pendientes.keySet());
+            } catch (Exception e) {
+                log.warn("⚠️ Error consultando recibos del lote: {}", e.getMessage());
+                continue;
+            }
+
+            recibos.forEach((hash, recibo) -> {
+                ResultadoDecision resultado = pendientes.remove(hash);
+                if (resultado == null) {
+                    return;
+                }
+                resultado.setBlockNumber(recibo.getBlockNumber().longValue());
+                if (recibo.isStatusOK()) {
+                    resultado.setEstado(EstadoTransaccion.CONFIRMADA);
+                } else {
+                    resultado.setEstado(EstadoTransaccion.FALLIDA);
+                    resultado.setErrorMessage("Transacción revertida");
+                }
+                emisor.resultado(resultado);
+            });
+        }
+
+        if (!pendientes.isEmpty()) {
+            log.warn("⏳ {} decisiones del lote siguen pendientes al cerrar el stream", pendientes.size());
+        }
+    }
+
+    /**
+     * Envoltorio del SseEmitter que deja de emitir si el cliente se desconecta
+     * (las transacciones ya enviadas siguen su curso)
+     */
+    private static final class Emisor {
+        private final SseEmitter emitter;
+        private volatile boolean conectado = true;
+
+        private Emisor(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void resultado(ResultadoDecision resultado) {
+            enviar(SseEmitter.event().name("resultado").data(resultado));
+        }
+
+        void fin(int total) {
+            enviar(SseEmitter.event().name("fin").data(Map.of("total", total)));
+            if (conectado) {
+                emitter.complete();
+            }
+        }
+
+        private void enviar(SseEmitter.SseEventBuilder evento) {
+            if (!conectado) {
+                return;
+            }
+            try {
+                emitter.send(evento);
+            } catch (Exception e) {
+                conectado = false;
+                log.info("🔌 Cliente desconectado del stream de decisiones");
+            }
+        }
+    }
+}
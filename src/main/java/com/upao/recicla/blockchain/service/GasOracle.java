@@ -0,0 +1,281 @@
+package com.upao.recicla.blockchain.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.request.Transaction;
+import org.web3j.protocol.core.methods.response.EthEstimateGas;
+import org.web3j.protocol.core.methods.response.EthFeeHistory;
+import org.web3j.tx.gas.ContractEIP1559GasProvider;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Proveedor de gas dinámico (EIP-1559) para las escrituras en el contrato
+ *
+ * Muestrea eth_feeHistory periódicamente y cachea la base fee del próximo
+ * bloque y la propina sugerida (percentil configurable de las últimas
+ * recompensas). Mientras no haya muestras se usa blockchain.gas-price.
+ *
+ * El gas limit es blockchain.gas-limit: el consumo de una función depende de
+ * sus argumentos y del estado al minarse (la aprobación que ejecuta una
+ * actividad acuña y cuesta más del doble), así que lo aprendido de los recibos
+ * solo lo sube si alguna vez se consumió más, nunca lo recorta.
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class GasOracle implements ContractEIP1559GasProvider {
+
+    private static final int MUESTRAS_POR_FUNCION = 20;
+
+    private final Web3j web3j;
+    private final boolean eip1559;
+    private final long chainId;
+    private final BigInteger gasPriceFallback;
+    private final BigInteger gasLimitFallback;
+    private final int bloquesHistorial;
+    private final double percentilPrioridad;
+    private final BigDecimal margenLimite;
+
+    private volatile Tarifas tarifas;
+    private final Map<String, Deque<BigInteger>> consumos = new ConcurrentHashMap<>();
+
+    public GasOracle(Web3j web3j,
+            @Value("${blockchain.gas.eip1559:true}") boolean eip1559,
+            @Value("${blockchain.chain-id}") long chainId,
+            @Value("${blockchain.gas-price:20000000000}") String gasPrice,
+            @Value("${blockchain.gas-limit:3000000}") String gasLimit,
+            @Value("${blockchain.gas.bloques-historial:20}") int bloquesHistorial,
+            @Value("${blockchain.gas.percentil-prioridad:50}") double percentilPrioridad,
+            @Value("${blockchain.gas.margen-limite:1.25}") BigDecimal margenLimite) {
+        this.web3j = web3j;
+        this.eip1559 = eip1559;
+        this.chainId = chainId;
+        this.gasPriceFallback = new BigInteger(gasPrice);
+        this.gasLimitFallback = new BigInteger(gasLimit);
+        this.bloquesHistorial = bloquesHistorial;
+        this.percentilPrioridad = percentilPrioridad;
+        this.margenLimite = margenLimite;
+    }
+
+    /**
+     * Actualiza las tarifas cacheadas a partir de eth_feeHistory
+     */
+    @Scheduled(fixedDelayString = "${blockchain.gas.intervalo-ms:12000}")
+    public void muestrear() {
+        try {
+            EthFeeHistory response = web3j.ethFeeHistory(
+                    bloquesHistorial,
+                    DefaultBlockParameterName.LATEST,
+                    List.of(percentilPrioridad)).send();
+            if (response.hasError()) {
+                log.warn("⚠️ eth_feeHistory falló: {}", response.getError().getMessage());
+                return;
+            }
+
+            EthFeeHistory.FeeHistory historial = response.getFeeHistory();
+            List<BigInteger> baseFees = historial.getBaseFeePerGas();
+            if (baseFees == null || baseFees.isEmpty()) {
+                return;
+            }
+
+            // El último elemento es la base fee estimada del próximo bloque
+            BigInteger baseFee = baseFees.get(baseFees.size() - 1);
+            BigInteger prioridad = mediana(historial.getReward());
+
+            tarifas = new Tarifas(baseFee, prioridad);
+            log.debug("⛽ Tarifas actualizadas: baseFee={} priorityFee={}", baseFee, prioridad);
+
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo muestrear eth_feeHistory: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Registra el gas consumido por una función (a partir de su recibo); si
+     * supera el gas limit configurado los próximos envíos usan ese consumo con
+     * margen
+     */
+    public void registrarConsumo(String funcion, BigInteger gasUsado) {
+        if (funcion == null || gasUsado == null || gasUsado.signum() <= 0) {
+            return;
+        }
+        Deque<BigInteger> muestras = consumos.computeIfAbsent(funcion, f -> new ArrayDeque<>());
+        synchronized (muestras) {
+            muestras.addLast(gasUsado);
+            if (muestras.size() > MUESTRAS_POR_FUNCION) {
+                muestras.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Gas limit para una llamada cuyo consumo depende de los argumentos (p. ej.
+     * operaciones por lotes): eth_estimateGas más el margen configurado
+     */
+    public BigInteger estimarGasLimit(String from, String to, String data) throws IOException {
+        EthEstimateGas response = web3j.ethEstimateGas(
+                Transaction.createEthCallTransaction(from, to, data)).send();
+        if (response.hasError()) {
+            // Un revert en la estimación no es un fallo de transporte: no se reintenta igual
+            throw new ContractReadBatcher.ErrorRespuesta("eth_estimateGas falló: " + response.getError().getMessage());
+        }
+        return conMargen(response.getAmountUsed());
+    }
+
+    /**
+     * Proveedor con las tarifas del oráculo pero un gas limit fijo
+     */
+    public ContractEIP1559GasProvider conGasLimit(BigInteger gasLimit) {
+        GasOracle oraculo = this;
+        return new ContractEIP1559GasProvider() {
+            @Override
+            public boolean isEIP1559Enabled() {
+                return oraculo.isEIP1559Enabled();
+            }
+
+            @Override
+            public long getChainId() {
+                return oraculo.getChainId();
+            }
+
+            @Override
+            public BigInteger getMaxFeePerGas(String contractFunc) {
+                return oraculo.getMaxFeePerGas(contractFunc);
+            }
+
+            @Override
+            public BigInteger getMaxPriorityFeePerGas(String contractFunc) {
+                return oraculo.getMaxPriorityFeePerGas(contractFunc);
+            }
+
+            @Override
+            public BigInteger getGasPrice(String contractFunc) {
+                return oraculo.getGasPrice(contractFunc);
+            }
+
+            @Override
+            @Deprecated
+            public BigInteger getGasPrice() {
+                return oraculo.getGasPrice(null);
+            }
+
+            @Override
+            public BigInteger getGasLimit(String contractFunc) {
+                return gasLimit;
+            }
+
+            @Override
+            @Deprecated
+            public BigInteger getGasLimit() {
+                return gasLimit;
+            }
+        };
+    }
+
+    @Override
+    public boolean isEIP1559Enabled() {
+        return eip1559;
+    }
+
+    @Override
+    public long getChainId() {
+        return chainId;
+    }
+
+    @Override
+    public BigInteger getMaxFeePerGas(String contractFunc) {
+        Tarifas actuales = tarifas;
+        if (actuales == null) {
+            return gasPriceFallback;
+        }
+        // Margen para dos bloques llenos seguidos (la base fee sube hasta 12.5% por bloque)
+        return actuales.baseFee.shiftLeft(1).add(actuales.prioridad);
+    }
+
+    @Override
+    public BigInteger getMaxPriorityFeePerGas(String contractFunc) {
+        Tarifas actuales = tarifas;
+        if (actuales == null) {
+            return gasPriceFallback.min(BigInteger.valueOf(1_500_000_000L));
+        }
+        return actuales.prioridad;
+    }
+
+    @Override
+    public BigInteger getGasPrice(String contractFunc) {
+        Tarifas actuales = tarifas;
+        if (actuales == null) {
+            return gasPriceFallback;
+        }
+        return actuales.baseFee.add(actuales.prioridad);
+    }
+
+    @Override
+    @Deprecated
+    public BigInteger getGasPrice() {
+        return getGasPrice(null);
+    }
+
+    /**
+     * El consumo aprendido es un suelo, no un tope: nunca baja del gas limit
+     * configurado
+     */
+    @Override
+    public BigInteger getGasLimit(String contractFunc) {
+        Deque<BigInteger> muestras = contractFunc != null ? consumos.get(contractFunc) : null;
+        if (muestras == null) {
+            return gasLimitFallback;
+        }
+        BigInteger maximo;
+        synchronized (muestras) {
+            if (muestras.isEmpty()) {
+                return gasLimitFallback;
+            }
+            maximo = Collections.max(muestras);
+        }
+        return conMargen(maximo).max(gasLimitFallback);
+    }
+
+    @Override
+    @Deprecated
+    public BigInteger getGasLimit() {
+        return gasLimitFallback;
+    }
+
+    private BigInteger conMargen(BigInteger gas) {
+        return new BigDecimal(gas).multiply(margenLimite).setScale(0, RoundingMode.CEILING).toBigInteger();
+    }
+
+    private BigInteger mediana(List<List<BigInteger>> recompensas) {
+        if (recompensas == null || recompensas.isEmpty()) {
+            return BigInteger.ZERO;
+        }
+        List<BigInteger> valores = recompensas.stream()
+                .filter(bloque -> bloque != null && !bloque.isEmpty())
+                .map(bloque -> bloque.get(0))
+                .sorted()
+                .toList();
+        if (valores.isEmpty()) {
+            return BigInteger.ZERO;
+        }
+        return valores.get(valores.size() / 2);
+    }
+
+    private record Tarifas(BigInteger baseFee, BigInteger prioridad) {
+    }
+}
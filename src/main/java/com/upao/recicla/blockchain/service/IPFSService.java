@@ -2,13 +2,18 @@ package com.upao.recicla.blockchain.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.upao.recicla.domain.entity.PinIpfs;
+import com.upao.recicla.infra.repository.PinIpfsRepository;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import okio.BufferedSink;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -32,8 +37,12 @@ public class IPFSService {
 
     private final OkHttpClient httpClient;
     private final ObjectMapper objectMapper;
+    private final IpfsContentCache contentCache;
+    private final PinIpfsRepository pinRepository;
 
-    public IPFSService() {
+    public IPFSService(IpfsContentCache contentCache, PinIpfsRepository pinRepository) {
+        this.contentCache = contentCache;
+        this.pinRepository = pinRepository;
         this.httpClient = new OkHttpClient.Builder()
                 .connectTimeout(60, TimeUnit.SECONDS)
                 .writeTimeout(60, TimeUnit.SECONDS)
@@ -43,25 +52,43 @@ public class IPFSService {
     }
 
     /**
-     * Sube una imagen de evidencia a IPFS vía Pinata
-     * 
-     * @param file     Imagen de la actividad de reciclaje
-     * @param metadata Metadata adicional para el pin (JSON string)
+     * Sube en streaming una evidencia (p. ej. la imagen ya guardada de una
+     * actividad): el cuerpo multipart se escribe desde el InputStream con un
+     * buffer pequeño, sin copiar la imagen completa al heap.
+     *
+     * Antes de subir se calcula el CID localmente (una pasada en streaming);
+     * si ese contenido ya fue fijado por el backend no se vuelve a enviar a
+     * Pinata y se devuelve el CID conocido.
+     *
+     * @param nombre      Nombre del archivo en Pinata
+     * @param contentType Tipo MIME del contenido
+     * @param tamano      Tamaño exacto en bytes
+     * @param fuente      Abre el contenido; puede llamarse más de una vez si
+     *                    OkHttp reintenta el envío
+     * @param metadata    Metadata adicional para el pin (JSON string)
      * @return Hash IPFS (CID) de la evidencia
      */
-    public String uploadEvidencia(MultipartFile file, String metadata) throws IOException {
-        log.info("📤 Subiendo evidencia a Pinata IPFS: {} ({} bytes)", file.getOriginalFilename(), file.getSize());
+    public String uploadEvidencia(String nombre, String contentType, long tamano, FuenteContenido fuente,
+            String metadata) throws IOException {
+        String cidLocal = calcularCid(fuente);
+        String cidFijado = cidLocal != null ? buscarPin(cidLocal) : null;
+        if (cidFijado != null) {
+            log.info("♻️ Evidencia {} ya fijada en IPFS, se omite la subida: {}", nombre, cidFijado);
+            return cidFijado;
+        }
+
+        log.info("📤 Subiendo evidencia a Pinata IPFS: {} ({} bytes)", nombre, tamano);
 
         // Crear el objeto pinataMetadata con el campo "name" requerido
         String pinataMetadata = String.format(
                 "{\"name\":\"%s\",\"keyvalues\":%s}",
-                file.getOriginalFilename(),
+                nombre,
                 metadata);
 
         RequestBody requestBody = new MultipartBody.Builder()
                 .setType(MultipartBody.FORM)
-                .addFormDataPart("file", file.getOriginalFilename(),
-                        RequestBody.create(file.getBytes(), MediaType.parse(file.getContentType())))
+                .addFormDataPart("file", nombre,
+                        new CuerpoStreaming(fuente, tamano, MediaType.parse(contentType)))
                 .addFormDataPart("pinataMetadata", pinataMetadata)
                 .build();
 
@@ -85,6 +112,11 @@ public class IPFSService {
             log.info("✅ Evidencia subida a IPFS: {}", ipfsHash);
             log.info("🌐 URL pública: {}{}", PINATA_GATEWAY, ipfsHash);
 
+            if (cidLocal != null && !cidLocal.equals(ipfsHash)) {
+                log.warn("⚠️ CID calculado localmente ({}) distinto del devuelto por Pinata ({})", cidLocal, ipfsHash);
+            }
+            registrarPin(ipfsHash, cidLocal, tamano);
+
             return ipfsHash;
 
         } catch (IOException e) {
@@ -93,6 +125,89 @@ public class IPFSService {
         }
     }
 
+    /**
+     * CIDv0 del contenido, o null si no se pudo calcular (no se deduplica)
+     */
+    private String calcularCid(FuenteContenido fuente) {
+        try (InputStream in = fuente.abrir()) {
+            return CidIpfs.calcularCidV0(in);
+        } catch (IOException e) {
+            log.warn("⚠️ No se pudo calcular el CID local: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * CID fijado del contenido con ese CIDv0 local: el propio CIDv0 si Pinata
+     * devolvió el mismo, o el CID que devolvió (p. ej. un CIDv1) si no
+     */
+    private String buscarPin(String cidLocal) {
+        if (pinRepository.existsById(cidLocal)) {
+            return cidLocal;
+        }
+        return pinRepository.findFirstByCidLocal(cidLocal).map(PinIpfs::getCid).orElse(null);
+    }
+
+    /**
+     * Registra el CID en el índice de contenido fijado; se indexa el CID
+     * devuelto por Pinata junto al CIDv0 calculado localmente
+     */
+    private void registrarPin(String cid, String cidLocal, long tamano) {
+        try {
+            pinRepository.save(new PinIpfs(cid, tamano, LocalDateTime.now(), cidLocal));
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo registrar el pin {}: {}", cid, e.getMessage());
+        }
+    }
+
+    /**
+     * Origen del contenido de una subida en streaming
+     */
+    @FunctionalInterface
+    public interface FuenteContenido {
+        InputStream abrir() throws IOException;
+    }
+
+    /**
+     * Cuerpo de la petición que copia el archivo al socket por bloques. Puede
+     * reescribirse (reintentos de OkHttp) abriendo de nuevo el InputStream.
+     */
+    private static final class CuerpoStreaming extends RequestBody {
+
+        private static final int TAMANO_BUFFER = 8192;
+
+        private final FuenteContenido fuente;
+        private final long tamano;
+        private final MediaType contentType;
+
+        private CuerpoStreaming(FuenteContenido fuente, long tamano, MediaType contentType) {
+            this.fuente = fuente;
+            this.tamano = tamano;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return tamano;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            try (InputStream in = fuente.abrir()) {
+                byte[] buffer = new byte[TAMANO_BUFFER];
+                int leidos;
+                while ((leidos = in.read(buffer)) != -1) {
+                    sink.write(buffer, 0, leidos);
+                }
+            }
+        }
+    }
+
     /**
      * Sube metadata JSON a IPFS vía Pinata
      * 
@@ -137,13 +252,22 @@ public class IPFSService {
     }
 
     /**
-     * Recupera contenido desde IPFS vía gateway de Pinata
+     * Recupera contenido desde IPFS, primero de la caché local por CID y si no
+     * vía gateway de Pinata. Lo recibido del gateway solo se cachea si se
+     * puede comprobar que corresponde al CID.
      * 
      * @param ipfsHash Hash IPFS (CID)
      * @return Contenido del archivo
      */
     public byte[] retrieveContent(String ipfsHash) throws IOException {
         String hash = ipfsHash.replace("ipfs://", "");
+
+        byte[] cacheado = contentCache.obtener(hash);
+        if (cacheado != null) {
+            log.debug("🗄️ Contenido {} servido desde caché local", hash);
+            return cacheado;
+        }
+
         String url = PINATA_GATEWAY + hash;
 
         log.info("📥 Recuperando contenido de IPFS: {}", hash);
@@ -161,6 +285,11 @@ public class IPFSService {
 
             byte[] content = response.body().bytes();
             log.info("✅ Contenido recuperado: {} bytes", content.length);
+            if (coincideConCid(hash, content)) {
+                contentCache.guardar(hash, content);
+            } else {
+                log.warn("⚠️ No se pudo verificar el contenido de {} contra su CID, no se cachea", hash);
+            }
 
             return content;
 
@@ -171,22 +300,27 @@ public class IPFSService {
     }
 
     /**
-     * Verifica si un hash IPFS es válido (CIDv0 o CIDv1)
+     * true si el CID es v0 y coincide con el calculado sobre el contenido. Los
+     * CIDv1 y los archivos de más de un nivel de DAG no se pueden recalcular
+     * localmente y cuentan como no verificados.
+     */
+    private static boolean coincideConCid(String cid, byte[] content) throws IOException {
+        if (cid.length() != 46 || !cid.startsWith("Qm")) {
+            return false;
+        }
+        return cid.equals(CidIpfs.calcularCidV0(new ByteArrayInputStream(content)));
+    }
+
+    /**
+     * Verifica si un hash IPFS es válido (CIDv0 o CIDv1) decodificando el CID
+     * y su multihash
      */
     public boolean isValidIPFSHash(String ipfsHash) {
         if (ipfsHash == null || ipfsHash.isEmpty()) {
             return false;
         }
 
-        String hash = ipfsHash.replace("ipfs://", "");
-
-        // CIDv0: Qm... (base58, 46 caracteres)
-        boolean isCIDv0 = hash.startsWith("Qm") && hash.length() == 46;
-
-        // CIDv1: bafy... (base32, variable length)
-        boolean isCIDv1 = hash.startsWith("bafy") && hash.length() >= 50;
-
-        return isCIDv0 || isCIDv1;
+        return CidIpfs.esValido(ipfsHash.replace("ipfs://", ""));
     }
 
     /**
@@ -0,0 +1,264 @@
+package com.upao.recicla.blockchain.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Caché local de contenido IPFS direccionada por CID
+ *
+ * Un CID identifica un contenido inmutable, así que una entrada nunca se
+ * invalida: solo se expulsa por presupuesto de espacio. Dos niveles LRU:
+ * - Memoria: los contenidos más recientes, con presupuesto en bytes
+ * - Disco: un archivo por CID en el directorio de caché, leído con
+ *   FileChannel; el orden LRU sobrevive a reinicios vía la fecha de
+ *   modificación, que se actualiza en cada acierto
+ *
+ * Los archivos se escriben en un temporal y se mueven atómicamente, de modo
+ * que nunca se sirve una entrada a medio escribir.
+ */
+@Component
+@Slf4j
+public class IpfsContentCache {
+
+    // Solo caracteres base58/base32: el CID se usa como nombre de archivo
+    private static final Pattern CID_VALIDO = Pattern.compile("^[A-Za-z0-9]{10,100}$");
+    private static final String SUFIJO_TEMPORAL = ".tmp";
+
+    private final Path directorio;
+    private final long maxBytesDisco;
+    private final long maxBytesMemoria;
+    private final long maxBytesEntradaMemoria;
+
+    private final LinkedHashMap<String, byte[]> memoria = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesMemoria;
+    private final LinkedHashMap<String, Long> disco = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesDisco;
+
+    public IpfsContentCache(@Value("${ipfs.cache.directorio:${java.io.tmpdir}/recicla-ipfs-cache}") String directorio,
+            @Value("${ipfs.cache.max-mb-disco:1024}") long maxMbDisco,
+            @Value("${ipfs.cache.max-mb-memoria:64}") long maxMbMemoria) {
+        this.directorio = Paths.get(directorio);
+        this.maxBytesDisco = maxMbDisco * 1024 * 1024;
+        this.maxBytesMemoria = maxMbMemoria * 1024 * 1024;
+        // Un contenido muy grande no desplaza a todo el nivel de memoria
+        this.maxBytesEntradaMemoria = this.maxBytesMemoria / 8;
+    }
+
+    /**
+     * Reconstruye el índice LRU de disco a partir de los archivos existentes
+     */
+    @PostConstruct
+    public void inicializar() {
+        try {
+            Files.createDirectories(directorio);
+
+            List<Path> archivos = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directorio)) {
+                for (Path archivo : stream) {
+                    if (archivo.getFileName().toString().endsWith(SUFIJO_TEMPORAL)) {
+                        Files.deleteIfExists(archivo);
+                    } else if (Files.isRegularFile(archivo)) {
+                        archivos.add(archivo);
+                    }
+                }
+            }
+            archivos.sort(Comparator.comparing(IpfsContentCache::fechaModificacion));
+
+            List<String> expulsados;
+            synchronized (disco) {
+                for (Path archivo : archivos) {
+                    long tamano = Files.size(archivo);
+                    disco.put(archivo.getFileName().toString(), tamano);
+                    bytesDisco += tamano;
+                }
+                expulsados = expulsarDisco();
+            }
+            borrar(expulsados);
+            log.info("🗄️ Caché IPFS en {}: {} contenidos ({} MB)", directorio, disco.size(), bytesDisco / (1024 * 1024));
+
+        } catch (IOException e) {
+            log.error("❌ Error inicializando caché IPFS en {}", directorio, e);
+        }
+    }
+
+    /**
+     * Contenido cacheado del CID, o null si no está en ningún nivel
+     */
+    public byte[] obtener(String cid) {
+        if (!esCidValido(cid)) {
+            return null;
+        }
+
+        synchronized (memoria) {
+            byte[] datos = memoria.get(cid);
+            if (datos != null) {
+                return datos;
+            }
+        }
+
+        synchronized (disco) {
+            if (disco.get(cid) == null) {
+                return null;
+            }
+        }
+
+        Path ruta = directorio.resolve(cid);
+        try {
+            byte[] datos = leer(ruta);
+            Files.setLastModifiedTime(ruta, FileTime.fromMillis(System.currentTimeMillis()));
+            guardarEnMemoria(cid, datos);
+            return datos;
+        } catch (NoSuchFileException e) {
+            quitarDeDisco(cid);
+            return null;
+        } catch (IOException e) {
+            log.warn("⚠️ Error leyendo {} de la caché IPFS: {}", cid, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Guarda el contenido de un CID en ambos niveles
+     */
+    public void guardar(String cid, byte[] datos) {
+        if (!esCidValido(cid)) {
+            return;
+        }
+        guardarEnMemoria(cid, datos);
+
+        synchronized (disco) {
+            if (disco.containsKey(cid) || datos.length > maxBytesDisco) {
+                return;
+            }
+        }
+
+        Path temporal = null;
+        try {
+            temporal = Files.createTempFile(directorio, cid, SUFIJO_TEMPORAL);
+            try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(datos);
+                while (buffer.hasRemaining()) {
+                    canal.write(buffer);
+                }
+            }
+            Files.move(temporal, directorio.resolve(cid),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("⚠️ Error guardando {} en la caché IPFS: {}", cid, e.getMessage());
+            if (temporal != null) {
+                borrar(List.of(temporal.getFileName().toString()));
+            }
+            return;
+        }
+
+        List<String> expulsados;
+        synchronized (disco) {
+            if (disco.put(cid, (long) datos.length) == null) {
+                bytesDisco += datos.length;
+            }
+            expulsados = expulsarDisco();
+        }
+        borrar(expulsados);
+    }
+
+    private void guardarEnMemoria(String cid, byte[] datos) {
+        if (datos.length > maxBytesEntradaMemoria) {
+            return;
+        }
+        synchronized (memoria) {
+            byte[] anterior = memoria.put(cid, datos);
+            bytesMemoria += datos.length - (anterior != null ? anterior.length : 0);
+
+            Iterator<Map.Entry<String, byte[]>> it = memoria.entrySet().iterator();
+            while (bytesMemoria > maxBytesMemoria && it.hasNext()) {
+                bytesMemoria -= it.next().getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Quita del índice las entradas menos usadas hasta entrar en el
+     * presupuesto; los archivos se borran fuera del lock
+     */
+    private List<String> expulsarDisco() {
+        List<String> expulsados = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> it = disco.entrySet().iterator();
+        while (bytesDisco > maxBytesDisco && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            bytesDisco -= eldest.getValue();
+            expulsados.add(eldest.getKey());
+            it.remove();
+        }
+        return expulsados;
+    }
+
+    private void quitarDeDisco(String cid) {
+        synchronized (disco) {
+            Long tamano = disco.remove(cid);
+            if (tamano != null) {
+                bytesDisco -= tamano;
+            }
+        }
+    }
+
+    private void borrar(List<String> nombres) {
+        for (String nombre : nombres) {
+            try {
+                Files.deleteIfExists(directorio.resolve(nombre));
+            } catch (IOException e) {
+                log.warn("⚠️ No se pudo borrar {} de la caché IPFS: {}", nombre, e.getMessage());
+            }
+        }
+    }
+
+    private static byte[] leer(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano > Integer.MAX_VALUE - 8) {
+                throw new IOException("Contenido demasiado grande: " + tamano + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(new byte[(int) tamano]);
+            while (buffer.hasRemaining()) {
+                if (canal.read(buffer) < 0) {
+                    throw new EOFException("Archivo truncado: " + ruta);
+                }
+            }
+            return buffer.array();
+        }
+    }
+
+    private static FileTime fechaModificacion(Path archivo) {
+        try {
+            return Files.getLastModifiedTime(archivo);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static boolean esCidValido(String cid) {
+        return cid != null && CID_VALIDO.matcher(cid).matches();
+    }
+}
@@ -0,0 +1,247 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.infra.exception.TransaccionDifundidaException;
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+import org.web3j.tx.ChainIdLong;
+import org.web3j.tx.RawTransactionManager;
+import org.web3j.tx.response.TransactionReceiptProcessor;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * RawTransactionManager que obtiene los nonces del {@link NonceManager} local
+ * en lugar de consultar el nodo en cada envío
+ *
+ * Opcionalmente registra las transacciones aceptadas por el nodo, por nonce,
+ * para que {@link TransaccionesAtascadasMonitor} pueda reemplazar las que no
+ * se minan.
+ *
+ * La transacción se firma localmente y su hash se conoce antes de difundirla.
+ * Si la difusión falla sin que conste que el nodo no la recibió (timeout de
+ * lectura, error HTTP) se trata como enviada: el nonce queda reservado y, si
+ * no se mina, el monitor la reenvía con el mismo nonce. Así un reintento
+ * nunca la duplica con un nonce nuevo. En un envío registrado esa difusión sin
+ * confirmar se señala con {@link TransaccionDifundidaException}.
+ */
+@Slf4j
+public class NonceManagedTransactionManager extends RawTransactionManager {
+
+    private final Web3j web3j;
+    private final NonceManager nonceManager;
+
+    /** Envío registrado en curso en este hilo (ver {@link #enviarRegistrado}) */
+    private final ThreadLocal<EnvioEnCurso> envioEnCurso = new ThreadLocal<>();
+
+    /** Transacciones enviadas y aún no descartadas por el monitor (null si no se registran) */
+    private final ConcurrentSkipListMap<BigInteger, TransaccionEnVuelo> enVuelo;
+
+    public NonceManagedTransactionManager(Web3j web3j, Credentials credentials, NonceManager nonceManager,
+            TransactionReceiptProcessor receiptProcessor) {
+        this(web3j, credentials, nonceManager, receiptProcessor, false);
+    }
+
+    public NonceManagedTransactionManager(Web3j web3j, Credentials credentials, NonceManager nonceManager,
+            TransactionReceiptProcessor receiptProcessor, boolean registrarEnvios) {
+        super(web3j, credentials, ChainIdLong.NONE, receiptProcessor);
+        this.web3j = web3j;
+        this.nonceManager = nonceManager;
+        this.enVuelo = registrarEnvios ? new ConcurrentSkipListMap<>() : null;
+    }
+
+    @Override
+    protected BigInteger getNonce() throws IOException {
+        return nonceManager.asignar();
+    }
+
+    /**
+     * Ejecuta un envío (p. ej. una llamada del wrapper del contrato) avisando
+     * al registro con el hash y el nonce de la transacción firmada antes de
+     * difundirla, para que el llamador los persista
+     *
+     * @throws TransaccionDifundidaException si el envío falla después de
+     *                                       difundir la transacción
+     */
+    public <T> T enviarRegistrado(RegistroEnvio registro, Callable<T> envio) throws Exception {
+        EnvioEnCurso enCurso = new EnvioEnCurso(registro);
+        envioEnCurso.set(enCurso);
+        try {
+            return envio.call();
+        } catch (TransaccionDifundidaException e) {
+            throw e;
+        } catch (Exception e) {
+            if (enCurso.hashDifundido != null) {
+                throw new TransaccionDifundidaException(enCurso.hashDifundido, e);
+            }
+            throw e;
+        } finally {
+            envioEnCurso.remove();
+        }
+    }
+
+    @Override
+    public EthSendTransaction signAndSend(RawTransaction rawTransaction) throws IOException {
+        BigInteger nonce = rawTransaction.getNonce();
+        EnvioEnCurso enCurso = envioEnCurso.get();
+
+        String firmada;
+        String hash;
+        try {
+            firmada = sign(rawTransaction);
+            hash = Hash.sha3(firmada);
+            if (enCurso != null) {
+                enCurso.registro.antesDeDifundir(hash, nonce);
+            }
+        } catch (RuntimeException e) {
+            nonceManager.liberar(nonce);
+            throw e;
+        }
+
+        EthSendTransaction response;
+        try {
+            response = web3j.ethSendRawTransaction(firmada).send();
+        } catch (IOException | RuntimeException e) {
+            if (esFalloDeConexion(e)) {
+                // El nodo no llegó a recibir la transacción
+                nonceManager.liberar(nonce);
+                throw e;
+            }
+            log.warn("⚠️ Difusión de {} (nonce {}) sin respuesta del nodo, se trata como enviada: {}",
+                    hash, nonce, e.getMessage());
+            registrarDifundida(enCurso, rawTransaction, hash);
+            if (enCurso != null) {
+                // Sin esperar el recibo de un nodo que no responde: el llamador
+                // la deja pendiente y la cuenta como fallo de disponibilidad
+                throw new TransaccionDifundidaException(hash, e);
+            }
+            return aceptada(hash);
+        }
+
+        if (response.hasError()) {
+            String mensaje = response.getError().getMessage();
+            if (mensaje != null && mensaje.toLowerCase().contains("already known")) {
+                // Esta misma transacción (mismo hash) ya está en el pool del nodo
+                registrarDifundida(enCurso, rawTransaction, hash);
+                return aceptada(hash);
+            }
+            if (esNonceConsumido(mensaje)) {
+                // Otro envío ya usó este nonce: adelantar el contador
+                nonceManager.sincronizar();
+            } else {
+                nonceManager.liberar(nonce);
+            }
+            return response;
+        }
+
+        registrarDifundida(enCurso, rawTransaction, hash);
+        return response;
+    }
+
+    /**
+     * Firma y envía una transacción de reemplazo con un nonce ya asignado (sin
+     * pasar por el NonceManager)
+     */
+    public EthSendTransaction reemplazar(RawTransaction rawTransaction) throws IOException {
+        return super.signAndSend(rawTransaction);
+    }
+
+    /**
+     * Transacciones en vuelo por nonce; vacío si este firmante no las registra
+     */
+    public ConcurrentNavigableMap<BigInteger, TransaccionEnVuelo> getEnVuelo() {
+        return enVuelo != null ? enVuelo : new ConcurrentSkipListMap<>();
+    }
+
+    public NonceManager getNonceManager() {
+        return nonceManager;
+    }
+
+    /**
+     * true si el fallo ocurrió al conectar con el nodo, antes de que pudiera
+     * recibir nada
+     */
+    public static boolean esFalloDeConexion(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof ConnectException
+                    || causa instanceof UnknownHostException
+                    || causa instanceof NoRouteToHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void registrarDifundida(EnvioEnCurso enCurso, RawTransaction rawTransaction, String hash) {
+        if (enCurso != null) {
+            enCurso.hashDifundido = hash;
+        }
+        if (enVuelo != null) {
+            enVuelo.put(rawTransaction.getNonce(), new TransaccionEnVuelo(
+                    rawTransaction, hash, System.currentTimeMillis(), List.of()));
+        }
+    }
+
+    private static EthSendTransaction aceptada(String hash) {
+        EthSendTransaction response = new EthSendTransaction();
+        response.setResult(hash);
+        return response;
+    }
+
+    static boolean esNonceConsumido(String mensaje) {
+        if (mensaje == null) {
+            return false;
+        }
+        String texto = mensaje.toLowerCase();
+        return texto.contains("nonce too low") || texto.contains("already known");
+    }
+
+    /**
+     * Recibe el hash y el nonce de una transacción firmada antes de difundirla
+     */
+    @FunctionalInterface
+    public interface RegistroEnvio {
+        void antesDeDifundir(String hash, BigInteger nonce);
+    }
+
+    private static final class EnvioEnCurso {
+
+        private final RegistroEnvio registro;
+        private String hashDifundido;
+
+        private EnvioEnCurso(RegistroEnvio registro) {
+            this.registro = registro;
+        }
+    }
+
+    /**
+     * Transacción enviada: la última versión aceptada por el nodo (raw y hash
+     * siempre juntos), los hashes de las versiones reemplazadas, cualquiera de
+     * las cuales puede acabar minada, y la versión cuyas tarifas se
+     * incrementan en el próximo reemplazo (la vigente o el último intento
+     * rechazado)
+     */
+    public record TransaccionEnVuelo(RawTransaction raw, String hash, long enviadaEn, List<String> hashesAnteriores,
+            RawTransaction base) {
+
+        public TransaccionEnVuelo(RawTransaction raw, String hash, long enviadaEn, List<String> hashesAnteriores) {
+            this(raw, hash, enviadaEn, hashesAnteriores, raw);
+        }
+
+        public int getReemplazos() {
+            return hashesAnteriores.size();
+        }
+    }
+}
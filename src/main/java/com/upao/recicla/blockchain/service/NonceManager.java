@@ -0,0 +1,94 @@
+package com.upao.recicla.blockchain.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asignador local de nonces para una wallet firmante
+ *
+ * Entrega nonces consecutivos desde un contador atómico, de modo que varias
+ * transacciones de la misma wallet pueden estar en vuelo a la vez sin pisarse.
+ * El contador se sincroniza con eth_getTransactionCount(pending) y los nonces
+ * de envíos fallidos se devuelven para rellenar el hueco.
+ */
+@Slf4j
+public class NonceManager {
+
+    private final Web3j web3j;
+    private final String direccion;
+
+    /** Próximo nonce a entregar; -1 mientras no se haya sincronizado */
+    private final AtomicLong siguiente = new AtomicLong(-1);
+
+    /** Nonces devueltos por envíos fallidos, se reutilizan primero */
+    private final ConcurrentSkipListSet<Long> liberados = new ConcurrentSkipListSet<>();
+
+    public NonceManager(Web3j web3j, String direccion) {
+        this.web3j = web3j;
+        this.direccion = direccion;
+    }
+
+    public BigInteger asignar() throws IOException {
+        Long hueco = liberados.pollFirst();
+        if (hueco != null) {
+            return BigInteger.valueOf(hueco);
+        }
+        if (siguiente.get() < 0) {
+            sincronizar();
+        }
+        return BigInteger.valueOf(siguiente.getAndIncrement());
+    }
+
+    /**
+     * Devuelve un nonce cuyo envío falló. Si es el último entregado se retrocede
+     * el contador; si no, queda como hueco para la siguiente transacción.
+     */
+    public void liberar(BigInteger nonce) {
+        long valor = nonce.longValue();
+        if (!siguiente.compareAndSet(valor + 1, valor)) {
+            liberados.add(valor);
+        }
+        log.debug("↩️ Nonce {} liberado para {}", valor, direccion);
+    }
+
+    /**
+     * Adelanta el contador hasta el nonce pendiente del nodo (nunca retrocede)
+     * y descarta los huecos que ya fueron consumidos on-chain
+     */
+    public void sincronizar() throws IOException {
+        long pendiente = consultarPendiente();
+        long actual = siguiente.accumulateAndGet(pendiente, Math::max);
+        liberados.headSet(pendiente).clear();
+        log.info("🔢 Nonce sincronizado para {}: {}", direccion, actual);
+    }
+
+    /**
+     * Reinicia el contador al valor del nodo descartando todo el estado local
+     */
+    public synchronized void reiniciar() throws IOException {
+        siguiente.set(consultarPendiente());
+        liberados.clear();
+        log.info("🔢 Nonce reiniciado para {}: {}", direccion, siguiente.get());
+    }
+
+    public long getSiguiente() {
+        return siguiente.get();
+    }
+
+    private long consultarPendiente() throws IOException {
+        EthGetTransactionCount response = web3j
+                .ethGetTransactionCount(direccion, DefaultBlockParameterName.PENDING)
+                .send();
+        if (response.hasError()) {
+            throw new IOException("eth_getTransactionCount falló: " + response.getError().getMessage());
+        }
+        return response.getTransactionCount().longValue();
+    }
+}
@@ -0,0 +1,12 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.CambioEstadoPropuesta;
+
+/**
+ * Publicado por {@link PropuestaIndexerService} cada vez que aplica un evento
+ * (o revierte una reorganización) sobre una propuesta del índice
+ *
+ * @param cambio Estado de la propuesta tras el cambio
+ */
+public record PropuestaActualizadaEvent(CambioEstadoPropuesta cambio) {
+}
@@ -0,0 +1,319 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.contracts.ReciclaToken;
+import com.upao.recicla.blockchain.dto.ActividadPropuesta;
+import com.upao.recicla.blockchain.dto.CambioEstadoPropuesta;
+import com.upao.recicla.blockchain.rpc.MultiEndpointService;
+import com.upao.recicla.domain.entity.CheckpointBlockchain;
+import com.upao.recicla.domain.entity.EstadoPropuesta;
+import com.upao.recicla.domain.entity.PropuestaBlockchain;
+import com.upao.recicla.infra.repository.CheckpointBlockchainRepository;
+import com.upao.recicla.infra.repository.PropuestaBlockchainRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Convert;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Indexador de propuestas de actividades a partir de los eventos del contrato
+ * (ActividadPropuesta, ActividadAprobada, ActividadEjecutada y
+ * ActividadRechazada).
+ *
+ * Mantiene la tabla propuestas_blockchain y un checkpoint del último bloque
+ * procesado, de modo que el panel de validadores se responde desde la base de
+ * datos sin recorrer todas las actividades on-chain.
+ *
+ * Solo procesa bloques ya verificados por {@link BlockTracker}; ante una
+ * reorganización vuelve al ancestro común releyendo del contrato las
+ * propuestas afectadas.
+ *
+ * Cada cambio aplicado se publica como {@link PropuestaActualizadaEvent}, de
+ * modo que el stream de estados reparte a todos los clientes lo leído por
+ * este único sondeo de logs.
+ */
+@Service
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class PropuestaIndexerService {
+
+    static final String CHECKPOINT = "propuestas";
+
+    private static final String TOPICO_PROPUESTA = ContractLogReader.topico(ReciclaToken.ACTIVIDADPROPUESTA_EVENT);
+    private static final String TOPICO_APROBADA = ContractLogReader.topico(ReciclaToken.ACTIVIDADAPROBADA_EVENT);
+    private static final String TOPICO_EJECUTADA = ContractLogReader.topico(ReciclaToken.ACTIVIDADEJECUTADA_EVENT);
+    private static final String TOPICO_RECHAZADA = ContractLogReader.topico(ReciclaToken.ACTIVIDADRECHAZADA_EVENT);
+
+    private final ContractLogReader logReader;
+    private final BlockchainService blockchainService;
+    private final PropuestaBlockchainRepository propuestaRepository;
+    private final CheckpointBlockchainRepository checkpointRepository;
+    private final BlockTracker blockTracker;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${blockchain.indexer.max-bloques:2000}")
+    private long maxBloques;
+
+    /**
+     * Lee los eventos nuevos desde el último checkpoint y actualiza la proyección.
+     * La primera vez toma una foto del estado actual del contrato.
+     */
+    @Scheduled(fixedDelayString = "${blockchain.indexer.intervalo-ms:15000}", initialDelayString = "${blockchain.indexer.retraso-inicial-ms:5000}")
+    public void sincronizar() {
+        try {
+            // Cabecera y logs/bloques del mismo nodo
+            MultiEndpointService.enMismoNodo(this::sincronizarRonda);
+        } catch (Exception e) {
+            log.error("❌ Error sincronizando índice de propuestas", e);
+        }
+    }
+
+    private void sincronizarRonda() throws Exception {
+        long ultimoBloque = blockTracker.getUltimoBloqueVerificado();
+        if (ultimoBloque < 0) {
+            return;
+        }
+        Optional<CheckpointBlockchain> checkpoint = checkpointRepository.findById(CHECKPOINT);
+
+        if (checkpoint.isEmpty()) {
+            inicializar(ultimoBloque);
+            return;
+        }
+
+        long desde = checkpoint.get().getUltimoBloque() + 1;
+        while (desde <= ultimoBloque) {
+            long hasta = Math.min(ultimoBloque, desde + maxBloques - 1);
+
+            List<Log> logs = logReader.leerLogs(desde, hasta,
+                    ReciclaToken.ACTIVIDADPROPUESTA_EVENT,
+                    ReciclaToken.ACTIVIDADAPROBADA_EVENT,
+                    ReciclaToken.ACTIVIDADEJECUTADA_EVENT,
+                    ReciclaToken.ACTIVIDADRECHAZADA_EVENT);
+
+            for (Log evento : logs) {
+                aplicarEvento(evento);
+            }
+
+            guardarCheckpoint(hasta);
+            if (!logs.isEmpty()) {
+                log.info("📚 Indexados {} eventos de propuestas (bloques {}-{})", logs.size(), desde, hasta);
+            }
+            desde = hasta + 1;
+        }
+    }
+
+    /**
+     * Propuestas pendientes (no ejecutadas ni rechazadas) desde el índice local.
+     * Mientras el índice no se haya inicializado se consulta el contrato.
+     */
+    public List<ActividadPropuesta> getPropuestasPendientes() {
+        if (!checkpointRepository.existsById(CHECKPOINT)) {
+            log.warn("⚠️ Índice de propuestas aún no inicializado, consultando contrato");
+            return blockchainService.getPropuestasPendientes();
+        }
+
+        return propuestaRepository.findByEjecutadaFalseAndRechazadaFalseOrderByActividadIdAsc().stream()
+                .map(this::toActividadPropuesta)
+                .toList();
+    }
+
+    /**
+     * Vuelve al ancestro común: elimina las propuestas creadas después y
+     * relee del contrato, en ese bloque, las modificadas después. Si no es
+     * posible se descarta el índice para reconstruirlo.
+     */
+    @EventListener
+    public void alReorganizar(ReorganizacionBlockchainEvent evento) {
+        long ancestro = evento.ancestroComun();
+        Optional<CheckpointBlockchain> checkpoint = checkpointRepository.findById(CHECKPOINT);
+        if (checkpoint.isEmpty() || checkpoint.get().getUltimoBloque() <= ancestro) {
+            return;
+        }
+
+        try {
+            List<PropuestaBlockchain> afectadas = propuestaRepository.findByUltimoBloqueGreaterThan(ancestro);
+            for (PropuestaBlockchain propuesta : afectadas) {
+                ActividadPropuesta actividad = blockchainService.getActividadEnBloque(
+                        BigInteger.valueOf(propuesta.getActividadId()), ancestro);
+                if (actividad == null) {
+                    propuestaRepository.delete(propuesta);
+                    continue;
+                }
+                propuesta.setAprobaciones(actividad.getAprobaciones());
+                propuesta.setEjecutada(actividad.getEjecutada());
+                propuesta.setRechazada(actividad.getRechazada());
+                propuesta.setUltimoBloque(ancestro);
+                propuestaRepository.save(propuesta);
+                publicar(propuesta, true);
+            }
+            guardarCheckpoint(ancestro);
+            log.info("↩️ Índice de propuestas revertido al bloque {} ({} propuestas afectadas)", ancestro, afectadas.size());
+
+        } catch (Exception e) {
+            log.error("❌ Error revirtiendo índice de propuestas, se reconstruirá", e);
+            propuestaRepository.deleteAll();
+            checkpointRepository.deleteById(CHECKPOINT);
+        }
+    }
+
+    /**
+     * Estado actual de la propuesta según el índice local
+     */
+    public Optional<CambioEstadoPropuesta> getEstado(Long actividadId) {
+        return propuestaRepository.findById(actividadId).map(propuesta -> toCambioEstado(propuesta, false));
+    }
+
+    private void inicializar(long bloque) throws Exception {
+        log.info("📸 Inicializando índice de propuestas con el estado del bloque {}", bloque);
+
+        List<ActividadPropuesta> actividades = blockchainService.getActividadesEnBloque(bloque);
+        for (ActividadPropuesta actividad : actividades) {
+            PropuestaBlockchain propuesta = fromActividadPropuesta(actividad);
+            propuesta.setUltimoBloque(bloque);
+            propuestaRepository.save(propuesta);
+        }
+
+        guardarCheckpoint(bloque);
+        log.info("✅ Índice de propuestas inicializado: {} actividades", actividades.size());
+    }
+
+    private void aplicarEvento(Log evento) {
+        long bloque = evento.getBlockNumber().longValue();
+
+        if (ContractLogReader.esEvento(evento, TOPICO_PROPUESTA)) {
+            ReciclaToken.ActividadPropuestaEventResponse e = ReciclaToken.getActividadPropuestaEventFromLog(evento);
+            PropuestaBlockchain propuesta = propuestaRepository.findById(e.actividadId.longValue())
+                    .orElseGet(PropuestaBlockchain::new);
+            propuesta.setActividadId(e.actividadId.longValue());
+            propuesta.setUsuarioWallet(e.usuario);
+            propuesta.setPesoKg(e.pesoKg.intValue());
+            propuesta.setTipoMaterial(e.tipoMaterial);
+            propuesta.setEvidenciaIpfs(e.evidenciaIPFS);
+            propuesta.setTokensCalculados(Convert.fromWei(e.tokensCalculados.toString(), Convert.Unit.ETHER));
+            if (propuesta.getAprobaciones() == null) {
+                propuesta.setAprobaciones(0);
+                propuesta.setEjecutada(false);
+                propuesta.setRechazada(false);
+            }
+            propuesta.setTransactionHash(evento.getTransactionHash());
+            propuesta.setBlockNumber(bloque);
+            propuesta.setUltimoBloque(bloque);
+            propuestaRepository.save(propuesta);
+            publicar(propuesta, false);
+
+        } else if (ContractLogReader.esEvento(evento, TOPICO_APROBADA)) {
+            ReciclaToken.ActividadAprobadaEventResponse e = ReciclaToken.getActividadAprobadaEventFromLog(evento);
+            buscarOHidratar(e.actividadId).ifPresent(propuesta -> {
+                propuesta.setAprobaciones(e.aprobacionesTotales.intValue());
+                propuesta.setUltimoBloque(bloque);
+                propuestaRepository.save(propuesta);
+                publicar(propuesta, false);
+            });
+
+        } else if (ContractLogReader.esEvento(evento, TOPICO_EJECUTADA)) {
+            ReciclaToken.ActividadEjecutadaEventResponse e = ReciclaToken.getActividadEjecutadaEventFromLog(evento);
+            buscarOHidratar(e.actividadId).ifPresent(propuesta -> {
+                propuesta.setEjecutada(true);
+                propuesta.setUltimoBloque(bloque);
+                propuestaRepository.save(propuesta);
+                publicar(propuesta, false);
+            });
+
+        } else if (ContractLogReader.esEvento(evento, TOPICO_RECHAZADA)) {
+            ReciclaToken.ActividadRechazadaEventResponse e = ReciclaToken.getActividadRechazadaEventFromLog(evento);
+            buscarOHidratar(e.actividadId).ifPresent(propuesta -> {
+                propuesta.setRechazada(true);
+                propuesta.setUltimoBloque(bloque);
+                propuestaRepository.save(propuesta);
+                publicar(propuesta, false);
+            });
+        }
+    }
+
+    /**
+     * Busca la propuesta en el índice; si no existe (evento de una actividad
+     * anterior a la inicialización) la trae del contrato
+     */
+    private Optional<PropuestaBlockchain> buscarOHidratar(BigInteger actividadId) {
+        Optional<PropuestaBlockchain> propuesta = propuestaRepository.findById(actividadId.longValue());
+        if (propuesta.isPresent()) {
+            return propuesta;
+        }
+
+        ActividadPropuesta actividad = blockchainService.getActividad(actividadId);
+        if (actividad == null) {
+            log.warn("⚠️ Evento para actividad #{} desconocida", actividadId);
+            return Optional.empty();
+        }
+        return Optional.of(fromActividadPropuesta(actividad));
+    }
+
+    private void publicar(PropuestaBlockchain propuesta, boolean reorganizacion) {
+        eventPublisher.publishEvent(new PropuestaActualizadaEvent(toCambioEstado(propuesta, reorganizacion)));
+    }
+
+    private void guardarCheckpoint(long bloque) {
+        checkpointRepository.save(new CheckpointBlockchain(CHECKPOINT, bloque, LocalDateTime.now()));
+    }
+
+    private PropuestaBlockchain fromActividadPropuesta(ActividadPropuesta actividad) {
+        PropuestaBlockchain propuesta = new PropuestaBlockchain();
+        propuesta.setActividadId(actividad.getActividadId());
+        propuesta.setUsuarioWallet(actividad.getUsuarioWallet());
+        propuesta.setPesoKg(actividad.getPesoKg());
+        propuesta.setTipoMaterial(actividad.getTipoMaterial());
+        propuesta.setEvidenciaIpfs(actividad.getEvidenciaIPFS());
+        propuesta.setTokensCalculados(actividad.getTokensCalculados());
+        propuesta.setAprobaciones(actividad.getAprobaciones());
+        propuesta.setEjecutada(actividad.getEjecutada());
+        propuesta.setRechazada(actividad.getRechazada());
+        propuesta.setTransactionHash(actividad.getTransactionHash());
+        propuesta.setBlockNumber(actividad.getBlockNumber());
+        return propuesta;
+    }
+
+    private CambioEstadoPropuesta toCambioEstado(PropuestaBlockchain propuesta, boolean reorganizacion) {
+        EstadoPropuesta estado = Boolean.TRUE.equals(propuesta.getRechazada()) ? EstadoPropuesta.RECHAZADA
+                : Boolean.TRUE.equals(propuesta.getEjecutada()) ? EstadoPropuesta.EJECUTADA
+                : propuesta.getAprobaciones() != null && propuesta.getAprobaciones() > 0 ? EstadoPropuesta.APROBADA
+                : EstadoPropuesta.PROPUESTA;
+
+        return CambioEstadoPropuesta.builder()
+                .actividadId(propuesta.getActividadId())
+                .estado(estado)
+                .aprobaciones(propuesta.getAprobaciones())
+                .tipoMaterial(propuesta.getTipoMaterial())
+                .usuarioWallet(propuesta.getUsuarioWallet())
+                .transactionHash(propuesta.getTransactionHash())
+                .blockNumber(propuesta.getUltimoBloque())
+                .reorganizacion(reorganizacion)
+                .build();
+    }
+
+    private ActividadPropuesta toActividadPropuesta(PropuestaBlockchain propuesta) {
+        return ActividadPropuesta.builder()
+                .actividadId(propuesta.getActividadId())
+                .usuarioWallet(propuesta.getUsuarioWallet())
+                .pesoKg(propuesta.getPesoKg())
+                .tipoMaterial(propuesta.getTipoMaterial())
+                .evidenciaIPFS(propuesta.getEvidenciaIpfs())
+                .tokensCalculados(propuesta.getTokensCalculados())
+                .aprobaciones(propuesta.getAprobaciones())
+                .ejecutada(propuesta.getEjecutada())
+                .rechazada(propuesta.getRechazada())
+                .transactionHash(propuesta.getTransactionHash())
+                .blockNumber(propuesta.getBlockNumber())
+                .build();
+    }
+}
@@ -0,0 +1,169 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.CambioEstadoPropuesta;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reparto por SSE de los cambios de estado de las propuestas
+ *
+ * La única fuente es el sondeo de logs de {@link PropuestaIndexerService}
+ * ({@link PropuestaActualizadaEvent}): el número de clientes conectados no
+ * añade llamadas al nodo. Cada cambio se envía como evento "estado" a los
+ * clientes suscritos a todas las propuestas o a esa actividad.
+ *
+ * El envío se hace en un hilo propio para que un cliente lento no retrase al
+ * indexador; un cliente que falla al recibir se descarta. Por la misma razón
+ * APROBACIONES_REQUERIDAS se lee en ese hilo al arrancar (y se reintenta con
+ * el heartbeat si falló), nunca en el hilo del indexador.
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class PropuestaStreamHub {
+
+    private final ReciclaTokenRegistry contractRegistry;
+    private final int maxClientes;
+
+    private final List<Suscripcion> suscripciones = new CopyOnWriteArrayList<>();
+    private final ExecutorService despachador = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "propuestas-sse");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Constante del contrato, se lee una sola vez en el despachador
+    private volatile Integer aprobacionesRequeridas;
+
+    public PropuestaStreamHub(ReciclaTokenRegistry contractRegistry,
+            @Value("${blockchain.stream.max-clientes:500}") int maxClientes) {
+        this.contractRegistry = contractRegistry;
+        this.maxClientes = maxClientes;
+    }
+
+    /**
+     * Registra un cliente
+     *
+     * @param actividadId Actividad a seguir, o null para todas
+     * @param inicial     Estado actual a enviar al conectar, o null
+     * @return El emitter, o null si se alcanzó el máximo de clientes
+     */
+    public SseEmitter suscribir(Long actividadId, CambioEstadoPropuesta inicial) {
+        if (suscripciones.size() >= maxClientes) {
+            log.warn("⚠️ Máximo de {} clientes en el stream de propuestas alcanzado", maxClientes);
+            return null;
+        }
+
+        // Sin timeout: el cliente cierra la conexión; los caídos se detectan con el heartbeat
+        SseEmitter emitter = new SseEmitter(0L);
+        Suscripcion suscripcion = new Suscripcion(emitter, actividadId);
+        emitter.onCompletion(() -> suscripciones.remove(suscripcion));
+        emitter.onTimeout(() -> suscripciones.remove(suscripcion));
+        emitter.onError(e -> suscripciones.remove(suscripcion));
+        suscripciones.add(suscripcion);
+
+        if (inicial != null) {
+            despachador.execute(() -> enviar(suscripcion, SseEmitter.event().name("estado").data(completar(inicial))));
+        }
+        log.info("📡 Cliente suscrito al stream de propuestas{} ({} conectados)",
+                actividadId != null ? " #" + actividadId : "", suscripciones.size());
+        return emitter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alIniciar() {
+        despachador.execute(this::cargarAprobacionesRequeridas);
+    }
+
+    @EventListener
+    public void alActualizarPropuesta(PropuestaActualizadaEvent evento) {
+        if (suscripciones.isEmpty()) {
+            return;
+        }
+        despachador.execute(() -> {
+            CambioEstadoPropuesta cambio = completar(evento.cambio());
+            for (Suscripcion suscripcion : suscripciones) {
+                if (suscripcion.actividadId == null || suscripcion.actividadId.equals(cambio.getActividadId())) {
+                    enviar(suscripcion, SseEmitter.event().name("estado").data(cambio));
+                }
+            }
+        });
+    }
+
+    /**
+     * Comentario periódico para que proxies y balanceadores no corten la
+     * conexión y para descartar clientes desconectados
+     */
+    @Scheduled(fixedDelayString = "${blockchain.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        if (aprobacionesRequeridas == null) {
+            despachador.execute(this::cargarAprobacionesRequeridas);
+        }
+        if (suscripciones.isEmpty()) {
+            return;
+        }
+        despachador.execute(() -> {
+            for (Suscripcion suscripcion : suscripciones) {
+                enviar(suscripcion, SseEmitter.event().comment("ping"));
+            }
+        });
+    }
+
+    public int getClientesConectados() {
+        return suscripciones.size();
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        despachador.shutdownNow();
+        for (Suscripcion suscripcion : suscripciones) {
+            suscripcion.emitter.complete();
+        }
+        suscripciones.clear();
+    }
+
+    private void enviar(Suscripcion suscripcion, SseEmitter.SseEventBuilder evento) {
+        try {
+            suscripcion.emitter.send(evento);
+        } catch (Exception e) {
+            suscripciones.remove(suscripcion);
+            suscripcion.emitter.completeWithError(e);
+            log.debug("🔌 Cliente desconectado del stream de propuestas");
+        }
+    }
+
+    /**
+     * Añade la constante ya cargada; si aún no se pudo leer el campo queda
+     * null en vez de bloquear el envío con un eth_call
+     */
+    private CambioEstadoPropuesta completar(CambioEstadoPropuesta cambio) {
+        cambio.setAprobacionesRequeridas(aprobacionesRequeridas);
+        return cambio;
+    }
+
+    private void cargarAprobacionesRequeridas() {
+        if (aprobacionesRequeridas != null) {
+            return;
+        }
+        try {
+            aprobacionesRequeridas = contractRegistry.backend().APROBACIONES_REQUERIDAS().send().intValue();
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo leer APROBACIONES_REQUERIDAS, se reintentará con el heartbeat: {}", e.getMessage());
+        }
+    }
+
+    private record Suscripcion(SseEmitter emitter, Long actividadId) {
+    }
+}
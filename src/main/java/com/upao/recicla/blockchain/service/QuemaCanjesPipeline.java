@@ -0,0 +1,212 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.TransactionResult;
+import com.upao.recicla.domain.entity.Canje;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
+import com.upao.recicla.domain.entity.Recompensa;
+import com.upao.recicla.infra.exception.BlockchainNoDisponibleException;
+import com.upao.recicla.infra.repository.CanjeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline de quema de tokens de canjes
+ *
+ * La cola durable es la propia tabla de canjes: el canje se guarda EN_COLA en
+ * la transacción de la petición y, tras el commit, su ID se encola aquí. Un
+ * único hilo agrupa los canjes que llegan en una ventana corta y envía sus
+ * burnForRedemption uno tras otro; con envío asíncrono cada envío vuelve en
+ * cuanto el nodo acepta la transacción, de modo que los nonces se encadenan
+ * sin esperar recibos. Cada canje queda PENDIENTE con su hash y
+ * {@link TransactionReceiptTracker} lo confirma.
+ *
+ * Si blockchain no está disponible el canje sigue EN_COLA y lo reencola la
+ * cola de reintentos. El hash y el nonce de cada quema se guardan en el canje
+ * antes de difundirla; un canje EN_COLA con envío registrado solo se vuelve a
+ * quemar cuando consta que esa transacción no existe, para no quemar dos veces
+ * los tokens del usuario.
+ */
+@Service
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class QuemaCanjesPipeline {
+
+    private final BlockchainService blockchainService;
+    private final BlockchainCircuitBreaker circuitBreaker;
+    private final CanjeRepository canjeRepository;
+    private final long ventanaMs;
+    private final int maxLote;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quema-canjes");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<Long> pendientes = new LinkedHashSet<>();
+    private ScheduledFuture<?> envioProgramado;
+
+    public QuemaCanjesPipeline(BlockchainService blockchainService,
+            BlockchainCircuitBreaker circuitBreaker,
+            CanjeRepository canjeRepository,
+            @Value("${blockchain.quemas.ventana-ms:200}") long ventanaMs,
+            @Value("${blockchain.quemas.max-lote:50}") int maxLote) {
+        this.blockchainService = blockchainService;
+        this.circuitBreaker = circuitBreaker;
+        this.canjeRepository = canjeRepository;
+        this.ventanaMs = ventanaMs;
+        this.maxLote = maxLote;
+    }
+
+    /**
+     * Agrega un canje (ya persistido con blockchainTxEstado = EN_COLA) a la cola
+     */
+    public synchronized void encolar(Long canjeId) {
+        pendientes.add(canjeId);
+
+        if (pendientes.size() >= maxLote) {
+            if (envioProgramado != null) {
+                envioProgramado.cancel(false);
+            }
+            envioProgramado = executor.schedule(this::enviarLote, 0, TimeUnit.MILLISECONDS);
+        } else if (envioProgramado == null) {
+            envioProgramado = executor.schedule(this::enviarLote, ventanaMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reencola las quemas que quedaron sin enviar (p. ej. tras un reinicio)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reencolarPendientes() {
+        List<Canje> canjes = canjeRepository.findTop200ByBlockchainTxEstadoOrderByIdAsc(EstadoTransaccion.EN_COLA);
+        if (!canjes.isEmpty()) {
+            log.info("🔁 Reencolando {} quemas de canjes pendientes", canjes.size());
+            canjes.forEach(canje -> encolar(canje.getId()));
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdown();
+    }
+
+    private void enviarLote() {
+        List<Long> lote = new ArrayList<>();
+        synchronized (this) {
+            var iterator = pendientes.iterator();
+            while (iterator.hasNext() && lote.size() < maxLote) {
+                lote.add(iterator.next());
+                iterator.remove();
+            }
+            envioProgramado = pendientes.isEmpty()
+                    ? null
+                    : executor.schedule(this::enviarLote, 0, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            List<Canje> canjes = canjeRepository.findAllWithUsuarioByIdInOrderByIdAsc(lote).stream()
+                    .filter(canje -> canje.getBlockchainTxEstado() == EstadoTransaccion.EN_COLA)
+                    .toList();
+            if (canjes.isEmpty()) {
+                return;
+            }
+
+            log.info("🔥 Enviando {} quemas de canjes", canjes.size());
+            for (Canje canje : canjes) {
+                quemar(canje);
+                canjeRepository.save(canje);
+                if (canje.getBlockchainTxEstado() == EstadoTransaccion.EN_COLA) {
+                    // Circuito abierto o nodo caído: el resto queda EN_COLA para la cola de reintentos
+                    log.warn("⚠️ Blockchain no disponible, {} quemas quedan en cola", canjes.size() - canjes.indexOf(canje));
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Error enviando lote de quemas; los canjes quedan en cola", e);
+        }
+    }
+
+    private void quemar(Canje canje) {
+        if (canje.getBlockchainTxHash() != null && !envioPrevioAusente(canje)) {
+            return;
+        }
+
+        Recompensa recompensa = canje.getRecompensa();
+        String wallet = canje.getUsuario().getWalletAddress();
+        BigDecimal cantidad = BigDecimal.valueOf(canje.getPuntosCanjear());
+        String description = String.format("Canje: %s - %s",
+                recompensa.getTitulo(),
+                recompensa.getDescripcion());
+
+        TransactionResult result;
+        try {
+            result = circuitBreaker.ejecutar(() -> blockchainService.burnTokensForRedemption(wallet, cantidad, description,
+                    (hash, nonce) -> {
+                        canje.setBlockchainTxHash(hash);
+                        canje.setBlockchainTxNonce(nonce.longValue());
+                        canjeRepository.save(canje);
+                    }));
+        } catch (BlockchainNoDisponibleException e) {
+            log.warn("{} - quema del canje #{} en cola", e.getMessage(), canje.getId());
+            return;
+        }
+
+        if (result.isSuccess()) {
+            canje.setBlockchainTxHash(result.getTransactionHash());
+            canje.setBlockchainTxEstado(result.isPending() ? EstadoTransaccion.PENDIENTE : EstadoTransaccion.CONFIRMADA);
+            log.info("✅ Quema del canje #{} enviada. TX: {}", canje.getId(), result.getTransactionHash());
+        } else if (BlockchainCircuitBreaker.esFalloTransitorio(result)) {
+            log.warn("⚠️ Quema del canje #{} en cola para reintento: {}", canje.getId(), result.getErrorMessage());
+        } else {
+            log.warn("❌ No se pudo quemar el canje #{}: {}", canje.getId(), result.getErrorMessage());
+            canje.setBlockchainTxEstado(EstadoTransaccion.FALLIDA);
+        }
+    }
+
+    /**
+     * @return true si la quema registrada del canje no existe y se puede reenviar
+     */
+    private boolean envioPrevioAusente(Canje canje) {
+        BlockchainService.EnvioPrevio envio;
+        try {
+            envio = blockchainService.consultarEnvioPrevio(canje.getBlockchainTxHash(), canje.getBlockchainTxNonce());
+        } catch (Exception e) {
+            log.warn("⏸️ No se pudo comprobar la quema previa del canje #{}: {}", canje.getId(), e.getMessage());
+            return false;
+        }
+
+        switch (envio) {
+            case PRESENTE -> {
+                log.info("🔎 La quema del canje #{} ya está en la red: {}", canje.getId(), canje.getBlockchainTxHash());
+                canje.setBlockchainTxEstado(EstadoTransaccion.PENDIENTE);
+                return false;
+            }
+            case INDETERMINADO -> {
+                return false;
+            }
+            default -> {
+                log.info("↩️ La quema del canje #{} no llegó a la red ({}), se reenvía",
+                        canje.getId(), canje.getBlockchainTxHash());
+                canje.setBlockchainTxHash(null);
+                canje.setBlockchainTxNonce(null);
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.contracts.ReciclaToken;
+import com.upao.recicla.blockchain.rpc.MultiEndpointService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Convert;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Réplica local de ratesPorMaterial del contrato
+ *
+ * Se carga con un batch de ratesPorMaterial(material) fijado a un bloque y se
+ * mantiene al día con los eventos RateMaterialActualizado posteriores. Permite
+ * calcular los tokens de una actividad igual que calcularTokens(pesoKg,
+ * tipoMaterial) sin llamar al nodo.
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class RateMaterialCache {
+
+    /**
+     * Materiales configurados en el despliegue del contrato
+     */
+    static final List<String> MATERIALES = List.of("plastico", "papel", "vidrio", "metal", "carton", "organico");
+
+    private static final String TOPICO_RATE = ContractLogReader.topico(ReciclaToken.RATEMATERIALACTUALIZADO_EVENT);
+
+    private final ContractLogReader logReader;
+    private final ContractReadBatcher readBatcher;
+    private final ReciclaTokenRegistry contractRegistry;
+    private final long maxBloques;
+
+    // Rate en wei de REC por kg; un material sin rate (0 on-chain) no es válido
+    private final Map<String, BigInteger> rates = new ConcurrentHashMap<>();
+    private volatile long procesadoHasta = -1;
+
+    public RateMaterialCache(ContractLogReader logReader,
+            ContractReadBatcher readBatcher,
+            ReciclaTokenRegistry contractRegistry,
+            @Value("${blockchain.indexer.max-bloques:2000}") long maxBloques) {
+        this.logReader = logReader;
+        this.readBatcher = readBatcher;
+        this.contractRegistry = contractRegistry;
+        this.maxBloques = maxBloques;
+    }
+
+    @Scheduled(fixedDelayString = "${blockchain.rates.intervalo-ms:60000}", initialDelayString = "${blockchain.indexer.retraso-inicial-ms:5000}")
+    public void sincronizar() {
+        try {
+            // Cabecera y logs/bloques del mismo nodo
+            MultiEndpointService.enMismoNodo(this::sincronizarRonda);
+        } catch (Exception e) {
+            log.error("❌ Error sincronizando rates de materiales", e);
+        }
+    }
+
+    private void sincronizarRonda() throws Exception {
+        long ultimoBloque = logReader.getUltimoBloque();
+
+        if (procesadoHasta < 0 || ultimoBloque - procesadoHasta > maxBloques) {
+            cargar(ultimoBloque);
+            return;
+        }
+        if (ultimoBloque <= procesadoHasta) {
+            return;
+        }
+
+        List<Log> logs = logReader.leerLogs(procesadoHasta + 1, ultimoBloque,
+                ReciclaToken.RATEMATERIALACTUALIZADO_EVENT);
+        for (Log evento : logs) {
+            if (ContractLogReader.esEvento(evento, TOPICO_RATE)) {
+                ReciclaToken.RateMaterialActualizadoEventResponse e =
+                        ReciclaToken.getRateMaterialActualizadoEventFromLog(evento);
+                actualizar(e.tipoMaterial, e.nuevoRate);
+                log.info("💱 Rate de '{}' actualizado a {} REC/kg", e.tipoMaterial, enRec(e.nuevoRate));
+            }
+        }
+        procesadoHasta = ultimoBloque;
+    }
+
+    /**
+     * Si se aplicaron eventos de bloques descartados se recarga la tabla completa
+     */
+    @EventListener
+    public void alReorganizar(ReorganizacionBlockchainEvent evento) {
+        if (procesadoHasta > evento.ancestroComun()) {
+            procesadoHasta = -1;
+        }
+    }
+
+    public boolean isCargado() {
+        return procesadoHasta >= 0;
+    }
+
+    public long getBloque() {
+        return procesadoHasta;
+    }
+
+    /**
+     * Rate del material en REC por kg
+     */
+    public Optional<BigDecimal> getRate(String tipoMaterial) {
+        return Optional.ofNullable(rates.get(tipoMaterial)).map(RateMaterialCache::enRec);
+    }
+
+    /**
+     * Rates conocidos en REC por kg, por material
+     */
+    public Map<String, BigDecimal> getRates() {
+        Map<String, BigDecimal> resultado = new TreeMap<>();
+        rates.forEach((material, rate) -> resultado.put(material, enRec(rate)));
+        return resultado;
+    }
+
+    /**
+     * Mismo cálculo que calcularTokens(pesoKg, tipoMaterial) del contrato
+     *
+     * @return Tokens en REC, o vacío si el contrato rechazaría la actividad
+     *         (peso no positivo o material sin rate)
+     */
+    public Optional<BigDecimal> calcularTokens(int pesoKg, String tipoMaterial) {
+        BigInteger rate = rates.get(tipoMaterial);
+        if (pesoKg <= 0 || rate == null) {
+            return Optional.empty();
+        }
+        return Optional.of(enRec(BigInteger.valueOf(pesoKg).multiply(rate)));
+    }
+
+    /**
+     * Como {@link #calcularTokens}, pero si la réplica no tiene rate para el
+     * material (puede ir hasta un intervalo por detrás del contrato) lo
+     * consulta una vez en el contrato antes de darlo por no válido
+     *
+     * @throws Exception si la consulta al contrato falla
+     */
+    public Optional<BigDecimal> calcularTokensConfirmando(int pesoKg, String tipoMaterial) throws Exception {
+        Optional<BigDecimal> tokens = calcularTokens(pesoKg, tipoMaterial);
+        if (tokens.isPresent() || pesoKg <= 0) {
+            return tokens;
+        }
+
+        BigInteger rate = contractRegistry.backend().ratesPorMaterial(tipoMaterial).send();
+        if (!esRateValido(rate)) {
+            return Optional.empty();
+        }
+        rates.put(tipoMaterial, rate);
+        log.info("💱 Rate de '{}' leído del contrato: {} REC/kg", tipoMaterial, enRec(rate));
+        return calcularTokens(pesoKg, tipoMaterial);
+    }
+
+    /**
+     * Misma regla que el contrato: un material es válido si su rate es mayor que 0
+     */
+    static boolean esRateValido(BigInteger rate) {
+        return rate != null && rate.signum() > 0;
+    }
+
+    private void cargar(long bloque) throws Exception {
+        Set<String> materiales = new LinkedHashSet<>(MATERIALES);
+        materiales.addAll(rates.keySet());
+
+        ReciclaToken contract = contractRegistry.backend();
+        ContractReadBatcher.Lote lote = readBatcher.nuevoLote(DefaultBlockParameter.valueOf(BigInteger.valueOf(bloque)));
+        Map<String, ContractReadBatcher.Lectura<BigInteger>> lecturas = new LinkedHashMap<>();
+        for (String material : materiales) {
+            lecturas.put(material, lote.agregar(contract.ratesPorMaterial(material)));
+        }
+        lote.ejecutar();
+
+        lecturas.forEach((material, lectura) -> actualizar(material, lectura.get()));
+        procesadoHasta = bloque;
+        log.info("💱 Rates de materiales cargados en el bloque {}: {}", bloque, getRates());
+    }
+
+    private void actualizar(String material, BigInteger rate) {
+        if (esRateValido(rate)) {
+            rates.put(material, rate);
+        } else {
+            rates.remove(material);
+        }
+    }
+
+    private static BigDecimal enRec(BigInteger wei) {
+        return Convert.fromWei(new BigDecimal(wei), Convert.Unit.ETHER);
+    }
+}
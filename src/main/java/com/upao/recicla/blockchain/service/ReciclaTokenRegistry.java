@@ -0,0 +1,200 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.contracts.ReciclaToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.protocol.Web3j;
+import org.web3j.tx.TransactionManager;
+import org.web3j.tx.gas.ContractGasProvider;
+import org.web3j.tx.response.NoOpProcessor;
+import org.web3j.tx.response.PollingTransactionReceiptProcessor;
+import org.web3j.tx.response.TransactionReceiptProcessor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registro de clientes del contrato ReciclaToken por firmante
+ *
+ * Evita reconstruir el wrapper del contrato, el TransactionManager y las
+ * Credentials (derivación de la clave pública) en cada petición. Los clientes
+ * de cada firmante (contrato, TransactionManager y NonceManager) forman una
+ * única entrada de una caché LRU con tamaño máximo configurable; las
+ * credenciales derivadas de private keys se desalojan junto con ella. El
+ * firmante del backend queda fuera de la caché y nunca se desaloja.
+ *
+ * Cada firmante tiene un único {@link NonceManager}, compartido por todos sus
+ * clientes, para poder enviar transacciones concurrentes desde la misma wallet.
+ * Si un validador inactivo es desalojado, su próximo NonceManager se vuelve a
+ * sincronizar con el nodo.
+ *
+ * Con blockchain.async-submission=true los envíos devuelven el hash en cuanto
+ * el nodo acepta la transacción (sin esperar el recibo); el estado final lo
+ * resuelve {@link TransactionReceiptTracker}.
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class ReciclaTokenRegistry {
+
+    private final Web3j web3j;
+    private final Credentials backendCredentials;
+    private final GasOracle gasProvider;
+    private final String tokenContractAddress;
+    private final boolean envioAsincrono;
+
+    private final Firmante firmanteBackend;
+
+    /** Guarda las dos cachés, que se desalojan juntas */
+    private final Object cerrojo = new Object();
+    private final Map<String, Firmante> firmantes;
+    private final Map<String, Credentials> credenciales;
+
+    public ReciclaTokenRegistry(Web3j web3j,
+            Credentials backendCredentials,
+            GasOracle gasProvider,
+            String tokenContractAddress,
+            @Value("${blockchain.contract-cache.max-size:32}") int maxClientes,
+            @Value("${blockchain.async-submission:false}") boolean envioAsincrono) {
+        this.web3j = web3j;
+        this.backendCredentials = backendCredentials;
+        this.gasProvider = gasProvider;
+        this.tokenContractAddress = tokenContractAddress;
+        this.envioAsincrono = envioAsincrono;
+        this.firmanteBackend = new Firmante(backendCredentials, true);
+
+        this.firmantes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Firmante> eldest) {
+                if (size() <= maxClientes) {
+                    return false;
+                }
+                log.debug("🗑️ Desalojando clientes del firmante {}", eldest.getKey());
+                credenciales.values().removeIf(c -> c.getAddress().equalsIgnoreCase(eldest.getKey()));
+                return true;
+            }
+        };
+        this.credenciales = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Credentials> eldest) {
+                if (size() <= maxClientes) {
+                    return false;
+                }
+                firmantes.remove(eldest.getValue().getAddress().toLowerCase());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Contrato firmado con la wallet del backend
+     */
+    public ReciclaToken backend() {
+        return firmanteBackend.contrato;
+    }
+
+    /**
+     * Contrato firmado con las credenciales indicadas, reutilizado por dirección
+     */
+    public ReciclaToken contrato(Credentials credentials) {
+        return firmante(credentials).contrato;
+    }
+
+    /**
+     * Contrato del backend con un proveedor de gas específico (no se cachea;
+     * comparte el TransactionManager y los nonces del backend)
+     */
+    public ReciclaToken backend(ContractGasProvider gasProviderEspecifico) {
+        return ReciclaToken.load(tokenContractAddress, web3j, firmanteBackend.transactionManager,
+                gasProviderEspecifico);
+    }
+
+    /**
+     * TransactionManager del firmante (uno por wallet, con su NonceManager).
+     * Solo el del backend registra sus envíos para el monitor de atascadas.
+     */
+    public TransactionManager transactionManager(Credentials credentials) {
+        return firmante(credentials).transactionManager;
+    }
+
+    /**
+     * TransactionManager del backend, que registra sus transacciones en vuelo
+     */
+    public NonceManagedTransactionManager backendTransactionManager() {
+        return firmanteBackend.transactionManager;
+    }
+
+    /**
+     * Asignador de nonces del firmante
+     */
+    public NonceManager nonceManager(Credentials credentials) {
+        return firmante(credentials).nonceManager;
+    }
+
+    public boolean isEnvioAsincrono() {
+        return envioAsincrono;
+    }
+
+    /**
+     * Credenciales a partir de una private key, sin volver a derivar el par de
+     * claves en cada petición. La caché se indexa por el hash de la clave.
+     */
+    public Credentials credenciales(String privateKey) {
+        String clave = Hash.sha3String(privateKey);
+        synchronized (cerrojo) {
+            Credentials cacheadas = credenciales.get(clave);
+            if (cacheadas != null) {
+                return cacheadas;
+            }
+        }
+        Credentials derivadas = Credentials.create(privateKey);
+        synchronized (cerrojo) {
+            Credentials previas = credenciales.putIfAbsent(clave, derivadas);
+            return previas != null ? previas : derivadas;
+        }
+    }
+
+    private Firmante firmante(Credentials credentials) {
+        String direccion = credentials.getAddress().toLowerCase();
+        if (direccion.equalsIgnoreCase(backendCredentials.getAddress())) {
+            return firmanteBackend;
+        }
+        synchronized (cerrojo) {
+            return firmantes.computeIfAbsent(direccion, d -> {
+                log.debug("🆕 Creando cliente del contrato para {}", d);
+                return new Firmante(credentials, false);
+            });
+        }
+    }
+
+    private TransactionReceiptProcessor receiptProcessor() {
+        if (envioAsincrono) {
+            return new NoOpProcessor(web3j);
+        }
+        // Mismos valores por defecto que RawTransactionManager
+        return new PollingTransactionReceiptProcessor(web3j,
+                TransactionManager.DEFAULT_POLLING_FREQUENCY,
+                TransactionManager.DEFAULT_POLLING_ATTEMPTS_PER_TX_HASH);
+    }
+
+    /**
+     * Clientes de una wallet firmante, que se crean y desalojan juntos
+     */
+    private final class Firmante {
+
+        private final NonceManager nonceManager;
+        private final NonceManagedTransactionManager transactionManager;
+        private final ReciclaToken contrato;
+
+        private Firmante(Credentials credentials, boolean registrarEnvios) {
+            this.nonceManager = new NonceManager(web3j, credentials.getAddress());
+            this.transactionManager = new NonceManagedTransactionManager(
+                    web3j, credentials, nonceManager, receiptProcessor(), registrarEnvios);
+            this.contrato = ReciclaToken.load(tokenContractAddress, web3j, transactionManager, gasProvider);
+        }
+    }
+}
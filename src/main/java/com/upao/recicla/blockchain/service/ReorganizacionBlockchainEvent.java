@@ -0,0 +1,12 @@
+package com.upao.recicla.blockchain.service;
+
+/**
+ * Publicado por {@link BlockTracker} al detectar una reorganización: los
+ * bloques posteriores a ancestroComun dejaron de ser canónicos y las
+ * proyecciones deben volver a ese bloque
+ *
+ * @param ancestroComun   Último bloque que sigue en la cadena canónica
+ * @param ultimoDescartado Último bloque verificado antes de la reorganización
+ */
+public record ReorganizacionBlockchainEvent(long ancestroComun, long ultimoDescartado) {
+}
@@ -0,0 +1,13 @@
+package com.upao.recicla.blockchain.service;
+
+import java.math.BigInteger;
+
+/**
+ * Publicado cuando cambia el hash vigente de una transacción del backend: al
+ * reemplazarla con más gas o cuando termina minándose una versión anterior
+ *
+ * @param hashAnterior Hash registrado hasta ahora en las entidades
+ * @param hashNuevo    Hash que lo sustituye
+ */
+public record TransaccionReemplazadaEvent(String direccion, BigInteger nonce, String hashAnterior, String hashNuevo) {
+}
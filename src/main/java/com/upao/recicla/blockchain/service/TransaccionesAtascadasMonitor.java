@@ -0,0 +1,306 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.EstadoTransaccionesPendientes;
+import com.upao.recicla.blockchain.service.NonceManagedTransactionManager.TransaccionEnVuelo;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
+import com.upao.recicla.infra.repository.ActividadRepository;
+import com.upao.recicla.infra.repository.CanjeRepository;
+import com.upao.recicla.infra.repository.UsuarioRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.transaction.type.Transaction1559;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+import org.web3j.protocol.core.methods.response.EthTransaction;
+import org.web3j.protocol.core.methods.response.Transaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monitor de transacciones atascadas del backend
+ *
+ * Una transacción con gas insuficiente que no se mina bloquea todos los
+ * nonces posteriores de la wallet. Periódicamente se descartan las
+ * transacciones ya minadas (nonce &lt; eth_getTransactionCount(latest)) y las
+ * que llevan más del umbral en vuelo se reenvían con el mismo nonce y tarifas
+ * incrementadas (mínimo +10% exigido por los nodos para reemplazar).
+ *
+ * Las transacciones en vuelo se reconstruyen al arrancar desde los hashes y
+ * nonces persistidos (ver {@link #restaurarEnVuelo()}).
+ *
+ * Cada cambio del hash vigente se publica como
+ * {@link TransaccionReemplazadaEvent} para que las entidades sigan el hash
+ * correcto.
+ */
+@Component
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class TransaccionesAtascadasMonitor {
+
+    private final Web3j web3j;
+    private final ReciclaTokenRegistry contractRegistry;
+    private final GasOracle gasOracle;
+    private final TransactionReceiptTracker receiptTracker;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ActividadRepository actividadRepository;
+    private final CanjeRepository canjeRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final long umbralMs;
+    private final BigDecimal incremento;
+    private final int maxReemplazos;
+
+    private final AtomicLong reemplazosTotales = new AtomicLong();
+
+    public TransaccionesAtascadasMonitor(Web3j web3j,
+            ReciclaTokenRegistry contractRegistry,
+            GasOracle gasOracle,
+            TransactionReceiptTracker receiptTracker,
+            ApplicationEventPublisher eventPublisher,
+            ActividadRepository actividadRepository,
+            CanjeRepository canjeRepository,
+            UsuarioRepository usuarioRepository,
+            @Value("${blockchain.tx-atascadas.umbral-ms:180000}") long umbralMs,
+            @Value("${blockchain.tx-atascadas.incremento:1.125}") BigDecimal incremento,
+            @Value("${blockchain.tx-atascadas.max-reemplazos:5}") int maxReemplazos) {
+        this.web3j = web3j;
+        this.contractRegistry = contractRegistry;
+        this.gasOracle = gasOracle;
+        this.receiptTracker = receiptTracker;
+        this.eventPublisher = eventPublisher;
+        this.actividadRepository = actividadRepository;
+        this.canjeRepository = canjeRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.umbralMs = umbralMs;
+        this.incremento = incremento;
+        this.maxReemplazos = maxReemplazos;
+    }
+
+    /**
+     * Las transacciones en vuelo solo viven en memoria: al arrancar se
+     * reconstruyen a partir del hash y el nonce guardados en las actividades,
+     * canjes y registros en whitelist PENDIENTE aún no minados. La transacción
+     * firmada se recupera del nodo con eth_getTransactionByHash; las que el
+     * nodo ya no conoce las reconcilia {@link TransactionReceiptTracker}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restaurarEnVuelo() {
+        NonceManagedTransactionManager manager = contractRegistry.backendTransactionManager();
+        try {
+            long minados = nonceMinado(manager.getFromAddress()).longValue();
+
+            Map<String, Long> pendientes = new LinkedHashMap<>();
+            actividadRepository.findByBlockchainTxEstadoAndBlockchainTxNonceGreaterThanEqual(
+                    EstadoTransaccion.PENDIENTE, minados)
+                    .forEach(actividad -> pendientes.put(actividad.getBlockchainTxHash(), actividad.getBlockchainTxNonce()));
+            canjeRepository.findByBlockchainTxEstadoAndBlockchainTxNonceGreaterThanEqual(
+                    EstadoTransaccion.PENDIENTE, minados)
+                    .forEach(canje -> pendientes.put(canje.getBlockchainTxHash(), canje.getBlockchainTxNonce()));
+            usuarioRepository.findByWhitelistEstadoAndWhitelistTxNonceGreaterThanEqual(
+                    EstadoTransaccion.PENDIENTE, minados)
+                    .forEach(usuario -> pendientes.put(usuario.getWhitelistTxHash(), usuario.getWhitelistTxNonce()));
+
+            long ahora = System.currentTimeMillis();
+            int restauradas = 0;
+            for (Map.Entry<String, Long> pendiente : pendientes.entrySet()) {
+                RawTransaction raw = recuperar(pendiente.getKey());
+                if (raw == null || raw.getNonce().longValue() != pendiente.getValue()) {
+                    continue;
+                }
+                // Se desconoce cuándo se envió: el umbral cuenta desde el arranque
+                if (manager.getEnVuelo().putIfAbsent(raw.getNonce(),
+                        new TransaccionEnVuelo(raw, pendiente.getKey(), ahora, List.of())) == null) {
+                    restauradas++;
+                }
+            }
+            if (restauradas > 0) {
+                log.info("🔁 {} transacciones en vuelo restauradas tras el arranque", restauradas);
+            }
+        } catch (Exception e) {
+            log.error("❌ Error restaurando transacciones en vuelo", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${blockchain.tx-atascadas.intervalo-ms:30000}")
+    public void revisar() {
+        NonceManagedTransactionManager manager = contractRegistry.backendTransactionManager();
+        ConcurrentNavigableMap<BigInteger, TransaccionEnVuelo> enVuelo = manager.getEnVuelo();
+        if (enVuelo.isEmpty()) {
+            return;
+        }
+
+        try {
+            BigInteger minados = nonceMinado(manager.getFromAddress());
+            descartarMinadas(manager, enVuelo.headMap(minados));
+
+            long ahora = System.currentTimeMillis();
+            for (TransaccionEnVuelo tx : enVuelo.values()) {
+                if (ahora - tx.enviadaEn() >= umbralMs) {
+                    reemplazar(manager, tx);
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Error revisando transacciones atascadas", e);
+        }
+    }
+
+    public EstadoTransaccionesPendientes getEstado() {
+        NonceManagedTransactionManager manager = contractRegistry.backendTransactionManager();
+        ConcurrentNavigableMap<BigInteger, TransaccionEnVuelo> enVuelo = manager.getEnVuelo();
+
+        long ahora = System.currentTimeMillis();
+        long edadMaxima = 0;
+        int atascadas = 0;
+        for (TransaccionEnVuelo tx : enVuelo.values()) {
+            long edad = ahora - tx.enviadaEn();
+            edadMaxima = Math.max(edadMaxima, edad);
+            if (edad >= umbralMs) {
+                atascadas++;
+            }
+        }
+
+        Map.Entry<BigInteger, TransaccionEnVuelo> primera = enVuelo.firstEntry();
+        return EstadoTransaccionesPendientes.builder()
+                .direccion(manager.getFromAddress())
+                .pendientes(enVuelo.size())
+                .atascadas(atascadas)
+                .nonceMasAntiguo(primera != null ? primera.getKey().longValue() : null)
+                .edadMaximaMs(edadMaxima)
+                .siguienteNonce(manager.getNonceManager().getSiguiente())
+                .reemplazosTotales(reemplazosTotales.get())
+                .build();
+    }
+
+    /**
+     * Quita las transacciones minadas. Si se reemplazaron, comprueba qué versión
+     * se minó y avisa si no es la vigente.
+     */
+    private void descartarMinadas(NonceManagedTransactionManager manager,
+            ConcurrentNavigableMap<BigInteger, TransaccionEnVuelo> minadas) throws IOException {
+        for (TransaccionEnVuelo tx : new ArrayList<>(minadas.values())) {
+            if (!tx.hashesAnteriores().isEmpty()) {
+                List<String> hashes = new ArrayList<>(tx.hashesAnteriores());
+                hashes.add(tx.hash());
+                Map<String, TransactionReceipt> recibos = receiptTracker.consultarRecibos(hashes);
+                if (!recibos.isEmpty() && !recibos.containsKey(tx.hash())) {
+                    String minado = recibos.keySet().iterator().next();
+                    log.info("⛏️ Nonce {} minado con una versión anterior: {}", tx.raw().getNonce(), minado);
+                    eventPublisher.publishEvent(new TransaccionReemplazadaEvent(
+                            manager.getFromAddress(), tx.raw().getNonce(), tx.hash(), minado));
+                }
+            }
+            minadas.remove(tx.raw().getNonce(), tx);
+        }
+    }
+
+    private void reemplazar(NonceManagedTransactionManager manager, TransaccionEnVuelo tx) throws IOException {
+        BigInteger nonce = tx.raw().getNonce();
+        if (tx.getReemplazos() >= maxReemplazos) {
+            log.error("🚨 Transacción con nonce {} sigue atascada tras {} reemplazos: {}",
+                    nonce, tx.getReemplazos(), tx.hash());
+            return;
+        }
+
+        RawTransaction reemplazo = conTarifasIncrementadas(tx.base());
+        EthSendTransaction response = manager.reemplazar(reemplazo);
+
+        List<String> anteriores = new ArrayList<>(tx.hashesAnteriores());
+        if (response.hasError()) {
+            String mensaje = response.getError().getMessage();
+            if (NonceManagedTransactionManager.esNonceConsumido(mensaje)) {
+                // Ya minada: se descarta en la próxima revisión
+                log.info("ℹ️ Nonce {} ya consumido, no se reemplaza", nonce);
+                return;
+            }
+            // Tarifa aún insuficiente: la vigente sigue siendo la última aceptada y
+            // la próxima revisión parte de la tarifa intentada
+            log.warn("⚠️ Reemplazo del nonce {} rechazado: {}", nonce, mensaje);
+            manager.getEnVuelo().replace(nonce, tx,
+                    new TransaccionEnVuelo(tx.raw(), tx.hash(), tx.enviadaEn(), tx.hashesAnteriores(), reemplazo));
+            return;
+        }
+
+        anteriores.add(tx.hash());
+        String hashNuevo = response.getTransactionHash();
+        manager.getEnVuelo().replace(nonce, tx,
+                new TransaccionEnVuelo(reemplazo, hashNuevo, System.currentTimeMillis(), anteriores));
+        reemplazosTotales.incrementAndGet();
+
+        log.info("⛽ Transacción atascada reemplazada: nonce={} {} -> {}", nonce, tx.hash(), hashNuevo);
+        eventPublisher.publishEvent(new TransaccionReemplazadaEvent(
+                manager.getFromAddress(), nonce, tx.hash(), hashNuevo));
+    }
+
+    /**
+     * Misma transacción (nonce, destino, datos, gas limit) con tarifas
+     * incrementadas y nunca por debajo de las actuales de la red
+     */
+    private RawTransaction conTarifasIncrementadas(RawTransaction raw) {
+        if (raw.getTransaction() instanceof Transaction1559 tx) {
+            BigInteger prioridad = incrementar(tx.getMaxPriorityFeePerGas())
+                    .max(gasOracle.getMaxPriorityFeePerGas(null));
+            BigInteger maxFee = incrementar(tx.getMaxFeePerGas())
+                    .max(gasOracle.getMaxFeePerGas(null))
+                    .max(prioridad);
+            return RawTransaction.createTransaction(tx.getChainId(), raw.getNonce(), raw.getGasLimit(),
+                    raw.getTo(), raw.getValue(), raw.getData(), prioridad, maxFee);
+        }
+
+        BigInteger gasPrice = incrementar(raw.getGasPrice()).max(gasOracle.getGasPrice(null));
+        return RawTransaction.createTransaction(raw.getNonce(), gasPrice, raw.getGasLimit(),
+                raw.getTo(), raw.getValue(), raw.getData());
+    }
+
+    private BigInteger incrementar(BigInteger tarifa) {
+        return new BigDecimal(tarifa).multiply(incremento).setScale(0, RoundingMode.CEILING).toBigInteger();
+    }
+
+    /**
+     * Transacción firmada tal como la conoce el nodo, o null si no la conoce
+     */
+    private RawTransaction recuperar(String hash) throws IOException {
+        EthTransaction response = web3j.ethGetTransactionByHash(hash).send();
+        if (response.hasError()) {
+            throw new IOException("eth_getTransactionByHash falló: " + response.getError().getMessage());
+        }
+        Transaction tx = response.getTransaction().orElse(null);
+        // Ya minada: no está en vuelo
+        if (tx == null || tx.getBlockNumberRaw() != null) {
+            return null;
+        }
+        if ("0x2".equals(tx.getType())) {
+            return RawTransaction.createTransaction(tx.getChainId(), tx.getNonce(), tx.getGas(), tx.getTo(),
+                    tx.getValue(), tx.getInput(), tx.getMaxPriorityFeePerGas(), tx.getMaxFeePerGas());
+        }
+        return RawTransaction.createTransaction(tx.getNonce(), tx.getGasPrice(), tx.getGas(), tx.getTo(),
+                tx.getValue(), tx.getInput());
+    }
+
+    private BigInteger nonceMinado(String direccion) throws IOException {
+        EthGetTransactionCount response = web3j
+                .ethGetTransactionCount(direccion, DefaultBlockParameterName.LATEST)
+                .send();
+        if (response.hasError()) {
+            throw new IOException("eth_getTransactionCount falló: " + response.getError().getMessage());
+        }
+        return response.getTransactionCount();
+    }
+}
@@ -0,0 +1,321 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.contracts.ReciclaToken;
+import com.upao.recicla.domain.entity.Actividad;
+import com.upao.recicla.domain.entity.Canje;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
+import com.upao.recicla.domain.entity.Usuario;
+import com.upao.recicla.infra.repository.ActividadRepository;
+import com.upao.recicla.infra.repository.CanjeRepository;
+import com.upao.recicla.infra.repository.UsuarioRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.crypto.Credentials;
+import org.web3j.protocol.core.methods.response.EthGetTransactionCount;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Seguimiento de transacciones enviadas sin esperar el recibo
+ *
+ * Periódicamente consulta, en un único batch JSON-RPC, los recibos de las
+ * transacciones PENDIENTE de actividades, canjes y registros en whitelist y actualiza su estado a
+ * CONFIRMADA o FALLIDA cuando han sido minadas.
+ *
+ * Las pendientes se recorren por páginas de id (keyset) que avanzan en cada
+ * sondeo, de modo que todas se consultan aunque haya muchas sin minar.
+ *
+ * Una actividad, canje o registro en whitelist PENDIENTE cuyo nonce ya se minó
+ * sin que aparezca su recibo se reconcilia: si la transacción no existe (se
+ * descartó del pool y otra ocupó su nonce) vuelve a EN_COLA para que la cola
+ * de reintentos la reenvíe, o al {@link WhitelistBatcher} en el caso de los
+ * registros en whitelist.
+ */
+@Service
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionReceiptTracker {
+
+    /** Filas por consulta (findTop200...) */
+    private static final int PAGINA = 200;
+
+    private final Web3j web3j;
+    private final ActividadRepository actividadRepository;
+    private final CanjeRepository canjeRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final GasOracle gasOracle;
+    private final Credentials backendCredentials;
+    private final BlockchainService blockchainService;
+    private final WhitelistBatcher whitelistBatcher;
+
+    // Último id visto por tipo: las pendientes antiguas no tapan a las nuevas
+    private long cursorActividades;
+    private long cursorCanjes;
+    private long cursorUsuarios;
+
+    @Scheduled(fixedDelayString = "${blockchain.receipt-tracker.intervalo-ms:5000}")
+    public void verificarPendientes() {
+        try {
+            List<Actividad> actividades = actividadRepository
+                    .findTop200ByBlockchainTxEstadoAndIdGreaterThanOrderByIdAsc(
+                            EstadoTransaccion.PENDIENTE, cursorActividades);
+            List<Canje> canjes = canjeRepository
+                    .findTop200ByBlockchainTxEstadoAndIdGreaterThanOrderByIdAsc(
+                            EstadoTransaccion.PENDIENTE, cursorCanjes);
+            List<Usuario> usuarios = usuarioRepository
+                    .findTop200ByWhitelistEstadoAndWhitelistTxHashIsNotNullAndIdGreaterThanOrderByIdAsc(
+                            EstadoTransaccion.PENDIENTE, cursorUsuarios);
+
+            cursorActividades = siguienteCursor(actividades, Actividad::getId);
+            cursorCanjes = siguienteCursor(canjes, Canje::getId);
+            cursorUsuarios = siguienteCursor(usuarios, Usuario::getId);
+
+            if (actividades.isEmpty() && canjes.isEmpty() && usuarios.isEmpty()) {
+                return;
+            }
+
+            Set<String> hashes = new LinkedHashSet<>();
+            actividades.forEach(actividad -> hashes.add(actividad.getBlockchainTxHash()));
+            canjes.forEach(canje -> hashes.add(canje.getBlockchainTxHash()));
+            usuarios.forEach(usuario -> hashes.add(usuario.getWhitelistTxHash()));
+
+            Map<String, TransactionReceipt> recibos = consultarRecibos(hashes);
+
+            int resueltas = 0;
+            for (Actividad actividad : actividades) {
+                TransactionReceipt recibo = recibos.get(actividad.getBlockchainTxHash());
+                if (recibo != null) {
+                    actividad.setBlockchainTxEstado(estado(recibo));
+                    gasOracle.registrarConsumo(ReciclaToken.FUNC_PROPONERACTIVIDAD, recibo.getGasUsed());
+                    actividadRepository.save(actividad);
+                    resueltas++;
+                }
+            }
+            for (Canje canje : canjes) {
+                TransactionReceipt recibo = recibos.get(canje.getBlockchainTxHash());
+                if (recibo != null) {
+                    canje.setBlockchainTxEstado(estado(recibo));
+                    gasOracle.registrarConsumo(ReciclaToken.FUNC_BURNFORREDEMPTION, recibo.getGasUsed());
+                    canjeRepository.save(canje);
+                    resueltas++;
+                }
+            }
+            // Varios usuarios comparten el mismo hash (addMultipleToWhitelist). Un
+            // lote revertido no marca FALLIDA a todos: cada usuario se reenvía solo
+            Set<String> lotesRevertidos = new HashSet<>();
+            for (Usuario usuario : usuarios) {
+                TransactionReceipt recibo = recibos.get(usuario.getWhitelistTxHash());
+                if (recibo == null || lotesRevertidos.contains(usuario.getWhitelistTxHash())) {
+                    continue;
+                }
+                if (!recibo.isStatusOK()) {
+                    List<Usuario> lote = usuarioRepository.findByWhitelistTxHash(usuario.getWhitelistTxHash());
+                    if (lote.size() > 1) {
+                        lotesRevertidos.add(usuario.getWhitelistTxHash());
+                        aislarLoteRevertido(lote);
+                        resueltas += lote.size();
+                        continue;
+                    }
+                }
+                usuario.setWhitelistEstado(estado(recibo));
+                usuarioRepository.save(usuario);
+                resueltas++;
+            }
+
+            if (resueltas > 0) {
+                log.info("🧾 {} transacciones resueltas ({} pendientes consultadas)", resueltas, hashes.size());
+            }
+            reconciliarDescartadas(actividades, canjes, usuarios, recibos);
+
+        } catch (Exception e) {
+            log.error("❌ Error verificando recibos de transacciones", e);
+        }
+    }
+
+    /**
+     * Las transacciones sin recibo cuyo nonce ya está minado se comprueban por
+     * hash; las propuestas y quemas que no existen vuelven a EN_COLA y los
+     * registros en whitelist se reenvían al {@link WhitelistBatcher}
+     */
+    private void reconciliarDescartadas(List<Actividad> actividades, List<Canje> canjes, List<Usuario> usuarios,
+            Map<String, TransactionReceipt> recibos) throws IOException {
+        List<Actividad> actividadesSinRecibo = actividades.stream()
+                .filter(actividad -> actividad.getBlockchainTxEstado() == EstadoTransaccion.PENDIENTE
+                        && actividad.getBlockchainTxNonce() != null
+                        && !recibos.containsKey(actividad.getBlockchainTxHash()))
+                .toList();
+        List<Canje> canjesSinRecibo = canjes.stream()
+                .filter(canje -> canje.getBlockchainTxEstado() == EstadoTransaccion.PENDIENTE
+                        && canje.getBlockchainTxNonce() != null
+                        && !recibos.containsKey(canje.getBlockchainTxHash()))
+                .toList();
+        List<Usuario> usuariosSinRecibo = usuarios.stream()
+                .filter(usuario -> usuario.getWhitelistEstado() == EstadoTransaccion.PENDIENTE
+                        && usuario.getWhitelistTxNonce() != null
+                        && !recibos.containsKey(usuario.getWhitelistTxHash()))
+                .toList();
+        if (actividadesSinRecibo.isEmpty() && canjesSinRecibo.isEmpty() && usuariosSinRecibo.isEmpty()) {
+            return;
+        }
+
+        EthGetTransactionCount response = web3j
+                .ethGetTransactionCount(backendCredentials.getAddress(), DefaultBlockParameterName.LATEST)
+                .send();
+        if (response.hasError()) {
+            return;
+        }
+        long minados = response.getTransactionCount().longValue();
+
+        for (Actividad actividad : actividadesSinRecibo) {
+            if (actividad.getBlockchainTxNonce() < minados
+                    && descartada(actividad.getBlockchainTxHash(), actividad.getBlockchainTxNonce())) {
+                log.warn("↩️ Propuesta de la actividad #{} descartada por la red ({}), vuelve a la cola",
+                        actividad.getId(), actividad.getBlockchainTxHash());
+                actividad.setBlockchainTxEstado(EstadoTransaccion.EN_COLA);
+                actividadRepository.save(actividad);
+            }
+        }
+        for (Canje canje : canjesSinRecibo) {
+            if (canje.getBlockchainTxNonce() < minados
+                    && descartada(canje.getBlockchainTxHash(), canje.getBlockchainTxNonce())) {
+                log.warn("↩️ Quema del canje #{} descartada por la red ({}), vuelve a la cola",
+                        canje.getId(), canje.getBlockchainTxHash());
+                canje.setBlockchainTxEstado(EstadoTransaccion.EN_COLA);
+                canjeRepository.save(canje);
+            }
+        }
+
+        // Un mismo lote se comprueba una sola vez para todos sus usuarios
+        Map<String, Boolean> lotesDescartados = new HashMap<>();
+        for (Usuario usuario : usuariosSinRecibo) {
+            if (usuario.getWhitelistTxNonce() >= minados) {
+                continue;
+            }
+            Boolean descartado = lotesDescartados.get(usuario.getWhitelistTxHash());
+            if (descartado == null) {
+                descartado = descartada(usuario.getWhitelistTxHash(), usuario.getWhitelistTxNonce());
+                lotesDescartados.put(usuario.getWhitelistTxHash(), descartado);
+            }
+            if (descartado) {
+                log.warn("↩️ Registro en whitelist de {} descartado por la red ({}), se reenvía",
+                        usuario.getUsername(), usuario.getWhitelistTxHash());
+                usuario.setWhitelistTxHash(null);
+                usuario.setWhitelistTxNonce(null);
+                usuarioRepository.save(usuario);
+                whitelistBatcher.encolar(usuario.getId());
+            }
+        }
+    }
+
+    /**
+     * Un lote addMultipleToWhitelist revertido no marca FALLIDA a todos sus
+     * usuarios (el revert puede deberse a uno solo): se olvida su hash y cada
+     * uno se reenvía por separado
+     */
+    private void aislarLoteRevertido(List<Usuario> lote) {
+        log.warn("⚠️ Lote de whitelist {} revertido, se reenvían {} registros por separado",
+                lote.get(0).getWhitelistTxHash(), lote.size());
+        lote.forEach(usuario -> {
+            usuario.setWhitelistTxHash(null);
+            usuario.setWhitelistTxNonce(null);
+        });
+        usuarioRepository.saveAll(lote);
+        whitelistBatcher.aislar(lote.stream().map(Usuario::getId).toList());
+    }
+
+    /**
+     * Con una página completa la siguiente continúa tras su último id; con una
+     * incompleta se vuelve al principio
+     */
+    private static <T> long siguienteCursor(List<T> pagina, Function<T, Long> id) {
+        return pagina.size() < PAGINA ? 0L : id.apply(pagina.get(pagina.size() - 1));
+    }
+
+    private boolean descartada(String hash, Long nonce) throws IOException {
+        return blockchainService.consultarEnvioPrevio(hash, nonce) == BlockchainService.EnvioPrevio.AUSENTE;
+    }
+
+    /**
+     * Obtiene los recibos de varias transacciones en un único batch JSON-RPC.
+     * Las transacciones aún no minadas no aparecen en el resultado.
+     */
+    public Map<String, TransactionReceipt> consultarRecibos(Collection<String> hashes) throws IOException {
+        Map<String, TransactionReceipt> recibos = new HashMap<>();
+        if (hashes.isEmpty()) {
+            return recibos;
+        }
+
+        BatchRequest batch = web3j.newBatch();
+        List<Request<?, EthGetTransactionReceipt>> requests = new ArrayList<>(hashes.size());
+        for (String hash : hashes) {
+            Request<?, EthGetTransactionReceipt> request = web3j.ethGetTransactionReceipt(hash);
+            requests.add(request);
+            batch.add(request);
+        }
+
+        BatchResponse batchResponse = batch.send();
+
+        Map<Long, Response<?>> porId = new HashMap<>();
+        for (Response<?> response : batchResponse.getResponses()) {
+            porId.put(response.getId(), response);
+        }
+
+        for (Request<?, EthGetTransactionReceipt> request : requests) {
+            EthGetTransactionReceipt response = (EthGetTransactionReceipt) porId.get(request.getId());
+            if (response == null || response.hasError()) {
+                continue;
+            }
+            response.getTransactionReceipt().ifPresent(recibo -> recibos.put(recibo.getTransactionHash(), recibo));
+        }
+        return recibos;
+    }
+
+    /**
+     * Sigue el nuevo hash cuando una transacción del backend se reemplaza (o se
+     * mina una versión anterior)
+     */
+    @EventListener
+    public void alReemplazarTransaccion(TransaccionReemplazadaEvent evento) {
+        String anterior = evento.hashAnterior();
+        String nuevo = evento.hashNuevo();
+
+        actividadRepository.findByBlockchainTxHash(anterior).forEach(actividad -> {
+            actividad.setBlockchainTxHash(nuevo);
+            actividadRepository.save(actividad);
+        });
+        canjeRepository.findByBlockchainTxHash(anterior).forEach(canje -> {
+            canje.setBlockchainTxHash(nuevo);
+            canjeRepository.save(canje);
+        });
+        usuarioRepository.findByWhitelistTxHash(anterior).forEach(usuario -> {
+            usuario.setWhitelistTxHash(nuevo);
+            usuarioRepository.save(usuario);
+        });
+    }
+
+    private static EstadoTransaccion estado(TransactionReceipt recibo) {
+        return recibo.isStatusOK() ? EstadoTransaccion.CONFIRMADA : EstadoTransaccion.FALLIDA;
+    }
+}
@@ -0,0 +1,227 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.TransactionResult;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
+import com.upao.recicla.domain.entity.Usuario;
+import com.upao.recicla.infra.repository.UsuarioRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola de registros en la whitelist del contrato
+ *
+ * Agrupa los usuarios registrados durante una ventana corta (o hasta un máximo
+ * de wallets) y los envía con una sola transacción addMultipleToWhitelist.
+ * El resultado se guarda por usuario (whitelistEstado / whitelistTxHash). Si el
+ * lote falla antes de difundirse (nodo caído) o el envío lanza una excepción,
+ * se vuelve a encolar tras blockchain.whitelist.reintento-ms; si el nodo lo
+ * rechaza, o se mina revertido (ver {@link TransactionReceiptTracker}), cada
+ * usuario se reintenta individualmente para aislar el error.
+ */
+@Service
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class WhitelistBatcher {
+
+    private final BlockchainService blockchainService;
+    private final UsuarioRepository usuarioRepository;
+    private final long ventanaMs;
+    private final int maxWallets;
+    private final long reintentoMs;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "whitelist-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<Long> pendientes = new LinkedHashSet<>();
+    private ScheduledFuture<?> envioProgramado;
+
+    public WhitelistBatcher(BlockchainService blockchainService,
+            UsuarioRepository usuarioRepository,
+            @Value("${blockchain.whitelist.ventana-ms:2000}") long ventanaMs,
+            @Value("${blockchain.whitelist.max-wallets:100}") int maxWallets,
+            @Value("${blockchain.whitelist.reintento-ms:30000}") long reintentoMs) {
+        this.blockchainService = blockchainService;
+        this.usuarioRepository = usuarioRepository;
+        this.ventanaMs = ventanaMs;
+        this.maxWallets = maxWallets;
+        this.reintentoMs = reintentoMs;
+    }
+
+    /**
+     * Agrega un usuario (ya persistido con whitelistEstado = PENDIENTE) a la cola
+     */
+    public synchronized void encolar(Long usuarioId) {
+        pendientes.add(usuarioId);
+
+        if (pendientes.size() >= maxWallets) {
+            if (envioProgramado != null) {
+                envioProgramado.cancel(false);
+            }
+            envioProgramado = executor.schedule(this::enviarLote, 0, TimeUnit.MILLISECONDS);
+        } else if (envioProgramado == null) {
+            envioProgramado = executor.schedule(this::enviarLote, ventanaMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reencola los registros que quedaron sin enviar (p. ej. tras un reinicio)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reencolarPendientes() {
+        List<Usuario> usuarios = usuarioRepository.findByWhitelistEstadoAndWhitelistTxHashIsNull(EstadoTransaccion.PENDIENTE);
+        if (!usuarios.isEmpty()) {
+            log.info("🔁 Reencolando {} registros de whitelist pendientes", usuarios.size());
+            usuarios.forEach(usuario -> encolar(usuario.getId()));
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        executor.shutdown();
+    }
+
+    private void enviarLote() {
+        List<Long> lote = new ArrayList<>();
+        synchronized (this) {
+            var iterator = pendientes.iterator();
+            while (iterator.hasNext() && lote.size() < maxWallets) {
+                lote.add(iterator.next());
+                iterator.remove();
+            }
+            envioProgramado = pendientes.isEmpty()
+                    ? null
+                    : executor.schedule(this::enviarLote, 0, TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            List<Usuario> usuarios = usuarioRepository.findAllById(lote).stream()
+                    .filter(usuario -> usuario.getWhitelistTxHash() == null)
+                    .toList();
+            if (usuarios.isEmpty()) {
+                return;
+            }
+
+            TransactionResult result = blockchainService.registerUsersOnChain(
+                    usuarios.stream().map(Usuario::getWalletAddress).toList(),
+                    usuarios.stream().map(Usuario::getDni).toList(),
+                    (hash, nonce) -> registrarEnvio(usuarios, hash, nonce));
+
+            if (result.isSuccess()) {
+                usuarios.forEach(usuario -> guardarResultado(usuario, result));
+                log.info("✅ Lote de whitelist enviado: {} usuarios. TX: {}",
+                        usuarios.size(), result.getTransactionHash());
+                return;
+            }
+
+            if (BlockchainCircuitBreaker.esFalloTransitorio(result)) {
+                log.warn("⏸️ Lote de whitelist ({} usuarios) sin enviar, se reintenta en {} s: {}",
+                        usuarios.size(), reintentoMs / 1000, result.getErrorMessage());
+                usuarios.forEach(this::descartarEnvio);
+                reintentar(lote);
+                return;
+            }
+
+            log.warn("⚠️ Falló el lote de whitelist ({} usuarios), reintentando individualmente: {}",
+                    usuarios.size(), result.getErrorMessage());
+            enviarIndividualmente(usuarios);
+
+        } catch (Exception e) {
+            // El lote ya salió de la cola: sin reencolarlo quedaría PENDIENTE hasta un reinicio
+            log.error("❌ Error enviando lote de whitelist, se reintenta en {} s", reintentoMs / 1000, e);
+            reintentar(lote);
+        }
+    }
+
+    /**
+     * Envía por separado el registro de cada usuario de un lote fallido o
+     * revertido, para que el error de uno no arrastre a los demás
+     */
+    public void aislar(List<Long> usuarioIds) {
+        executor.execute(() -> {
+            try {
+                enviarIndividualmente(usuarioRepository.findAllById(usuarioIds).stream()
+                        .filter(usuario -> usuario.getWhitelistTxHash() == null)
+                        .toList());
+            } catch (Exception e) {
+                log.error("❌ Error enviando registros de whitelist individuales, se reintenta en {} s",
+                        reintentoMs / 1000, e);
+                reintentar(usuarioIds);
+            }
+        });
+    }
+
+    private void enviarIndividualmente(List<Usuario> usuarios) {
+        for (Usuario usuario : usuarios) {
+            TransactionResult result = blockchainService.registerUserOnChain(usuario.getWalletAddress(),
+                    usuario.getDni(), (hash, nonce) -> registrarEnvio(List.of(usuario), hash, nonce));
+            if (BlockchainCircuitBreaker.esFalloTransitorio(result)) {
+                descartarEnvio(usuario);
+                reintentar(List.of(usuario.getId()));
+            } else {
+                guardarResultado(usuario, result);
+            }
+        }
+    }
+
+    /**
+     * Vuelve a encolar los usuarios tras la espera de reintento
+     */
+    private void reintentar(List<Long> usuarioIds) {
+        executor.schedule(() -> usuarioIds.forEach(this::encolar), reintentoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * El envío no llegó a difundirse: se olvida el hash registrado para que el
+     * usuario vuelva a entrar en un lote
+     */
+    private void descartarEnvio(Usuario usuario) {
+        if (usuario.getWhitelistTxHash() != null) {
+            usuario.setWhitelistTxHash(null);
+            usuario.setWhitelistTxNonce(null);
+            usuarioRepository.save(usuario);
+        }
+    }
+
+    /**
+     * Guarda el hash y el nonce de la transacción antes de difundirla, para
+     * que el seguimiento de recibos pueda reconciliarla si la red la descarta
+     */
+    private void registrarEnvio(List<Usuario> usuarios, String hash, BigInteger nonce) {
+        usuarios.forEach(usuario -> {
+            usuario.setWhitelistTxHash(hash);
+            usuario.setWhitelistTxNonce(nonce.longValue());
+        });
+        usuarioRepository.saveAll(usuarios);
+    }
+
+    private void guardarResultado(Usuario usuario, TransactionResult result) {
+        if (result.isSuccess()) {
+            usuario.setWhitelistTxHash(result.getTransactionHash());
+            usuario.setWhitelistEstado(result.isPending() ? EstadoTransaccion.PENDIENTE : EstadoTransaccion.CONFIRMADA);
+        } else {
+            log.error("❌ No se pudo registrar en whitelist a {}: {}", usuario.getUsername(), result.getErrorMessage());
+            usuario.setWhitelistTxHash(null);
+            usuario.setWhitelistTxNonce(null);
+            usuario.setWhitelistEstado(EstadoTransaccion.FALLIDA);
+        }
+        usuarioRepository.save(usuario);
+    }
+}
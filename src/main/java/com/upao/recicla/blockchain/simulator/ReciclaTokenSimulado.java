@@ -0,0 +1,573 @@
+package com.upao.recicla.blockchain.simulator;
+
+import com.upao.recicla.blockchain.contracts.ReciclaToken;
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.Utils;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.Event;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.generated.Uint8;
+import org.web3j.crypto.Hash;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Emulación en memoria del estado y la ABI del contrato ReciclaToken
+ *
+ * Implementa las funciones que usa el backend (whitelist, propuestas con
+ * multi-firma, quema por canje, tasas por material y lecturas de balance) con
+ * los mismos eventos que el contrato real. Los roles no se verifican.
+ *
+ * El estado es versionado por bloque: cada clave guarda los valores que le
+ * escribieron los últimos bloques, así que leer un bloque anterior o estimar
+ * gas no copia el estado completo. Las estimaciones escriben en una versión
+ * provisional que se descarta al terminar.
+ */
+class ReciclaTokenSimulado {
+
+    static final BigInteger APROBACIONES_REQUERIDAS = BigInteger.TWO;
+    static final BigInteger MAX_SUPPLY = BigInteger.TEN.pow(27); // 1.000 millones de REC
+    static final String DIRECCION_CERO = "0x0000000000000000000000000000000000000000";
+
+    private static final BigInteger UN_REC = BigInteger.TEN.pow(18);
+    private static final long ESTIMACION = Long.MAX_VALUE;
+    private static final String TOTAL_SUPPLY = "totalSupply";
+    private static final String TOTAL_MINTED = "totalMinted";
+    private static final String CONTADOR = "actividadCounter";
+
+    private static final Map<String, String> FIRMAS = new HashMap<>();
+
+    static {
+        registrar("actividadCounter()");
+        registrar("actividades(uint256)");
+        registrar("getActividad(uint256)");
+        registrar("balanceOf(address)");
+        registrar("totalTokensEarnedByUser(address)");
+        registrar("totalTokensSpentByUser(address)");
+        registrar("isWhitelisted(address)");
+        registrar("getUserDNI(address)");
+        registrar("ratesPorMaterial(string)");
+        registrar("calcularTokens(uint256,string)");
+        registrar("haAprobado(uint256,address)");
+        registrar("actividadAprobadaPor(uint256,address)");
+        registrar("totalSupply()");
+        registrar("totalMinted()");
+        registrar("remainingSupply()");
+        registrar("decimals()");
+        registrar("name()");
+        registrar("symbol()");
+        registrar("paused()");
+        registrar("APROBACIONES_REQUERIDAS()");
+        registrar("MAX_SUPPLY()");
+        registrar("addToWhitelist(address,string)");
+        registrar("addMultipleToWhitelist(address[],string[])");
+        registrar("removeFromWhitelist(address)");
+        registrar("proponerActividad(address,uint256,string,string)");
+        registrar("aprobarActividad(uint256)");
+        registrar("rechazarActividad(uint256,string)");
+        registrar("burnForRedemption(address,uint256,string)");
+        registrar("actualizarRateMaterial(string,uint256)");
+        registrar("transfer(address,uint256)");
+    }
+
+    private final int historial;
+
+    private final MapaVersionado<String, BigInteger> balances = new MapaVersionado<>();
+    private final MapaVersionado<String, BigInteger> ganados = new MapaVersionado<>();
+    private final MapaVersionado<String, BigInteger> gastados = new MapaVersionado<>();
+    private final MapaVersionado<String, String> whitelist = new MapaVersionado<>();
+    private final MapaVersionado<String, BigInteger> rates = new MapaVersionado<>();
+    private final MapaVersionado<Integer, ActividadSimulada> actividades = new MapaVersionado<>();
+    private final MapaVersionado<String, BigInteger> totales = new MapaVersionado<>();
+    private final List<MapaVersionado<?, ?>> mapas = List.of(balances, ganados, gastados, whitelist, rates,
+            actividades, totales);
+
+    // Bloque que leen y escriben las operaciones en curso, y primer bloque que debe seguir siendo legible
+    private long version;
+    private long podarHasta = Long.MIN_VALUE;
+
+    /**
+     * @param historial Bloques recientes cuyo estado se conserva para lecturas
+     */
+    ReciclaTokenSimulado(int historial) {
+        this.historial = historial;
+
+        version = 0;
+        escribir(rates, "plastico", UN_REC.multiply(BigInteger.valueOf(15)));
+        escribir(rates, "papel", UN_REC.multiply(BigInteger.valueOf(10)));
+        escribir(rates, "vidrio", UN_REC.multiply(BigInteger.valueOf(12)));
+        escribir(rates, "metal", UN_REC.multiply(BigInteger.valueOf(20)));
+        escribir(rates, "carton", UN_REC.multiply(BigInteger.valueOf(8)));
+        escribir(rates, "organico", UN_REC.multiply(BigInteger.valueOf(5)));
+    }
+
+    /**
+     * Evalúa una función de solo lectura sobre el estado al final del bloque
+     * indicado y devuelve el resultado ABI codificado
+     */
+    String llamar(String data, long bloque) {
+        version = bloque;
+        String firma = firma(data);
+        String args = argumentos(data);
+
+        List<Type> resultado = switch (firma) {
+            case "actividadCounter()" -> List.of(new Uint256(total(CONTADOR)));
+            case "actividades(uint256)" -> {
+                ActividadSimulada a = actividadExistente(uint(args, 0));
+                yield List.of(new Uint256(a.id), new Address(a.usuario), new Uint256(a.pesoKg),
+                        new Utf8String(a.tipoMaterial), new Utf8String(a.evidenciaIPFS),
+                        new Uint256(a.tokensCalculados), new Uint256(a.timestamp), new Uint8(a.aprobadaPor.size()),
+                        new Bool(a.ejecutada), new Bool(a.rechazada), new Address(a.propuestoPor));
+            }
+            case "getActividad(uint256)" -> {
+                ActividadSimulada a = actividadExistente(uint(args, 0));
+                yield List.of(new Address(a.usuario), new Uint256(a.pesoKg), new Utf8String(a.tipoMaterial),
+                        new Utf8String(a.evidenciaIPFS), new Uint256(a.tokensCalculados), new Uint256(a.timestamp),
+                        new Uint8(a.aprobadaPor.size()), new Bool(a.ejecutada), new Bool(a.rechazada),
+                        new Address(a.propuestoPor));
+            }
+            case "balanceOf(address)" -> List.of(new Uint256(saldo(balances, direccion(args, 0))));
+            case "totalTokensEarnedByUser(address)" -> List.of(new Uint256(saldo(ganados, direccion(args, 0))));
+            case "totalTokensSpentByUser(address)" -> List.of(new Uint256(saldo(gastados, direccion(args, 0))));
+            case "isWhitelisted(address)" -> List.of(new Bool(leer(whitelist, direccion(args, 0)) != null));
+            case "getUserDNI(address)" -> {
+                String dniHash = leer(whitelist, direccion(args, 0));
+                yield List.of(new Utf8String(dniHash != null ? dniHash : ""));
+            }
+            case "ratesPorMaterial(string)" -> List.of(new Uint256(saldo(rates, texto(args, 0))));
+            case "calcularTokens(uint256,string)" -> List.of(new Uint256(calcularTokens(decodificar(args,
+                    new TypeReference<Uint256>() {}, new TypeReference<Utf8String>() {}))));
+            case "haAprobado(uint256,address)", "actividadAprobadaPor(uint256,address)" -> {
+                List<Type> valores = decodificar(args, new TypeReference<Uint256>() {}, new TypeReference<Address>() {});
+                ActividadSimulada a = actividadExistente((BigInteger) valores.get(0).getValue());
+                yield List.of(new Bool(a.aprobadaPor.contains(((String) valores.get(1).getValue()).toLowerCase())));
+            }
+            case "totalSupply()" -> List.of(new Uint256(total(TOTAL_SUPPLY)));
+            case "totalMinted()" -> List.of(new Uint256(total(TOTAL_MINTED)));
+            case "remainingSupply()" -> List.of(new Uint256(MAX_SUPPLY.subtract(total(TOTAL_MINTED))));
+            case "decimals()" -> List.of(new Uint8(18));
+            case "name()" -> List.of(new Utf8String("ReciclaToken"));
+            case "symbol()" -> List.of(new Utf8String("REC"));
+            case "paused()" -> List.of(new Bool(false));
+            case "APROBACIONES_REQUERIDAS()" -> List.of(new Uint256(APROBACIONES_REQUERIDAS));
+            case "MAX_SUPPLY()" -> List.of(new Uint256(MAX_SUPPLY));
+            default -> throw new Revert("Función no soportada por el simulador: " + firma);
+        };
+        return "0x" + FunctionEncoder.encodeConstructor(resultado);
+    }
+
+    /**
+     * Ejecuta una transacción incluida en el bloque indicado. Valida todo antes
+     * de modificar el estado, de modo que un revert (incluido quedarse sin gas)
+     * no deja cambios parciales.
+     *
+     * @return gas consumido y eventos emitidos
+     */
+    Ejecucion ejecutar(String from, String data, BigInteger gasLimit, long timestamp, long bloque) {
+        version = bloque;
+        podarHasta = bloque - historial + 1;
+        try {
+            return ejecutar(from, data, gasLimit, timestamp);
+        } finally {
+            podarHasta = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Ejecuta la transacción sobre el último estado sin límite de gas y
+     * descarta sus escrituras
+     */
+    Ejecucion estimar(String from, String data, long timestamp) {
+        version = ESTIMACION;
+        try {
+            return ejecutar(from, data, null, timestamp);
+        } finally {
+            mapas.forEach(MapaVersionado::descartarProvisionales);
+        }
+    }
+
+    private Ejecucion ejecutar(String from, String data, BigInteger gasLimit, long timestamp) {
+        String remitente = from.toLowerCase();
+        String firma = firma(data);
+        String args = argumentos(data);
+        List<EventoSimulado> eventos = new ArrayList<>();
+
+        switch (firma) {
+            case "addToWhitelist(address,string)" -> {
+                List<Type> valores = decodificar(args, new TypeReference<Address>() {}, new TypeReference<Utf8String>() {});
+                String usuario = ((String) valores.get(0).getValue()).toLowerCase();
+                String dniHash = (String) valores.get(1).getValue();
+                requerir(leer(whitelist, usuario) == null, "Usuario ya en whitelist");
+                long gas = consumir(gasLimit, 75_000);
+                escribir(whitelist, usuario, dniHash);
+                eventos.add(evento(ReciclaToken.USERWHITELISTED_EVENT, List.of(new Address(usuario)), List.of(new Utf8String(dniHash))));
+                return new Ejecucion(gas, eventos);
+            }
+            case "addMultipleToWhitelist(address[],string[])" -> {
+                List<Type> valores = decodificar(args,
+                        new TypeReference<DynamicArray<Address>>() {}, new TypeReference<DynamicArray<Utf8String>>() {});
+                @SuppressWarnings("unchecked")
+                List<Address> usuarios = ((DynamicArray<Address>) valores.get(0)).getValue();
+                @SuppressWarnings("unchecked")
+                List<Utf8String> dnis = ((DynamicArray<Utf8String>) valores.get(1)).getValue();
+                requerir(usuarios.size() == dnis.size(), "Longitudes no coinciden");
+                long gas = consumir(gasLimit, 30_000 + 48_000L * usuarios.size());
+                for (int i = 0; i < usuarios.size(); i++) {
+                    String usuario = usuarios.get(i).getValue().toLowerCase();
+                    // Los ya registrados se omiten sin revertir el lote
+                    if (leer(whitelist, usuario) == null) {
+                        escribir(whitelist, usuario, dnis.get(i).getValue());
+                        eventos.add(evento(ReciclaToken.USERWHITELISTED_EVENT, List.of(new Address(usuario)), List.of(dnis.get(i))));
+                    }
+                }
+                return new Ejecucion(gas, eventos);
+            }
+            case "removeFromWhitelist(address)" -> {
+                String usuario = direccion(args, 0);
+                requerir(leer(whitelist, usuario) != null, "Usuario no esta en whitelist");
+                long gas = consumir(gasLimit, 30_000);
+                escribir(whitelist, usuario, null);
+                eventos.add(evento(ReciclaToken.USERREMOVEDFROMWHITELIST_EVENT, List.of(new Address(usuario)), List.of()));
+                return new Ejecucion(gas, eventos);
+            }
+            case "proponerActividad(address,uint256,string,string)" -> {
+                List<Type> valores = decodificar(args, new TypeReference<Address>() {}, new TypeReference<Uint256>() {},
+                        new TypeReference<Utf8String>() {}, new TypeReference<Utf8String>() {});
+                String usuario = ((String) valores.get(0).getValue()).toLowerCase();
+                BigInteger pesoKg = (BigInteger) valores.get(1).getValue();
+                String material = (String) valores.get(2).getValue();
+                String evidencia = (String) valores.get(3).getValue();
+                requerir(pesoKg.signum() > 0, "Peso debe ser mayor a 0");
+                BigInteger rate = leer(rates, material);
+                requerir(rateValido(rate), "Material no valido");
+                BigInteger tokens = pesoKg.multiply(rate);
+                long gas = consumir(gasLimit, 210_000);
+
+                ActividadSimulada actividad = new ActividadSimulada();
+                actividad.id = total(CONTADOR);
+                actividad.usuario = usuario;
+                actividad.pesoKg = pesoKg;
+                actividad.tipoMaterial = material;
+                actividad.evidenciaIPFS = evidencia;
+                actividad.tokensCalculados = tokens;
+                actividad.timestamp = BigInteger.valueOf(timestamp);
+                actividad.propuestoPor = remitente;
+                escribir(actividades, actividad.id.intValue(), actividad);
+                escribir(totales, CONTADOR, actividad.id.add(BigInteger.ONE));
+
+                eventos.add(evento(ReciclaToken.ACTIVIDADPROPUESTA_EVENT,
+                        List.of(new Uint256(actividad.id), new Address(usuario)),
+                        List.of(new Uint256(pesoKg), new Utf8String(material), new Uint256(tokens), new Utf8String(evidencia))));
+                return new Ejecucion(gas, eventos);
+            }
+            case "aprobarActividad(uint256)" -> {
+                // Copia al escribir: las versiones anteriores siguen viendo la actividad sin cambios
+                ActividadSimulada actividad = actividadExistente(uint(args, 0)).copiar();
+                requerir(!actividad.ejecutada, "Actividad ya ejecutada");
+                requerir(!actividad.rechazada, "Actividad rechazada");
+                requerir(!actividad.aprobadaPor.contains(remitente), "Ya aprobaste esta actividad");
+
+                boolean ejecuta = actividad.aprobadaPor.size() + 1 >= APROBACIONES_REQUERIDAS.intValue();
+                if (ejecuta) {
+                    requerir(total(TOTAL_MINTED).add(actividad.tokensCalculados).compareTo(MAX_SUPPLY) <= 0, "Excede MAX_SUPPLY");
+                }
+                long gas = consumir(gasLimit, ejecuta ? 140_000 : 60_000);
+
+                actividad.aprobadaPor.add(remitente);
+                eventos.add(evento(ReciclaToken.ACTIVIDADAPROBADA_EVENT,
+                        List.of(new Uint256(actividad.id), new Address(remitente)),
+                        List.of(new Uint8(actividad.aprobadaPor.size()))));
+
+                if (ejecuta) {
+                    actividad.ejecutada = true;
+                    acunar(actividad.usuario, actividad.tokensCalculados, eventos,
+                            "Reciclaje: " + actividad.tipoMaterial);
+                    eventos.add(evento(ReciclaToken.ACTIVIDADEJECUTADA_EVENT,
+                            List.of(new Uint256(actividad.id), new Address(actividad.usuario)),
+                            List.of(new Uint256(actividad.tokensCalculados))));
+                }
+                escribir(actividades, actividad.id.intValue(), actividad);
+                return new Ejecucion(gas, eventos);
+            }
+            case "rechazarActividad(uint256,string)" -> {
+                List<Type> valores = decodificar(args, new TypeReference<Uint256>() {}, new TypeReference<Utf8String>() {});
+                ActividadSimulada actividad = actividadExistente((BigInteger) valores.get(0).getValue()).copiar();
+                requerir(!actividad.ejecutada, "Actividad ya ejecutada");
+                requerir(!actividad.rechazada, "Actividad ya rechazada");
+                long gas = consumir(gasLimit, 55_000);
+                actividad.rechazada = true;
+                escribir(actividades, actividad.id.intValue(), actividad);
+                eventos.add(evento(ReciclaToken.ACTIVIDADRECHAZADA_EVENT,
+                        List.of(new Uint256(actividad.id), new Address(remitente)),
+                        List.of(valores.get(1))));
+                return new Ejecucion(gas, eventos);
+            }
+            case "burnForRedemption(address,uint256,string)" -> {
+                List<Type> valores = decodificar(args, new TypeReference<Address>() {}, new TypeReference<Uint256>() {},
+                        new TypeReference<Utf8String>() {});
+                String usuario = ((String) valores.get(0).getValue()).toLowerCase();
+                BigInteger cantidad = (BigInteger) valores.get(1).getValue();
+                requerir(cantidad.signum() > 0, "Cantidad debe ser mayor a 0");
+                requerir(saldo(balances, usuario).compareTo(cantidad) >= 0, "ERC20: burn amount exceeds balance");
+                long gas = consumir(gasLimit, 65_000);
+
+                escribir(balances, usuario, saldo(balances, usuario).subtract(cantidad));
+                escribir(gastados, usuario, saldo(gastados, usuario).add(cantidad));
+                escribir(totales, TOTAL_SUPPLY, total(TOTAL_SUPPLY).subtract(cantidad));
+                eventos.add(evento(ReciclaToken.TRANSFER_EVENT,
+                        List.of(new Address(usuario), new Address(DIRECCION_CERO)), List.of(new Uint256(cantidad))));
+                eventos.add(evento(ReciclaToken.TOKENSBURNED_EVENT,
+                        List.of(new Address(usuario)), List.of(new Uint256(cantidad), valores.get(2))));
+                return new Ejecucion(gas, eventos);
+            }
+            case "actualizarRateMaterial(string,uint256)" -> {
+                List<Type> valores = decodificar(args, new TypeReference<Utf8String>() {}, new TypeReference<Uint256>() {});
+                requerir(((BigInteger) valores.get(1).getValue()).signum() > 0, "Rate debe ser mayor a 0");
+                long gas = consumir(gasLimit, 35_000);
+                escribir(rates, (String) valores.get(0).getValue(), (BigInteger) valores.get(1).getValue());
+                eventos.add(evento(ReciclaToken.RATEMATERIALACTUALIZADO_EVENT, List.of(), valores));
+                return new Ejecucion(gas, eventos);
+            }
+            case "transfer(address,uint256)" -> {
+                List<Type> valores = decodificar(args, new TypeReference<Address>() {}, new TypeReference<Uint256>() {});
+                String destino = ((String) valores.get(0).getValue()).toLowerCase();
+                BigInteger cantidad = (BigInteger) valores.get(1).getValue();
+                requerir(saldo(balances, remitente).compareTo(cantidad) >= 0, "ERC20: transfer amount exceeds balance");
+                long gas = consumir(gasLimit, 52_000);
+                escribir(balances, remitente, saldo(balances, remitente).subtract(cantidad));
+                escribir(balances, destino, saldo(balances, destino).add(cantidad));
+                eventos.add(evento(ReciclaToken.TRANSFER_EVENT,
+                        List.of(new Address(remitente), new Address(destino)), List.of(new Uint256(cantidad))));
+                return new Ejecucion(gas, eventos);
+            }
+            default -> throw new Revert("Función no soportada por el simulador: " + firma);
+        }
+    }
+
+    private void acunar(String usuario, BigInteger cantidad, List<EventoSimulado> eventos, String razon) {
+        escribir(balances, usuario, saldo(balances, usuario).add(cantidad));
+        escribir(ganados, usuario, saldo(ganados, usuario).add(cantidad));
+        escribir(totales, TOTAL_SUPPLY, total(TOTAL_SUPPLY).add(cantidad));
+        escribir(totales, TOTAL_MINTED, total(TOTAL_MINTED).add(cantidad));
+        eventos.add(evento(ReciclaToken.TRANSFER_EVENT,
+                List.of(new Address(DIRECCION_CERO), new Address(usuario)), List.of(new Uint256(cantidad))));
+        eventos.add(evento(ReciclaToken.TOKENSMINTED_EVENT,
+                List.of(new Address(usuario)), List.of(new Uint256(cantidad), new Utf8String(razon))));
+    }
+
+    private BigInteger calcularTokens(List<Type> valores) {
+        BigInteger rate = leer(rates, (String) valores.get(1).getValue());
+        requerir(rateValido(rate), "Material no valido");
+        return ((BigInteger) valores.get(0).getValue()).multiply(rate);
+    }
+
+    private ActividadSimulada actividadExistente(BigInteger id) {
+        requerir(id.signum() >= 0 && id.compareTo(total(CONTADOR)) < 0, "Actividad no existe");
+        return leer(actividades, id.intValue());
+    }
+
+    private <K, V> V leer(MapaVersionado<K, V> mapa, K clave) {
+        return mapa.get(clave, version);
+    }
+
+    private <K, V> void escribir(MapaVersionado<K, V> mapa, K clave, V valor) {
+        mapa.put(clave, version, valor, podarHasta);
+    }
+
+    private BigInteger saldo(MapaVersionado<String, BigInteger> mapa, String direccion) {
+        BigInteger valor = leer(mapa, direccion);
+        return valor != null ? valor : BigInteger.ZERO;
+    }
+
+    private BigInteger total(String clave) {
+        return saldo(totales, clave);
+    }
+
+    /**
+     * Como el contrato (ratesPorMaterial[material] > 0): sin rate o con rate 0
+     * el material no es válido
+     */
+    private static boolean rateValido(BigInteger rate) {
+        return rate != null && rate.signum() > 0;
+    }
+
+    private static long consumir(BigInteger gasLimit, long gas) {
+        if (gasLimit != null && gasLimit.compareTo(BigInteger.valueOf(gas)) < 0) {
+            throw new Revert("out of gas");
+        }
+        return gas;
+    }
+
+    private static void requerir(boolean condicion, String razon) {
+        if (!condicion) {
+            throw new Revert(razon);
+        }
+    }
+
+    private static EventoSimulado evento(Event event, List<Type> indexados, List<Type> noIndexados) {
+        List<String> topics = new ArrayList<>(1 + indexados.size());
+        topics.add(EventEncoder.encode(event));
+        for (Type indexado : indexados) {
+            topics.add("0x" + TypeEncoder.encode(indexado));
+        }
+        return new EventoSimulado(topics, "0x" + FunctionEncoder.encodeConstructor(noIndexados));
+    }
+
+    private static void registrar(String firma) {
+        FIRMAS.put(Hash.sha3String(firma).substring(0, 10), firma);
+    }
+
+    private static String firma(String data) {
+        if (data == null || data.length() < 10) {
+            throw new Revert("Llamada sin selector");
+        }
+        String firma = FIRMAS.get(data.substring(0, 10).toLowerCase());
+        if (firma == null) {
+            throw new Revert("Selector desconocido: " + data.substring(0, 10));
+        }
+        return firma;
+    }
+
+    private static String argumentos(String data) {
+        return "0x" + data.substring(10);
+    }
+
+    @SafeVarargs
+    private static List<Type> decodificar(String args, TypeReference<? extends Type>... tipos) {
+        List<TypeReference<?>> referencias = new ArrayList<>(Arrays.asList(tipos));
+        List<Type> valores = FunctionReturnDecoder.decode(args, Utils.convert(referencias));
+        requerir(valores.size() == tipos.length, "Argumentos ABI inválidos");
+        return valores;
+    }
+
+    private static BigInteger uint(String args, int indice) {
+        return (BigInteger) decodificarPosicion(args, indice, new TypeReference<Uint256>() {});
+    }
+
+    private static String direccion(String args, int indice) {
+        return ((String) decodificarPosicion(args, indice, new TypeReference<Address>() {})).toLowerCase();
+    }
+
+    private static String texto(String args, int indice) {
+        return (String) decodificarPosicion(args, indice, new TypeReference<Utf8String>() {});
+    }
+
+    /**
+     * Decodifica el argumento en la posición indicada de una función cuyos
+     * argumentos son todos del mismo tipo
+     */
+    private static Object decodificarPosicion(String args, int indice, TypeReference<? extends Type> tipo) {
+        TypeReference<?>[] tipos = new TypeReference<?>[indice + 1];
+        Arrays.fill(tipos, tipo);
+        List<Type> valores = FunctionReturnDecoder.decode(args, Utils.convert(Arrays.asList(tipos)));
+        requerir(valores.size() > indice, "Argumentos ABI inválidos");
+        return valores.get(indice).getValue();
+    }
+
+    static final class ActividadSimulada {
+        BigInteger id;
+        String usuario;
+        BigInteger pesoKg;
+        String tipoMaterial;
+        String evidenciaIPFS;
+        BigInteger tokensCalculados;
+        BigInteger timestamp;
+        boolean ejecutada;
+        boolean rechazada;
+        String propuestoPor;
+        Set<String> aprobadaPor = new HashSet<>();
+
+        ActividadSimulada copiar() {
+            ActividadSimulada copia = new ActividadSimulada();
+            copia.id = id;
+            copia.usuario = usuario;
+            copia.pesoKg = pesoKg;
+            copia.tipoMaterial = tipoMaterial;
+            copia.evidenciaIPFS = evidenciaIPFS;
+            copia.tokensCalculados = tokensCalculados;
+            copia.timestamp = timestamp;
+            copia.ejecutada = ejecutada;
+            copia.rechazada = rechazada;
+            copia.propuestoPor = propuestoPor;
+            copia.aprobadaPor = new HashSet<>(aprobadaPor);
+            return copia;
+        }
+    }
+
+    /**
+     * Mapa cuyas claves guardan sus valores por el bloque que los escribió;
+     * null representa una clave eliminada
+     */
+    static final class MapaVersionado<K, V> {
+        private final Map<K, TreeMap<Long, V>> historial = new HashMap<>();
+        private final Set<K> provisionales = new HashSet<>();
+
+        V get(K clave, long version) {
+            TreeMap<Long, V> valores = historial.get(clave);
+            if (valores == null) {
+                return null;
+            }
+            Map.Entry<Long, V> vigente = valores.floorEntry(version);
+            return vigente != null ? vigente.getValue() : null;
+        }
+
+        /**
+         * @param podarHasta Primer bloque que debe seguir siendo legible; las
+         *                   versiones de la clave anteriores a la vigente en
+         *                   ese bloque se eliminan
+         */
+        void put(K clave, long version, V valor, long podarHasta) {
+            TreeMap<Long, V> valores = historial.computeIfAbsent(clave, c -> new TreeMap<>());
+            valores.put(version, valor);
+            if (version == ESTIMACION) {
+                provisionales.add(clave);
+            }
+            Long vigente = valores.floorKey(podarHasta);
+            if (vigente != null) {
+                valores.headMap(vigente).clear();
+            }
+        }
+
+        void descartarProvisionales() {
+            for (K clave : provisionales) {
+                TreeMap<Long, V> valores = historial.get(clave);
+                valores.remove(ESTIMACION);
+                if (valores.isEmpty()) {
+                    historial.remove(clave);
+                }
+            }
+            provisionales.clear();
+        }
+    }
+
+    record EventoSimulado(List<String> topics, String data) {
+    }
+
+    record Ejecucion(long gasUsado, List<EventoSimulado> eventos) {
+    }
+
+    /**
+     * Revert de la EVM simulada (la transacción no modifica el estado)
+     */
+    static final class Revert extends RuntimeException {
+        Revert(String razon) {
+            super(razon);
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package com.upao.recicla.blockchain.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.SignedRawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.crypto.transaction.type.Transaction1559;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cadena simulada: pool de transacciones, reglas de nonce, producción de
+ * bloques, recibos, logs y estado histórico del contrato ReciclaToken (los
+ * últimos "historial" bloques, versionado por clave en {@link ReciclaTokenSimulado})
+ *
+ * Todas las operaciones son sincronizadas; el simulador está pensado para
+ * pruebas y benchmarks, no para reproducir el rendimiento de un nodo real.
+ */
+class SimulatedChain {
+
+    static final BigInteger BASE_FEE = BigInteger.valueOf(1_000_000_000L);
+    static final BigInteger PROPINA_SUGERIDA = BigInteger.valueOf(1_000_000_000L);
+    private static final long GAS_LIMIT_BLOQUE = 30_000_000L;
+    private static final long GAS_TRANSFERENCIA = 21_000L;
+    private static final long GAS_REVERT = 30_000L;
+    private static final String LOGS_BLOOM_VACIO = "0x" + "0".repeat(512);
+    private static final String SELECTOR_ERROR = "0x08c379a0";
+
+    private final ObjectMapper mapper;
+    private final String direccionContrato;
+    private final int historial;
+
+    private final ReciclaTokenSimulado estado;
+
+    private final List<Bloque> bloques = new ArrayList<>();
+    private final Map<String, Bloque> bloquesPorHash = new HashMap<>();
+    private final Map<String, Long> nonces = new HashMap<>();
+    private final Map<String, TreeMap<Long, TxSimulada>> pool = new LinkedHashMap<>();
+    private final Map<String, TxSimulada> transacciones = new HashMap<>();
+    private final Map<String, ObjectNode> recibos = new HashMap<>();
+    private final List<LogSimulado> logs = new ArrayList<>();
+
+    SimulatedChain(ObjectMapper mapper, String direccionContrato, int historial) {
+        this.mapper = mapper;
+        this.direccionContrato = direccionContrato.toLowerCase();
+        this.historial = historial;
+        this.estado = new ReciclaTokenSimulado(historial);
+
+        Bloque genesis = new Bloque(0, Hash.sha3String("genesis:" + direccionContrato), "0x" + "0".repeat(64),
+                System.currentTimeMillis() / 1000, List.of(), 0);
+        bloques.add(genesis);
+        bloquesPorHash.put(genesis.hash(), genesis);
+    }
+
+    // ==================== TRANSACCIONES ====================
+
+    synchronized String enviarTransaccion(String hex) {
+        String hash = Hash.sha3(hex);
+        if (transacciones.containsKey(hash)) {
+            throw new ErrorRpc(-32000, "already known");
+        }
+
+        RawTransaction raw = TransactionDecoder.decode(hex);
+        if (!(raw instanceof SignedRawTransaction firmada)) {
+            throw new ErrorRpc(-32000, "transaction is not signed");
+        }
+
+        String from;
+        try {
+            from = firmada.getFrom().toLowerCase();
+        } catch (SignatureException e) {
+            throw new ErrorRpc(-32000, "invalid sender");
+        }
+
+        long nonce = raw.getNonce().longValue();
+        long siguiente = nonces.getOrDefault(from, 0L);
+        if (nonce < siguiente) {
+            throw new ErrorRpc(-32000, "nonce too low: next nonce " + siguiente + ", tx nonce " + nonce);
+        }
+
+        BigInteger precioMaximo;
+        BigInteger propinaMaxima;
+        int tipo;
+        if (raw.getTransaction() instanceof Transaction1559 eip1559) {
+            precioMaximo = eip1559.getMaxFeePerGas();
+            propinaMaxima = eip1559.getMaxPriorityFeePerGas();
+            tipo = 2;
+        } else {
+            precioMaximo = raw.getGasPrice();
+            propinaMaxima = raw.getGasPrice();
+            tipo = 0;
+        }
+
+        TreeMap<Long, TxSimulada> cola = pool.computeIfAbsent(from, f -> new TreeMap<>());
+        TxSimulada existente = cola.get(nonce);
+        if (existente != null) {
+            // Reemplazo de una transacción pendiente: exige al menos +10% de precio
+            BigInteger minimo = existente.precioMaximo().multiply(BigInteger.valueOf(110)).divide(BigInteger.valueOf(100));
+            if (precioMaximo.compareTo(minimo) < 0) {
+                throw new ErrorRpc(-32000, "replacement transaction underpriced");
+            }
+            transacciones.remove(existente.hash());
+        }
+
+        TxSimulada tx = new TxSimulada(hash, from, nonce, normalizar(raw.getTo()), Numeric.prependHexPrefix(raw.getData()),
+                raw.getGasLimit(), precioMaximo, propinaMaxima, tipo, hex);
+        cola.put(nonce, tx);
+        transacciones.put(hash, tx);
+        return hash;
+    }
+
+    synchronized long getTransactionCount(String direccion, String etiqueta) {
+        String cuenta = direccion.toLowerCase();
+        long siguiente = nonces.getOrDefault(cuenta, 0L);
+        if (!"pending".equals(etiqueta)) {
+            return siguiente;
+        }
+        TreeMap<Long, TxSimulada> cola = pool.get(cuenta);
+        while (cola != null && cola.containsKey(siguiente)) {
+            siguiente++;
+        }
+        return siguiente;
+    }
+
+    synchronized int pendientes() {
+        return pool.values().stream().mapToInt(TreeMap::size).sum();
+    }
+
+    // ==================== BLOQUES ====================
+
+    /**
+     * Mina un bloque con las transacciones ejecutables del pool (nonces
+     * consecutivos por remitente, hasta el gas limit del bloque)
+     */
+    synchronized void producirBloque() {
+        Bloque padre = bloques.get(bloques.size() - 1);
+        long numero = padre.numero() + 1;
+        long timestamp = Math.max(padre.timestamp(), System.currentTimeMillis() / 1000);
+
+        List<TxSimulada> incluidas = new ArrayList<>();
+        long gasReservado = 0;
+        for (Map.Entry<String, TreeMap<Long, TxSimulada>> entrada : pool.entrySet()) {
+            long siguiente = nonces.getOrDefault(entrada.getKey(), 0L);
+            Iterator<TxSimulada> iterator = entrada.getValue().values().iterator();
+            while (iterator.hasNext()) {
+                TxSimulada tx = iterator.next();
+                if (tx.nonce() != siguiente || gasReservado + tx.gasLimit().longValue() > GAS_LIMIT_BLOQUE) {
+                    break;
+                }
+                incluidas.add(tx);
+                gasReservado += tx.gasLimit().longValue();
+                iterator.remove();
+                siguiente++;
+            }
+        }
+        pool.values().removeIf(TreeMap::isEmpty);
+
+        List<String> hashes = incluidas.stream().map(TxSimulada::hash).toList();
+        String hashBloque = Hash.sha3String("bloque:" + numero + ":" + padre.hash() + ":" + timestamp + ":" + hashes);
+
+        long gasAcumulado = 0;
+        int indiceLog = 0;
+        for (int indice = 0; indice < incluidas.size(); indice++) {
+            TxSimulada tx = incluidas.get(indice);
+            nonces.put(tx.from(), tx.nonce() + 1);
+
+            long gasUsado;
+            boolean exito;
+            List<ReciclaTokenSimulado.EventoSimulado> eventos = List.of();
+            if (direccionContrato.equals(tx.to())) {
+                try {
+                    ReciclaTokenSimulado.Ejecucion ejecucion = estado.ejecutar(tx.from(), tx.data(), tx.gasLimit(), timestamp, numero);
+                    gasUsado = ejecucion.gasUsado();
+                    eventos = ejecucion.eventos();
+                    exito = true;
+                } catch (ReciclaTokenSimulado.Revert revert) {
+                    gasUsado = "out of gas".equals(revert.getMessage())
+                            ? tx.gasLimit().longValue()
+                            : Math.min(GAS_REVERT, tx.gasLimit().longValue());
+                    exito = false;
+                }
+            } else {
+                gasUsado = GAS_TRANSFERENCIA;
+                exito = true;
+            }
+            gasAcumulado += gasUsado;
+
+            ArrayNode logsRecibo = mapper.createArrayNode();
+            for (ReciclaTokenSimulado.EventoSimulado evento : eventos) {
+                LogSimulado log = new LogSimulado(numero, hashBloque, tx.hash(), indice, indiceLog++,
+                        direccionContrato, evento.topics(), evento.data());
+                logs.add(log);
+                logsRecibo.add(log.toJson(mapper));
+            }
+
+            recibos.put(tx.hash(), recibo(tx, numero, hashBloque, indice, gasUsado, gasAcumulado, exito, logsRecibo));
+            transacciones.put(tx.hash(), tx.minada(numero, hashBloque, indice));
+        }
+
+        Bloque bloque = new Bloque(numero, hashBloque, padre.hash(), timestamp, hashes, gasAcumulado);
+        bloques.add(bloque);
+        bloquesPorHash.put(hashBloque, bloque);
+    }
+
+    synchronized long numeroBloque() {
+        return bloques.size() - 1;
+    }
+
+    synchronized JsonNode bloque(String parametro) {
+        long numero = resolverBloque(parametro);
+        if (numero < 0 || numero >= bloques.size()) {
+            return mapper.nullNode();
+        }
+        return bloques.get((int) numero).toJson(mapper);
+    }
+
+    synchronized JsonNode bloquePorHash(String hash) {
+        Bloque bloque = bloquesPorHash.get(hash.toLowerCase());
+        return bloque != null ? bloque.toJson(mapper) : mapper.nullNode();
+    }
+
+    // ==================== LECTURAS ====================
+
+    synchronized String llamar(String to, String data, String parametroBloque) {
+        if (!direccionContrato.equals(normalizar(to))) {
+            return "0x";
+        }
+        try {
+            return estado.llamar(data, bloqueConEstado(parametroBloque));
+        } catch (ReciclaTokenSimulado.Revert revert) {
+            throw revertido(revert);
+        }
+    }
+
+    synchronized long estimarGas(String from, String to, String data) {
+        if (!direccionContrato.equals(normalizar(to))) {
+            return GAS_TRANSFERENCIA;
+        }
+        try {
+            String remitente = from != null ? from : ReciclaTokenSimulado.DIRECCION_CERO;
+            return estado.estimar(remitente, data, System.currentTimeMillis() / 1000).gasUsado();
+        } catch (ReciclaTokenSimulado.Revert revert) {
+            throw revertido(revert);
+        }
+    }
+
+    synchronized JsonNode recibo(String hash) {
+        ObjectNode recibo = recibos.get(hash.toLowerCase());
+        return recibo != null ? recibo : mapper.nullNode();
+    }
+
+    synchronized JsonNode transaccion(String hash) {
+        TxSimulada tx = transacciones.get(hash.toLowerCase());
+        return tx != null ? tx.toJson(mapper) : mapper.nullNode();
+    }
+
+    synchronized ArrayNode logs(JsonNode filtro) {
+        long desde;
+        long hasta;
+        if (filtro.hasNonNull("blockHash")) {
+            Bloque bloque = bloquesPorHash.get(filtro.get("blockHash").asText().toLowerCase());
+            if (bloque == null) {
+                throw new ErrorRpc(-32000, "unknown block");
+            }
+            desde = bloque.numero();
+            hasta = bloque.numero();
+        } else {
+            desde = resolverBloque(texto(filtro, "fromBlock", "latest"));
+            hasta = resolverBloque(texto(filtro, "toBlock", "latest"));
+        }
+
+        List<String> direcciones = valores(filtro.get("address"));
+        JsonNode topics = filtro.get("topics");
+
+        ArrayNode resultado = mapper.createArrayNode();
+        int inicio = primerLogDesde(desde);
+        for (int i = inicio; i < logs.size(); i++) {
+            LogSimulado log = logs.get(i);
+            if (log.bloque() > hasta) {
+                break;
+            }
+            if (!direcciones.isEmpty() && !direcciones.contains(log.address())) {
+                continue;
+            }
+            if (coincideTopics(log.topics(), topics)) {
+                resultado.add(log.toJson(mapper));
+            }
+        }
+        return resultado;
+    }
+
+    synchronized ObjectNode feeHistory(int cantidad, String parametroBloque) {
+        long ultimo = resolverBloque(parametroBloque);
+        long primero = Math.max(0, ultimo - cantidad + 1);
+
+        ObjectNode historial = mapper.createObjectNode();
+        historial.put("oldestBlock", Numeric.encodeQuantity(BigInteger.valueOf(primero)));
+        ArrayNode baseFees = historial.putArray("baseFeePerGas");
+        ArrayNode ratios = historial.putArray("gasUsedRatio");
+        ArrayNode recompensas = historial.putArray("reward");
+        for (long numero = primero; numero <= ultimo; numero++) {
+            baseFees.add(Numeric.encodeQuantity(BASE_FEE));
+            ratios.add((double) bloques.get((int) numero).gasUsado() / GAS_LIMIT_BLOQUE);
+            recompensas.addArray().add(Numeric.encodeQuantity(PROPINA_SUGERIDA));
+        }
+        // Base fee estimada del bloque siguiente
+        baseFees.add(Numeric.encodeQuantity(BASE_FEE));
+        return historial;
+    }
+
+    // ==================== AUXILIARES ====================
+
+    /**
+     * Bloque cuyo estado se lee; solo se conservan los últimos "historial"
+     */
+    private long bloqueConEstado(String parametro) {
+        long numero = resolverBloque(parametro);
+        long ultimo = numeroBloque();
+        if (numero >= ultimo) {
+            return ultimo;
+        }
+        if (numero < 0 || numero <= ultimo - historial) {
+            throw new ErrorRpc(-32000, "missing trie node: historical state not available for block " + numero);
+        }
+        return numero;
+    }
+
+    private long resolverBloque(String parametro) {
+        if (parametro == null) {
+            return numeroBloque();
+        }
+        return switch (parametro) {
+            case "latest", "pending", "safe", "finalized" -> numeroBloque();
+            case "earliest" -> 0;
+            default -> Numeric.decodeQuantity(parametro).longValue();
+        };
+    }
+
+    /**
+     * Búsqueda binaria del primer log con bloque >= desde (los logs se agregan
+     * en orden de bloque)
+     */
+    private int primerLogDesde(long desde) {
+        int bajo = 0;
+        int alto = logs.size();
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (logs.get(medio).bloque() < desde) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private boolean coincideTopics(List<String> topicsLog, JsonNode filtro) {
+        if (filtro == null || filtro.isNull()) {
+            return true;
+        }
+        for (int i = 0; i < filtro.size(); i++) {
+            List<String> opciones = valores(filtro.get(i));
+            if (opciones.isEmpty()) {
+                continue;
+            }
+            if (i >= topicsLog.size() || !opciones.contains(topicsLog.get(i).toLowerCase())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ErrorRpc revertido(ReciclaTokenSimulado.Revert revert) {
+        String data = SELECTOR_ERROR + FunctionEncoder.encodeConstructor(List.of(new Utf8String(revert.getMessage())));
+        return new ErrorRpc(3, "execution reverted: " + revert.getMessage(), data);
+    }
+
+    private ObjectNode recibo(TxSimulada tx, long numero, String hashBloque, int indice, long gasUsado,
+            long gasAcumulado, boolean exito, ArrayNode logsRecibo) {
+        ObjectNode recibo = mapper.createObjectNode();
+        recibo.put("transactionHash", tx.hash());
+        recibo.put("transactionIndex", Numeric.encodeQuantity(BigInteger.valueOf(indice)));
+        recibo.put("blockHash", hashBloque);
+        recibo.put("blockNumber", Numeric.encodeQuantity(BigInteger.valueOf(numero)));
+        recibo.put("from", tx.from());
+        recibo.put("to", tx.to());
+        recibo.put("cumulativeGasUsed", Numeric.encodeQuantity(BigInteger.valueOf(gasAcumulado)));
+        recibo.put("gasUsed", Numeric.encodeQuantity(BigInteger.valueOf(gasUsado)));
+        recibo.put("effectiveGasPrice", Numeric.encodeQuantity(tx.precioEfectivo()));
+        recibo.putNull("contractAddress");
+        recibo.put("status", exito ? "0x1" : "0x0");
+        recibo.put("type", Numeric.encodeQuantity(BigInteger.valueOf(tx.tipo())));
+        recibo.put("logsBloom", LOGS_BLOOM_VACIO);
+        recibo.set("logs", logsRecibo);
+        return recibo;
+    }
+
+    private static String texto(JsonNode nodo, String campo, String porDefecto) {
+        JsonNode valor = nodo.get(campo);
+        return valor == null || valor.isNull() ? porDefecto : valor.asText();
+    }
+
+    private static List<String> valores(JsonNode nodo) {
+        List<String> valores = new ArrayList<>();
+        if (nodo == null || nodo.isNull()) {
+            return valores;
+        }
+        if (nodo.isArray()) {
+            nodo.forEach(valor -> {
+                if (!valor.isNull()) {
+                    valores.add(valor.asText().toLowerCase());
+                }
+            });
+        } else {
+            valores.add(nodo.asText().toLowerCase());
+        }
+        return valores;
+    }
+
+    private static String normalizar(String direccion) {
+        return direccion == null || direccion.isEmpty() ? null : direccion.toLowerCase();
+    }
+
+    // ==================== TIPOS ====================
+
+    record Bloque(long numero, String hash, String parentHash, long timestamp, List<String> transacciones, long gasUsado) {
+        ObjectNode toJson(ObjectMapper mapper) {
+            ObjectNode json = mapper.createObjectNode();
+            json.put("number", Numeric.encodeQuantity(BigInteger.valueOf(numero)));
+            json.put("hash", hash);
+            json.put("parentHash", parentHash);
+            json.put("nonce", "0x0000000000000000");
+            json.put("sha3Uncles", "0x" + "0".repeat(64));
+            json.put("logsBloom", LOGS_BLOOM_VACIO);
+            json.put("transactionsRoot", "0x" + "0".repeat(64));
+            json.put("stateRoot", "0x" + "0".repeat(64));
+            json.put("receiptsRoot", "0x" + "0".repeat(64));
+            json.put("miner", ReciclaTokenSimulado.DIRECCION_CERO);
+            json.put("difficulty", "0x0");
+            json.put("totalDifficulty", "0x0");
+            json.put("extraData", "0x");
+            json.put("size", "0x0");
+            json.put("gasLimit", Numeric.encodeQuantity(BigInteger.valueOf(GAS_LIMIT_BLOQUE)));
+            json.put("gasUsed", Numeric.encodeQuantity(BigInteger.valueOf(gasUsado)));
+            json.put("timestamp", Numeric.encodeQuantity(BigInteger.valueOf(timestamp)));
+            json.put("baseFeePerGas", Numeric.encodeQuantity(BASE_FEE));
+            ArrayNode hashes = json.putArray("transactions");
+            transacciones.forEach(hashes::add);
+            json.putArray("uncles");
+            return json;
+        }
+    }
+
+    record TxSimulada(String hash, String from, long nonce, String to, String data, BigInteger gasLimit,
+            BigInteger precioMaximo, BigInteger propinaMaxima, int tipo, String raw,
+            Long bloque, String hashBloque, Integer indice) {
+
+        TxSimulada(String hash, String from, long nonce, String to, String data, BigInteger gasLimit,
+                BigInteger precioMaximo, BigInteger propinaMaxima, int tipo, String raw) {
+            this(hash, from, nonce, to, data, gasLimit, precioMaximo, propinaMaxima, tipo, raw, null, null, null);
+        }
+
+        TxSimulada minada(long numero, String hashBloque, int indice) {
+            return new TxSimulada(hash, from, nonce, to, data, gasLimit, precioMaximo, propinaMaxima, tipo, raw,
+                    numero, hashBloque, indice);
+        }
+
+        BigInteger precioEfectivo() {
+            BigInteger propina = propinaMaxima.min(precioMaximo.subtract(BASE_FEE).max(BigInteger.ZERO));
+            return BASE_FEE.add(propina).min(precioMaximo.max(BASE_FEE));
+        }
+
+        ObjectNode toJson(ObjectMapper mapper) {
+            ObjectNode json = mapper.createObjectNode();
+            json.put("hash", hash);
+            json.put("nonce", Numeric.encodeQuantity(BigInteger.valueOf(nonce)));
+            json.put("from", from);
+            json.put("to", to);
+            json.put("input", data == null || data.isEmpty() ? "0x" : Numeric.prependHexPrefix(data));
+            json.put("value", "0x0");
+            json.put("gas", Numeric.encodeQuantity(gasLimit));
+            json.put("gasPrice", Numeric.encodeQuantity(bloque != null ? precioEfectivo() : precioMaximo));
+            json.put("type", Numeric.encodeQuantity(BigInteger.valueOf(tipo)));
+            if (tipo == 2) {
+                json.put("maxFeePerGas", Numeric.encodeQuantity(precioMaximo));
+                json.put("maxPriorityFeePerGas", Numeric.encodeQuantity(propinaMaxima));
+            }
+            if (bloque != null) {
+                json.put("blockNumber", Numeric.encodeQuantity(BigInteger.valueOf(bloque)));
+                json.put("blockHash", hashBloque);
+                json.put("transactionIndex", Numeric.encodeQuantity(BigInteger.valueOf(indice)));
+            } else {
+                json.putNull("blockNumber");
+                json.putNull("blockHash");
+                json.putNull("transactionIndex");
+            }
+            return json;
+        }
+    }
+
+    record LogSimulado(long bloque, String hashBloque, String hashTx, int indiceTx, int indiceLog,
+            String address, List<String> topics, String data) {
+        ObjectNode toJson(ObjectMapper mapper) {
+            ObjectNode json = mapper.createObjectNode();
+            json.put("removed", false);
+            json.put("logIndex", Numeric.encodeQuantity(BigInteger.valueOf(indiceLog)));
+            json.put("transactionIndex", Numeric.encodeQuantity(BigInteger.valueOf(indiceTx)));
+            json.put("transactionHash", hashTx);
+            json.put("blockHash", hashBloque);
+            json.put("blockNumber", Numeric.encodeQuantity(BigInteger.valueOf(bloque)));
+            json.put("address", address);
+            json.put("data", data);
+            ArrayNode topicsJson = json.putArray("topics");
+            topics.forEach(topicsJson::add);
+            return json;
+        }
+    }
+
+    /**
+     * Error JSON-RPC devuelto por el nodo simulado
+     */
+    static final class ErrorRpc extends RuntimeException {
+        final int codigo;
+        final String data;
+
+        ErrorRpc(int codigo, String mensaje) {
+            this(codigo, mensaje, null);
+        }
+
+        ErrorRpc(int codigo, String mensaje, String data) {
+            super(mensaje);
+            this.codigo = codigo;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.upao.recicla.blockchain.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.protocol.Service;
+import org.web3j.utils.Numeric;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nodo Ethereum simulado en el mismo proceso (JSON-RPC sobre web3j)
+ *
+ * Se activa con blockchain.rpc-url=sim://local y emula el contrato
+ * ReciclaToken: eth_call, eth_sendRawTransaction, recibos, logs, bloques y
+ * fee history, incluidas las peticiones batch. Permite probar y medir el
+ * backend sin Sepolia/Alchemy.
+ *
+ * Con blockTimeMs = 0 cada transacción se mina al recibirla; si no, se produce
+ * un bloque cada blockTimeMs. La latencia y los fallos inyectados se aplican a
+ * cada viaje de red (una petición o un batch completo).
+ */
+@Slf4j
+public class SimulatedChainService extends Service {
+
+    public static final String ESQUEMA = "sim://";
+
+    private final SimulatedChain cadena;
+    private final long chainId;
+    private final long blockTimeMs;
+    private final long latenciaMs;
+    private final long jitterMs;
+    private final double tasaFallosRed;
+    private final double tasaErrores;
+    private final ScheduledExecutorService productor;
+
+    public SimulatedChainService(String direccionContrato,
+            long chainId,
+            long blockTimeMs,
+            long latenciaMs,
+            long jitterMs,
+            double tasaFallosRed,
+            double tasaErrores,
+            int historialBloques) {
+        super(false);
+        this.cadena = new SimulatedChain(objectMapper, direccionContrato, historialBloques);
+        this.chainId = chainId;
+        this.blockTimeMs = blockTimeMs;
+        this.latenciaMs = latenciaMs;
+        this.jitterMs = jitterMs;
+        this.tasaFallosRed = tasaFallosRed;
+        this.tasaErrores = tasaErrores;
+
+        if (blockTimeMs > 0) {
+            this.productor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sim-block-producer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.productor.scheduleAtFixedRate(this::producirBloque, blockTimeMs, blockTimeMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.productor = null;
+        }
+
+        log.info("🧪 Cadena simulada iniciada: contrato={}, chainId={}, bloque={}ms, latencia={}±{}ms, fallos red={}, errores rpc={}",
+                direccionContrato, chainId, blockTimeMs, latenciaMs, jitterMs, tasaFallosRed, tasaErrores);
+    }
+
+    @Override
+    protected InputStream performIO(String payload) throws IOException {
+        simularLatencia();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (tasaFallosRed > 0 && random.nextDouble() < tasaFallosRed) {
+            throw new IOException("Fallo de red simulado");
+        }
+
+        JsonNode peticion = objectMapper.readTree(payload);
+        JsonNode respuesta;
+        if (peticion.isArray()) {
+            ArrayNode respuestas = objectMapper.createArrayNode();
+            peticion.forEach(elemento -> respuestas.add(procesar(elemento)));
+            respuesta = respuestas;
+        } else {
+            respuesta = procesar(peticion);
+        }
+        return new ByteArrayInputStream(objectMapper.writeValueAsBytes(respuesta));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (productor != null) {
+            productor.shutdownNow();
+        }
+    }
+
+    /**
+     * Mina un bloque de inmediato (útil en pruebas con producción periódica)
+     */
+    public void producirBloque() {
+        try {
+            cadena.producirBloque();
+        } catch (Exception e) {
+            log.error("❌ Error produciendo bloque simulado", e);
+        }
+    }
+
+    private ObjectNode procesar(JsonNode peticion) {
+        ObjectNode respuesta = objectMapper.createObjectNode();
+        respuesta.put("jsonrpc", "2.0");
+        respuesta.set("id", peticion.get("id"));
+
+        try {
+            if (tasaErrores > 0 && ThreadLocalRandom.current().nextDouble() < tasaErrores) {
+                throw new SimulatedChain.ErrorRpc(-32005, "Error simulado del nodo");
+            }
+            respuesta.set("result", ejecutar(peticion.get("method").asText(), peticion.get("params")));
+
+        } catch (SimulatedChain.ErrorRpc e) {
+            ObjectNode error = respuesta.putObject("error");
+            error.put("code", e.codigo);
+            error.put("message", e.getMessage());
+            if (e.data != null) {
+                error.put("data", e.data);
+            }
+        } catch (RuntimeException e) {
+            ObjectNode error = respuesta.putObject("error");
+            error.put("code", -32602);
+            error.put("message", "invalid params: " + e.getMessage());
+        }
+        return respuesta;
+    }
+
+    private JsonNode ejecutar(String metodo, JsonNode params) {
+        return switch (metodo) {
+            case "web3_clientVersion" -> texto("ReciclaSim/1.0");
+            case "net_version" -> texto(String.valueOf(chainId));
+            case "eth_chainId" -> cantidad(chainId);
+            case "eth_syncing" -> objectMapper.getNodeFactory().booleanNode(false);
+            case "eth_blockNumber" -> cantidad(cadena.numeroBloque());
+            case "eth_gasPrice" -> texto(Numeric.encodeQuantity(SimulatedChain.BASE_FEE.add(SimulatedChain.PROPINA_SUGERIDA)));
+            case "eth_maxPriorityFeePerGas" -> texto(Numeric.encodeQuantity(SimulatedChain.PROPINA_SUGERIDA));
+            case "eth_getBalance" -> texto(Numeric.encodeQuantity(BigInteger.TEN.pow(24)));
+            case "eth_getCode" -> texto("0x6080");
+            case "eth_getBlockByNumber" -> cadena.bloque(params.get(0).asText());
+            case "eth_getBlockByHash" -> cadena.bloquePorHash(params.get(0).asText());
+            case "eth_getTransactionCount" -> cantidad(
+                    cadena.getTransactionCount(params.get(0).asText(), parametroBloque(params, 1)));
+            case "eth_sendRawTransaction" -> {
+                String hash = cadena.enviarTransaccion(params.get(0).asText());
+                if (blockTimeMs <= 0) {
+                    cadena.producirBloque();
+                }
+                yield texto(hash);
+            }
+            case "eth_getTransactionReceipt" -> cadena.recibo(params.get(0).asText());
+            case "eth_getTransactionByHash" -> cadena.transaccion(params.get(0).asText());
+            case "eth_call" -> texto(cadena.llamar(
+                    campo(params.get(0), "to"), datos(params.get(0)), parametroBloque(params, 1)));
+            case "eth_estimateGas" -> cantidad(cadena.estimarGas(
+                    campo(params.get(0), "from"), campo(params.get(0), "to"), datos(params.get(0))));
+            case "eth_getLogs" -> cadena.logs(params.get(0));
+            case "eth_feeHistory" -> cadena.feeHistory(
+                    params.get(0).isNumber() ? params.get(0).asInt() : Numeric.decodeQuantity(params.get(0).asText()).intValue(),
+                    params.get(1).asText());
+            default -> throw new SimulatedChain.ErrorRpc(-32601, "the method " + metodo + " does not exist/is not available");
+        };
+    }
+
+    private void simularLatencia() {
+        long espera = latenciaMs;
+        if (jitterMs > 0) {
+            espera += ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1);
+        }
+        if (espera <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private JsonNode texto(String valor) {
+        return objectMapper.getNodeFactory().textNode(valor);
+    }
+
+    private JsonNode cantidad(long valor) {
+        return texto(Numeric.encodeQuantity(BigInteger.valueOf(valor)));
+    }
+
+    private static String parametroBloque(JsonNode params, int indice) {
+        return params != null && params.size() > indice ? params.get(indice).asText() : "latest";
+    }
+
+    private static String campo(JsonNode objeto, String nombre) {
+        JsonNode valor = objeto.get(nombre);
+        return valor == null || valor.isNull() ? null : valor.asText();
+    }
+
+    private static String datos(JsonNode transaccion) {
+        String data = campo(transaccion, "data");
+        return data != null ? data : campo(transaccion, "input");
+    }
+}
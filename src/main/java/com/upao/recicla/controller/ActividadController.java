@@ -12,7 +12,6 @@ import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tomcat.util.codec.binary.Base64;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -127,12 +126,11 @@ public class ActividadController {
             @RequestParam("nombreResiduo") String nombreResiduo,
             @RequestParam("image") MultipartFile imagen) throws IOException {
 
-        String imagenPath = guardarImagen(imagen);
+        validarImagen(imagen);
 
         Actividad actividad = new Actividad();
         actividad.setNombre(nombre);
         actividad.setCantidad(cantidad);
-        actividad.setImagen(imagenPath);
 
         actividadService.addActividad(actividad, nombreResiduo, imagen);
 
@@ -152,12 +150,11 @@ public class ActividadController {
 
         log.info("📦 Centro de Acopio registrando actividad para estudiante: {}", walletEstudiante);
 
-        String imagenPath = guardarImagen(imagen);
+        validarImagen(imagen);
 
         Actividad actividad = new Actividad();
         actividad.setNombre("Entrega Centro Acopio");
         actividad.setCantidad(cantidad);
-        actividad.setImagen(imagenPath);
 
         // Buscar usuario por wallet
         Usuario estudiante = usuarioRepository.findByWalletAddress(walletEstudiante)
@@ -171,7 +168,11 @@ public class ActividadController {
         return ResponseEntity.created(builder.build().toUri()).body(datosDetallesActividad);
     }
 
-    private String guardarImagen(MultipartFile imagen) throws IOException {
+    /**
+     * Valida formato y tamaño; el servicio lee la imagen una sola vez para
+     * guardarla en Base64 y subirla a IPFS
+     */
+    private void validarImagen(MultipartFile imagen) {
         if (!imagen.isEmpty()) {
             if (!FORMATOS_PERMITIDOS.contains(imagen.getContentType())) {
                 throw new IllegalArgumentException("Formato de archivo no permitido.");
@@ -179,11 +180,7 @@ public class ActividadController {
             if (imagen.getSize() > TAMANO_MAXIMO) {
                 throw new IllegalArgumentException("El archivo excede el tamaño máximo permitido.");
             }
-
-            byte[] bytes = imagen.getBytes();
-            return Base64.encodeBase64String(bytes);
         }
-        return null;
     }
 
     @GetMapping("/qr/{actividadId}")
@@ -1,19 +1,36 @@
 package com.upao.recicla.controller;
 
 import com.upao.recicla.blockchain.dto.*;
+import com.upao.recicla.blockchain.service.AnaliticaTokensService;
 import com.upao.recicla.blockchain.service.BlockchainService;
+import com.upao.recicla.blockchain.service.DecisionLoteService;
+import com.upao.recicla.blockchain.service.IPFSService;
+import com.upao.recicla.blockchain.service.PropuestaIndexerService;
+import com.upao.recicla.blockchain.service.PropuestaStreamHub;
+import com.upao.recicla.blockchain.service.RateMaterialCache;
+import com.upao.recicla.blockchain.service.TransaccionesAtascadasMonitor;
+import com.upao.recicla.blockchain.service.ReciclaTokenRegistry;
 import com.upao.recicla.domain.entity.Usuario;
 import com.upao.recicla.infra.repository.UsuarioRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.web3j.crypto.Credentials;
 
 import jakarta.validation.Valid;
 import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/blockchain")
@@ -22,8 +39,19 @@ import java.math.BigInteger;
 public class BlockchainController {
 
     private final BlockchainService blockchainService;
+    private final PropuestaIndexerService propuestaIndexerService;
+    private final PropuestaStreamHub propuestaStreamHub;
+    private final ReciclaTokenRegistry contractRegistry;
+    private final RateMaterialCache rateMaterialCache;
+    private final DecisionLoteService decisionLoteService;
+    private final TransaccionesAtascadasMonitor transaccionesMonitor;
+    private final AnaliticaTokensService analiticaTokensService;
+    private final IPFSService ipfsService;
     private final UsuarioRepository usuarioRepository;
 
+    @Value("${blockchain.decisiones-lote.max-decisiones:200}")
+    private int maxDecisionesLote;
+
     @GetMapping("/balance")
     public ResponseEntity<BlockchainBalance> getMyBalance() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
@@ -71,8 +99,8 @@ public class BlockchainController {
         log.info("✅ Endpoint: Aprobando actividad #{} por validador {}", actividadId, request.getValidadorWallet());
 
         try {
-            // Crear credenciales del validador desde la private key
-            Credentials validadorCredentials = Credentials.create(request.getValidadorPrivateKey());
+            // Credenciales del validador desde la private key (cacheadas por firmante)
+            Credentials validadorCredentials = contractRegistry.credenciales(request.getValidadorPrivateKey());
 
             // Verificar que la wallet coincida
             if (!validadorCredentials.getAddress().equalsIgnoreCase(request.getValidadorWallet())) {
@@ -110,8 +138,8 @@ public class BlockchainController {
                 actividadId, request.getValidadorWallet(), request.getRazon());
 
         try {
-            // Crear credenciales del validador desde la private key
-            Credentials validadorCredentials = Credentials.create(request.getValidadorPrivateKey());
+            // Credenciales del validador desde la private key (cacheadas por firmante)
+            Credentials validadorCredentials = contractRegistry.credenciales(request.getValidadorPrivateKey());
 
             // Verificar que la wallet coincida
             if (!validadorCredentials.getAddress().equalsIgnoreCase(request.getValidadorWallet())) {
@@ -137,6 +165,48 @@ public class BlockchainController {
         }
     }
 
+    /**
+     * Aprueba y/o rechaza varias actividades en un solo request
+     * Las transacciones se envían encadenando nonces y cada resultado se
+     * transmite por SSE a medida que se envía y se confirma
+     * Requiere credenciales del validador con rol VALIDATOR_ROLE
+     */
+    @PostMapping(value = "/actividades/decisiones", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> decidirLote(@Valid @RequestBody DecisionLoteRequest request) {
+        log.info("🗳️ Endpoint: Lote de {} decisiones del validador {}",
+                request.getDecisiones().size(), request.getValidadorWallet());
+
+        if (request.getDecisiones().size() > maxDecisionesLote) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean rechazoSinRazon = request.getDecisiones().stream()
+                .anyMatch(decision -> !decision.getAprobar()
+                        && (decision.getRazon() == null || decision.getRazon().isBlank()));
+        if (rechazoSinRazon) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Credentials validadorCredentials;
+        try {
+            validadorCredentials = contractRegistry.credenciales(request.getValidadorPrivateKey());
+        } catch (Exception e) {
+            log.error("❌ Error creando credenciales del validador", e);
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Verificar que la wallet coincida
+        if (!validadorCredentials.getAddress().equalsIgnoreCase(request.getValidadorWallet())) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Sin timeout: el stream se cierra al confirmar (o agotar la espera de) todas las decisiones
+        SseEmitter emitter = new SseEmitter(0L);
+        if (!decisionLoteService.procesar(validadorCredentials, request.getDecisiones(), emitter)) {
+            return ResponseEntity.status(503).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * Consulta información de una actividad propuesta
      * Público - cualquiera puede consultar el estado de una actividad
@@ -154,17 +224,136 @@ public class BlockchainController {
         }
     }
 
+    /**
+     * Imagen de evidencia de una actividad por su CID
+     * Se sirve desde la caché local (el contenido de un CID es inmutable) y
+     * solo la primera vista va al gateway de IPFS
+     */
+    @GetMapping("/evidencias/{cid}")
+    public ResponseEntity<byte[]> getEvidencia(@PathVariable String cid) {
+        if (!ipfsService.isValidIPFSHash(cid)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            byte[] contenido = ipfsService.retrieveContent(cid);
+            return ResponseEntity.ok()
+                    .contentType(tipoImagen(contenido))
+                    .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                    .body(contenido);
+        } catch (Exception e) {
+            log.error("❌ Error recuperando evidencia {}", cid, e);
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+    }
+
+    private static MediaType tipoImagen(byte[] contenido) {
+        if (contenido.length >= 4 && (contenido[0] & 0xFF) == 0x89 && contenido[1] == 'P'
+                && contenido[2] == 'N' && contenido[3] == 'G') {
+            return MediaType.IMAGE_PNG;
+        }
+        if (contenido.length >= 3 && (contenido[0] & 0xFF) == 0xFF && (contenido[1] & 0xFF) == 0xD8
+                && (contenido[2] & 0xFF) == 0xFF) {
+            return MediaType.IMAGE_JPEG;
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    /**
+     * Estima los tokens que el contrato asignaría a una actividad sin llamar a
+     * blockchain (réplica local de ratesPorMaterial)
+     * Público - devuelve 400 si el contrato rechazaría la actividad
+     */
+    @GetMapping("/tokens/estimar")
+    public ResponseEntity<EstimacionTokens> estimarTokens(@RequestParam String tipoMaterial,
+            @RequestParam Integer pesoKg) {
+        if (!rateMaterialCache.isCargado()) {
+            return ResponseEntity.status(503).build();
+        }
+
+        return rateMaterialCache.calcularTokens(pesoKg, tipoMaterial)
+                .map(tokens -> ResponseEntity.ok(EstimacionTokens.builder()
+                        .tipoMaterial(tipoMaterial)
+                        .pesoKg(pesoKg)
+                        .ratePorKg(rateMaterialCache.getRate(tipoMaterial).orElse(null))
+                        .tokensEstimados(tokens)
+                        .blockNumber(rateMaterialCache.getBloque())
+                        .build()))
+                .orElseGet(() -> ResponseEntity.badRequest().build());
+    }
+
     /**
      * Lista todas las propuestas de actividades pendientes de aprobaci�n
      * Filtra las que no han sido ejecutadas ni rechazadas
+     * Se responde desde el índice local de eventos (sin recorrer el contrato)
      * Endpoint para panel de validadores ONG
      */
     @GetMapping("/actividades/pendientes")
     public ResponseEntity<java.util.List<ActividadPropuesta>> getPropuestasPendientes() {
         log.info(" Consultando propuestas pendientes");
 
-        java.util.List<ActividadPropuesta> propuestas = blockchainService.getPropuestasPendientes();
+        java.util.List<ActividadPropuesta> propuestas = propuestaIndexerService.getPropuestasPendientes();
         
         return ResponseEntity.ok(propuestas);
     }
+
+    /**
+     * Stream SSE de cambios de estado de las propuestas (evento "estado":
+     * PROPUESTA, APROBADA n/m, EJECUTADA, RECHAZADA)
+     * Con actividadId solo se reciben los cambios de esa actividad, empezando
+     * por su estado actual. Los cambios salen del índice de eventos, sin
+     * consultas al contrato por cliente.
+     */
+    @GetMapping(value = "/actividades/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamPropuestas(@RequestParam(required = false) Long actividadId) {
+        CambioEstadoPropuesta inicial = actividadId != null
+                ? propuestaIndexerService.getEstado(actividadId).orElse(null)
+                : null;
+
+        SseEmitter emitter = propuestaStreamHub.suscribir(actividadId, inicial);
+        if (emitter == null) {
+            return ResponseEntity.status(503).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Cola de transacciones del backend pendientes de minar (profundidad,
+     * antigüedad y reemplazos por gas)
+     */
+    @GetMapping("/admin/transacciones-pendientes")
+    @PreAuthorize("hasAuthority('ROLE_ADMINISTRADOR')")
+    public ResponseEntity<EstadoTransaccionesPendientes> getTransaccionesPendientes() {
+        return ResponseEntity.ok(transaccionesMonitor.getEstado());
+    }
+
+    /**
+     * REC acuñados y quemados por día y material en el rango [desde, hasta]
+     * (fechas ISO, ambas incluidas)
+     */
+    @GetMapping("/admin/tokens/serie")
+    @PreAuthorize("hasAuthority('ROLE_ADMINISTRADOR')")
+    public ResponseEntity<java.util.List<BucketTokens>> getSerieTokens(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String material) {
+        if (hasta.isBefore(desde)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(analiticaTokensService.getSerie(desde, hasta, material));
+    }
+
+    /**
+     * Totales de REC acuñados y quemados en el rango [desde, hasta]
+     */
+    @GetMapping("/admin/tokens/resumen")
+    @PreAuthorize("hasAuthority('ROLE_ADMINISTRADOR')")
+    public ResponseEntity<ResumenTokens> getResumenTokens(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+        if (hasta.isBefore(desde)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(analiticaTokensService.getResumen(desde, hasta));
+    }
 }
@@ -3,6 +3,7 @@ package com.upao.recicla.controller;
 import com.upao.recicla.domain.dto.recompensaDto.*;
 import com.upao.recicla.domain.entity.Recompensa;
 import com.upao.recicla.domain.service.RecompensaService;
+import com.upao.recicla.infra.imagen.ImagenBase64;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,7 +16,6 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.util.UriComponentsBuilder;
-import org.apache.tomcat.util.codec.binary.Base64;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -69,8 +69,7 @@ public class RecompensaController {
                 throw new IllegalArgumentException("El archivo excede el tamaño máximo permitido.");
             }
 
-            byte[] bytes = imagen.getBytes();
-            return Base64.encodeBase64String(bytes);
+            return ImagenBase64.codificar(imagen);
         }
         return null;
     }
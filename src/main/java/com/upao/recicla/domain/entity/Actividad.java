@@ -29,6 +29,20 @@ public class Actividad {
     private LocalDateTime fecha;
     @Column(name = "blockchain_tx_hash", length = 66)
     private String blockchainTxHash;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "blockchain_tx_estado", length = 20)
+    private EstadoTransaccion blockchainTxEstado;
+    @Column(name = "blockchain_tx_nonce")
+    private Long blockchainTxNonce;
+    @Column(name = "evidencia_ipfs", length = 100)
+    private String evidenciaIpfs;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "evidencia_estado", length = 20)
+    private EstadoEvidencia evidenciaEstado;
+    @Column(name = "evidencia_intentos")
+    private Integer evidenciaIntentos;
+    @Column(name = "evidencia_proximo_intento")
+    private LocalDateTime evidenciaProximoIntento;
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "residuo_id")
     private Residuo residuo;
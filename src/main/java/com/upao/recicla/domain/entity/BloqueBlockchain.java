@@ -0,0 +1,24 @@
+package com.upao.recicla.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Hash de un bloque reciente ya verificado, para detectar reorganizaciones
+ * de la cadena comparando con el hash canónico actual
+ */
+@Table(name = "bloques_blockchain")
+@Entity(name = "BloqueBlockchain")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "numero")
+public class BloqueBlockchain {
+    @Id
+    private Long numero;
+    @Column(nullable = false, length = 66)
+    private String hash;
+    @Column(name = "hash_padre", nullable = false, length = 66)
+    private String hashPadre;
+}
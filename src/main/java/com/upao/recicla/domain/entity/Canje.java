@@ -22,6 +22,11 @@ public class Canje {
     private Double puntosCanjear;
     @Column(name = "blockchain_tx_hash", length = 66)
     private String blockchainTxHash;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "blockchain_tx_estado", length = 20)
+    private EstadoTransaccion blockchainTxEstado;
+    @Column(name = "blockchain_tx_nonce")
+    private Long blockchainTxNonce;
     @ManyToOne(fetch = FetchType.LAZY)
     private Usuario usuario;
     @ManyToOne(fetch = FetchType.LAZY)
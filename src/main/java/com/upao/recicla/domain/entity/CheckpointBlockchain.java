@@ -0,0 +1,26 @@
+package com.upao.recicla.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Último bloque procesado por cada proyección construida desde eventos del
+ * contrato
+ */
+@Table(name = "checkpoints_blockchain")
+@Entity(name = "CheckpointBlockchain")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "nombre")
+public class CheckpointBlockchain {
+    @Id
+    @Column(length = 50)
+    private String nombre;
+    @Column(name = "ultimo_bloque", nullable = false)
+    private Long ultimoBloque;
+    private LocalDateTime actualizado;
+}
@@ -0,0 +1,7 @@
+package com.upao.recicla.domain.entity;
+
+public enum EstadoEvidencia {
+    PENDIENTE,
+    SUBIDA,
+    FALLIDA
+}
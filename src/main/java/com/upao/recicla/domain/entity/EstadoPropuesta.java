@@ -0,0 +1,8 @@
+package com.upao.recicla.domain.entity;
+
+public enum EstadoPropuesta {
+    PROPUESTA,
+    APROBADA,
+    EJECUTADA,
+    RECHAZADA
+}
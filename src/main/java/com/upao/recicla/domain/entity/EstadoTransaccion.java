@@ -0,0 +1,8 @@
+package com.upao.recicla.domain.entity;
+
+public enum EstadoTransaccion {
+    EN_COLA,
+    PENDIENTE,
+    CONFIRMADA,
+    FALLIDA
+}
@@ -0,0 +1,31 @@
+package com.upao.recicla.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Contenido ya fijado en IPFS (Pinata) por el backend, por CID. Permite no
+ * volver a subir una evidencia idéntica.
+ *
+ * El CID es el que devolvió Pinata (puede ser CIDv1); cidLocal es el CIDv0
+ * calculado por el backend antes de subir, con el que se busca el duplicado.
+ */
+@Table(name = "pins_ipfs", indexes = @Index(name = "idx_pins_ipfs_cid_local", columnList = "cid_local"))
+@Entity(name = "PinIpfs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "cid")
+public class PinIpfs {
+    @Id
+    @Column(length = 100)
+    private String cid;
+    private Long tamano;
+    @Column(name = "fijado_en")
+    private LocalDateTime fijadoEn;
+    @Column(name = "cid_local", length = 100)
+    private String cidLocal;
+}
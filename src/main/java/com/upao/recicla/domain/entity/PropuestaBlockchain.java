@@ -0,0 +1,43 @@
+package com.upao.recicla.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Proyección local del estado de una propuesta de actividad en el contrato
+ * ReciclaToken. Se construye a partir de los eventos del contrato para no
+ * recorrer todas las actividades on-chain en cada consulta.
+ */
+@Table(name = "propuestas_blockchain")
+@Entity(name = "PropuestaBlockchain")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "actividadId")
+public class PropuestaBlockchain {
+    @Id
+    @Column(name = "actividad_id")
+    private Long actividadId;
+    @Column(name = "usuario_wallet", length = 42)
+    private String usuarioWallet;
+    @Column(name = "peso_kg")
+    private Integer pesoKg;
+    @Column(name = "tipo_material", length = 50)
+    private String tipoMaterial;
+    @Column(name = "evidencia_ipfs", length = 100)
+    private String evidenciaIpfs;
+    @Column(name = "tokens_calculados", precision = 38, scale = 18)
+    private BigDecimal tokensCalculados;
+    private Integer aprobaciones;
+    private Boolean ejecutada;
+    private Boolean rechazada;
+    @Column(name = "transaction_hash", length = 66)
+    private String transactionHash;
+    @Column(name = "block_number")
+    private Long blockNumber;
+    @Column(name = "ultimo_bloque")
+    private Long ultimoBloque;
+}
@@ -0,0 +1,6 @@
+package com.upao.recicla.domain.entity;
+
+public enum TipoMovimientoToken {
+    ACUNACION,
+    QUEMA
+}
@@ -0,0 +1,40 @@
+package com.upao.recicla.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Total diario de REC acuñados o quemados por material, construido a partir
+ * de los eventos TokensMinted y TokensBurned. Cada evento solo suma a su
+ * bucket; los eventos se ingieren una vez son finales, de modo que un bucket
+ * nunca se revierte.
+ */
+@Table(name = "tokens_buckets_diarios",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"fecha", "tipo", "material"}))
+@Entity(name = "TokenBucketDiario")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "id")
+public class TokenBucketDiario {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private LocalDate fecha;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private TipoMovimientoToken tipo;
+    @Column(nullable = false, length = 50)
+    private String material;
+    @Column(nullable = false, precision = 38, scale = 18)
+    private BigDecimal cantidad;
+    @Column(nullable = false)
+    private Long eventos;
+    @Column(name = "ultimo_bloque")
+    private Long ultimoBloque;
+}
@@ -49,6 +49,13 @@ public class Usuario implements UserDetails {
     @Pattern(regexp = "^0x[a-fA-F0-9]{40}$", message = "Wallet address inválida")
     private String walletAddress;
     @Enumerated(EnumType.STRING)
+    @Column(name = "whitelist_estado", length = 20)
+    private EstadoTransaccion whitelistEstado;
+    @Column(name = "whitelist_tx_hash", length = 66)
+    private String whitelistTxHash;
+    @Column(name = "whitelist_tx_nonce")
+    private Long whitelistTxNonce;
+    @Enumerated(EnumType.STRING)
     private Rol rol;
     @Enumerated(EnumType.STRING)
     private NivelUsuario nivel;
@@ -1,17 +1,24 @@
 package com.upao.recicla.domain.service;
 
 import com.upao.recicla.blockchain.dto.TransactionResult;
+import com.upao.recicla.blockchain.service.BlockchainCircuitBreaker;
 import com.upao.recicla.blockchain.service.BlockchainService;
-import com.upao.recicla.blockchain.service.IPFSService;
+import com.upao.recicla.blockchain.service.NonceManagedTransactionManager.RegistroEnvio;
+import com.upao.recicla.blockchain.service.RateMaterialCache;
 import com.upao.recicla.domain.entity.Actividad;
+import com.upao.recicla.domain.entity.EstadoEvidencia;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
 import com.upao.recicla.domain.entity.Residuo;
 import com.upao.recicla.domain.entity.Usuario;
 import com.upao.recicla.infra.email.QrCodeGenerator;
+import com.upao.recicla.infra.exception.BlockchainNoDisponibleException;
+import com.upao.recicla.infra.imagen.ImagenEvidenciaProcessor;
 import com.upao.recicla.infra.repository.ActividadRepository;
 import com.upao.recicla.infra.repository.ResiduoRepository;
 import com.upao.recicla.infra.repository.UsuarioRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
@@ -21,6 +28,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,7 +50,16 @@ public class ActividadService {
     private BlockchainService blockchainService;
 
     @Autowired(required = false)
-    private IPFSService ipfsService;
+    private BlockchainCircuitBreaker circuitBreaker;
+
+    @Autowired(required = false)
+    private RateMaterialCache rateMaterialCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ImagenEvidenciaProcessor imagenProcessor;
 
     public ActividadService(ActividadRepository actividadRepository,
             ResiduoRepository residuoRepository,
@@ -90,56 +109,160 @@ public class ActividadService {
 
         double puntosGanados = actividad.getCantidad() * residuo.getPuntos();
 
+        boolean evidenciaPendiente = false;
         if (blockchainService != null && usuario.getWalletAddress() != null) {
-            try {
-                log.info("📝 Proponiendo actividad en blockchain para {}: {}kg de {}",
-                        usuario.getUsername(), actividad.getCantidad(), residuo.getNombre());
-
-                String evidenciaIPFS = "QmPendiente";
-
-                // Subir imagen a IPFS si está disponible
-                if (ipfsService != null && imagen != null && !imagen.isEmpty()) {
-                    try {
-                        String metadata = String.format(
-                                "{\"usuario\":\"%s\",\"material\":\"%s\",\"peso\":%d,\"fecha\":\"%s\"}",
-                                usuario.getUsername(),
-                                residuo.getNombre(),
-                                actividad.getCantidad().intValue(),
-                                java.time.LocalDateTime.now().toString());
-
-                        evidenciaIPFS = ipfsService.uploadEvidencia(imagen, metadata);
-                        log.info("📎 Evidencia subida a IPFS: {}", evidenciaIPFS);
-                    } catch (Exception ipfsError) {
-                        log.error("❌ Error subiendo evidencia a IPFS: {}", ipfsError.getMessage());
-                    }
-                }
-
-                TransactionResult result = blockchainService.proponerActividad(
-                        usuario.getWalletAddress(),
-                        actividad.getCantidad().intValue(),
-                        mapearTipoMaterial(residuo.getNombre()),
-                        evidenciaIPFS);
-
-                if (result.isSuccess()) {
-                    actividad.setBlockchainTxHash(result.getTransactionHash());
-                    log.info("✅ Actividad propuesta en blockchain. TX: {} - Esperando validación ONG",
-                            result.getTransactionHash());
-                } else {
-                    log.warn("⚠️ No se pudo proponer actividad en blockchain: {}", result.getErrorMessage());
-                }
-            } catch (Exception e) {
-                log.error("❌ Error proponiendo actividad en blockchain", e);
-            }
+            log.info("📝 Registrando actividad en blockchain para {}: {}kg de {}",
+                    usuario.getUsername(), actividad.getCantidad(), residuo.getNombre());
+            evidenciaPendiente = prepararPropuesta(actividad, imagen);
         } else {
             log.info("ℹ️ Blockchain deshabilitado o usuario sin wallet");
         }
 
+        guardarImagenLocal(actividad, imagen);
         actualizarPuntosUsuario(usuario.getId(), puntosGanados);
         actividadRepository.save(actividad);
+        if (evidenciaPendiente) {
+            eventPublisher.publishEvent(new EvidenciaPendienteEvent(actividad.getId()));
+        }
 
         return ResponseEntity.ok("Actividad registrada con éxito. Puntos ganados: " + puntosGanados + ".");
     }
 
+    /**
+     * Con imagen, la evidencia queda PENDIENTE para {@link EvidenciaUploadPipeline},
+     * que la sube a IPFS fuera de la petición y propone la actividad con el CID.
+     * Sin imagen la propuesta (evidencia "QmPendiente") queda EN_COLA para
+     * {@link ReintentoBlockchainService}: la petición nunca espera a blockchain.
+     *
+     * @return true si la evidencia quedó pendiente de subida
+     */
+    private boolean prepararPropuesta(Actividad actividad, MultipartFile imagen) {
+        if (imagen != null && !imagen.isEmpty()) {
+            actividad.setEvidenciaEstado(EstadoEvidencia.PENDIENTE);
+            actividad.setEvidenciaIntentos(0);
+            return true;
+        }
+
+        actividad.setEvidenciaIpfs("QmPendiente");
+        actividad.setBlockchainTxEstado(EstadoTransaccion.EN_COLA);
+        return false;
+    }
+
+    /**
+     * Propone la actividad en blockchain a través del circuit breaker.
+     * Si blockchain no está disponible (circuito abierto, sin cupo o fallo de
+     * red) la actividad queda EN_COLA para la cola de reintentos; la actividad
+     * debe tener usuario (con wallet), residuo y evidencia asignados.
+     *
+     * El hash y el nonce de la transacción se guardan en la actividad antes de
+     * difundirla; si ya tiene un envío registrado solo se reenvía cuando consta
+     * que esa transacción no existe.
+     */
+    public void proponerEnBlockchain(Actividad actividad) {
+        if (actividad.getBlockchainTxHash() != null && !envioPrevioAusente(actividad)) {
+            return;
+        }
+
+        String wallet = actividad.getUsuario().getWalletAddress();
+        Integer pesoKg = actividad.getCantidad().intValue();
+        String tipoMaterial = mapearTipoMaterial(actividad.getResiduo().getNombre());
+        String evidenciaIPFS = actividad.getEvidenciaIpfs();
+
+        // Validación local con la réplica de rates: evita enviar una propuesta que revertiría.
+        // Un material que la réplica no conoce se confirma contra el contrato antes de descartarlo
+        if (rateMaterialCache != null && rateMaterialCache.isCargado()) {
+            Optional<BigDecimal> tokens;
+            try {
+                tokens = rateMaterialCache.calcularTokensConfirmando(pesoKg, tipoMaterial);
+            } catch (Exception e) {
+                log.warn("⏸️ No se pudo confirmar el rate de '{}', propuesta en cola para reintento: {}",
+                        tipoMaterial, e.getMessage());
+                actividad.setBlockchainTxEstado(EstadoTransaccion.EN_COLA);
+                return;
+            }
+            if (tokens.isEmpty()) {
+                log.warn("⚠️ Propuesta no enviada: material '{}' sin rate on-chain o peso {}kg no válido",
+                        tipoMaterial, pesoKg);
+                actividad.setBlockchainTxEstado(EstadoTransaccion.FALLIDA);
+                return;
+            }
+            log.info("🪙 Tokens estimados para la propuesta: {} REC", tokens.get());
+        }
+
+        RegistroEnvio registro = (hash, nonce) -> {
+            actividad.setBlockchainTxHash(hash);
+            actividad.setBlockchainTxNonce(nonce.longValue());
+            // Fuera de la petición (cola de reintentos, evidencias) se persiste ya
+            if (actividad.getId() != null) {
+                actividadRepository.save(actividad);
+            }
+        };
+
+        TransactionResult result;
+        try {
+            result = circuitBreaker != null
+                    ? circuitBreaker.ejecutar(() -> blockchainService.proponerActividad(wallet, pesoKg, tipoMaterial, evidenciaIPFS, registro))
+                    : blockchainService.proponerActividad(wallet, pesoKg, tipoMaterial, evidenciaIPFS, registro);
+        } catch (BlockchainNoDisponibleException e) {
+            log.warn("⏸️ {} - propuesta en cola para reintento", e.getMessage());
+            actividad.setBlockchainTxEstado(EstadoTransaccion.EN_COLA);
+            return;
+        }
+
+        if (result.isSuccess()) {
+            actividad.setBlockchainTxHash(result.getTransactionHash());
+            actividad.setBlockchainTxEstado(
+                    result.isPending() ? EstadoTransaccion.PENDIENTE : EstadoTransaccion.CONFIRMADA);
+            log.info("✅ Actividad propuesta en blockchain. TX: {} - Esperando validación de 2 ONGs",
+                    result.getTransactionHash());
+        } else if (BlockchainCircuitBreaker.esFalloTransitorio(result)) {
+            log.warn("⏸️ No se pudo proponer actividad en blockchain, en cola para reintento: {}",
+                    result.getErrorMessage());
+            actividad.setBlockchainTxEstado(EstadoTransaccion.EN_COLA);
+        } else {
+            log.warn("⚠️ No se pudo proponer actividad en blockchain: {}", result.getErrorMessage());
+            actividad.setBlockchainTxEstado(EstadoTransaccion.FALLIDA);
+        }
+    }
+
+    /**
+     * Reconcilia un envío anterior de la propuesta (hash y nonce registrados)
+     *
+     * @return true si consta que no existe y se puede reenviar
+     */
+    private boolean envioPrevioAusente(Actividad actividad) {
+        BlockchainService.EnvioPrevio envio;
+        try {
+            envio = blockchainService.consultarEnvioPrevio(
+                    actividad.getBlockchainTxHash(), actividad.getBlockchainTxNonce());
+        } catch (Exception e) {
+            log.warn("⏸️ No se pudo comprobar el envío previo de la actividad #{}: {}",
+                    actividad.getId(), e.getMessage());
+            actividad.setBlockchainTxEstado(EstadoTransaccion.EN_COLA);
+            return false;
+        }
+
+        switch (envio) {
+            case PRESENTE -> {
+                log.info("🔎 La propuesta de la actividad #{} ya está en la red: {}",
+                        actividad.getId(), actividad.getBlockchainTxHash());
+                actividad.setBlockchainTxEstado(EstadoTransaccion.PENDIENTE);
+                return false;
+            }
+            case INDETERMINADO -> {
+                actividad.setBlockchainTxEstado(EstadoTransaccion.EN_COLA);
+                return false;
+            }
+            default -> {
+                log.info("↩️ La propuesta de la actividad #{} no llegó a la red ({}), se reenvía",
+                        actividad.getId(), actividad.getBlockchainTxHash());
+                actividad.setBlockchainTxHash(null);
+                actividad.setBlockchainTxNonce(null);
+                return true;
+            }
+        }
+    }
+
     private String mapearTipoMaterial(String nombreResiduo) {
         String nombre = nombreResiduo.toLowerCase();
         if (nombre.contains("plastico") || nombre.contains("plástico"))
@@ -157,6 +280,22 @@ public class ActividadService {
         return "plastico";
     }
 
+    /**
+     * Guarda la imagen normalizada (dimensión máxima, JPEG sin metadatos) en
+     * Base64 en la actividad; es también la copia de la que se sube la
+     * evidencia a IPFS
+     */
+    private void guardarImagenLocal(Actividad actividad, MultipartFile imagen) {
+        if (imagen == null || imagen.isEmpty()) {
+            return;
+        }
+        try {
+            actividad.setImagen(imagenProcessor.normalizarBase64(imagen));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error leyendo la imagen de la actividad", e);
+        }
+    }
+
     private void actualizarPuntosUsuario(Long idUsuario, double puntos) {
         Usuario usuario = usuarioRepository.findById(idUsuario).get();
         usuario.setPuntos(usuario.getPuntos() + puntos);
@@ -186,53 +325,22 @@ public class ActividadService {
 
         double puntosGanados = actividad.getCantidad() * residuo.getPuntos();
 
+        boolean evidenciaPendiente = false;
         if (blockchainService != null && estudiante.getWalletAddress() != null) {
-            try {
-                log.info("📝 Centro de Acopio proponiendo actividad para {}: {}kg de {}",
-                        estudiante.getUsername(), actividad.getCantidad(), residuo.getNombre());
-                log.info("🔑 Wallet del estudiante: {}", estudiante.getWalletAddress());
-
-                String evidenciaIPFS = "QmPendiente";
-
-                // Subir imagen a IPFS si está disponible
-                if (ipfsService != null && imagen != null && !imagen.isEmpty()) {
-                    try {
-                        String metadata = String.format(
-                                "{\"usuario\":\"%s\",\"material\":\"%s\",\"peso\":%.2f,\"fecha\":\"%s\",\"registradoPor\":\"Centro de Acopio\"}",
-                                estudiante.getUsername(),
-                                residuo.getNombre(),
-                                actividad.getCantidad(),
-                                java.time.LocalDateTime.now().toString());
-
-                        evidenciaIPFS = ipfsService.uploadEvidencia(imagen, metadata);
-                        log.info("📎 Evidencia subida a IPFS: {}", evidenciaIPFS);
-                    } catch (Exception ipfsError) {
-                        log.error("❌ Error subiendo evidencia a IPFS: {}", ipfsError.getMessage());
-                    }
-                }
-
-                TransactionResult result = blockchainService.proponerActividad(
-                        estudiante.getWalletAddress(),
-                        actividad.getCantidad().intValue(),
-                        mapearTipoMaterial(residuo.getNombre()),
-                        evidenciaIPFS);
-
-                if (result.isSuccess()) {
-                    actividad.setBlockchainTxHash(result.getTransactionHash());
-                    log.info("✅ Actividad propuesta en blockchain. TX: {} - Esperando validación de 2 ONGs",
-                            result.getTransactionHash());
-                } else {
-                    log.warn("⚠️ No se pudo proponer actividad en blockchain: {}", result.getErrorMessage());
-                }
-            } catch (Exception e) {
-                log.error("❌ Error proponiendo actividad en blockchain", e);
-            }
+            log.info("📝 Centro de Acopio registrando actividad en blockchain para {}: {}kg de {}",
+                    estudiante.getUsername(), actividad.getCantidad(), residuo.getNombre());
+            log.info("🔑 Wallet del estudiante: {}", estudiante.getWalletAddress());
+            evidenciaPendiente = prepararPropuesta(actividad, imagen);
         } else {
             log.info("ℹ️ Blockchain deshabilitado o estudiante sin wallet");
         }
 
+        guardarImagenLocal(actividad, imagen);
         actualizarPuntosUsuario(estudiante.getId(), puntosGanados);
         actividadRepository.save(actividad);
+        if (evidenciaPendiente) {
+            eventPublisher.publishEvent(new EvidenciaPendienteEvent(actividad.getId()));
+        }
 
         return ResponseEntity
                 .ok("Actividad registrada para " + estudiante.getUsername() + ". Esperando validación ONG.");
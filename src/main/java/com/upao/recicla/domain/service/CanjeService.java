@@ -1,8 +1,8 @@
 package com.upao.recicla.domain.service;
 
-import com.upao.recicla.blockchain.dto.TransactionResult;
-import com.upao.recicla.blockchain.service.BlockchainService;
+import com.upao.recicla.blockchain.service.QuemaCanjesPipeline;
 import com.upao.recicla.domain.entity.Canje;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
 import com.upao.recicla.domain.entity.Recompensa;
 import com.upao.recicla.domain.entity.Usuario;
 import com.upao.recicla.infra.email.EmailService;
@@ -15,8 +15,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Service
@@ -36,7 +37,7 @@ public class CanjeService {
     private EmailService emailService;
 
     @Autowired(required = false)
-    private BlockchainService blockchainService;
+    private QuemaCanjesPipeline quemaPipeline;
 
     public CanjeService(CanjeRepository canjeRepository,
                         UsuarioRepository usuarioRepository,
@@ -60,34 +61,17 @@ public class CanjeService {
                 throw new PuntosInsuficientesException("No tienes suficientes puntos para canjear esta recompensa");
             }
 
-            // quemar tokens en blockchain
-            String txHash = null;
-            if (blockchainService != null && usuario.getWalletAddress() != null) {
-                try {
-                    log.info("Quemando {} tokens en blockchain para {}",
-                            recompensa.getValor(), usuario.getUsername());
-
-                    String description = String.format("Canje: %s - %s",
-                            recompensa.getTitulo(),
-                            recompensa.getDescripcion()
-                    );
-
-                    TransactionResult result = blockchainService.burnTokensForRedemption(
-                            usuario.getWalletAddress(),
-                            BigDecimal.valueOf(recompensa.getValor()),
-                            description
-                    );
-
-                    if (result.isSuccess()) {
-                        txHash = result.getTransactionHash();
-                        log.info("Tokens quemados en blockchain. TX: {}", txHash);
-                    } else {
-                        log.warn("No se pudieron quemar tokens en blockchain: {}", result.getErrorMessage());
-                    }
-                } catch (Exception e) {
-                    log.error("Error quemando tokens en blockchain", e);
-                    // Continúa aunque falle blockchain
-                }
+            // Crear registro de canje
+            Canje canje = new Canje();
+            canje.setFecha(LocalDate.now());
+            canje.setPuntosCanjear(recompensa.getValor());
+            canje.setUsuario(usuario);
+            canje.setRecompensa(recompensa);
+
+            // La quema se envía tras el commit desde el pipeline (la tabla de canjes es la cola)
+            boolean quemar = quemaPipeline != null && usuario.getWalletAddress() != null;
+            if (quemar) {
+                canje.setBlockchainTxEstado(EstadoTransaccion.EN_COLA);
             } else {
                 log.info("Blockchain deshabilitado o usuario sin wallet");
             }
@@ -97,15 +81,10 @@ public class CanjeService {
             usuario.actualizarNivel();
             usuarioRepository.save(usuario);
 
-            // Crear registro de canje
-            Canje canje = new Canje();
-            canje.setFecha(LocalDate.now());
-            canje.setPuntosCanjear(recompensa.getValor());
-            canje.setBlockchainTxHash(txHash);  // ← NUEVO
-            canje.setUsuario(usuario);
-            canje.setRecompensa(recompensa);
-
             canjeRepository.save(canje);
+            if (quemar) {
+                encolarQuemaTrasCommit(canje.getId());
+            }
 
             // Enviar email
             emailService.enviarCorreoConPDF(usuario.getCorreo(), canje);
@@ -114,4 +93,17 @@ public class CanjeService {
             throw new RuntimeException(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private void encolarQuemaTrasCommit(Long canjeId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            quemaPipeline.encolar(canjeId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                quemaPipeline.encolar(canjeId);
+            }
+        });
+    }
+}
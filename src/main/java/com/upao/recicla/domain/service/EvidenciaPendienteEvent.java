@@ -0,0 +1,10 @@
+package com.upao.recicla.domain.service;
+
+/**
+ * Publicado al registrar una actividad cuya evidencia debe subirse a IPFS
+ * antes de proponerla en blockchain
+ *
+ * @param actividadId Actividad con evidencia PENDIENTE
+ */
+public record EvidenciaPendienteEvent(Long actividadId) {
+}
@@ -0,0 +1,215 @@
+package com.upao.recicla.domain.service;
+
+import com.upao.recicla.blockchain.service.IPFSService;
+import com.upao.recicla.domain.entity.Actividad;
+import com.upao.recicla.domain.entity.EstadoEvidencia;
+import com.upao.recicla.infra.imagen.ImagenBase64;
+import com.upao.recicla.infra.repository.ActividadRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subida asíncrona de evidencias a IPFS
+ *
+ * Al registrar una actividad su imagen queda guardada en la base de datos con
+ * evidencia PENDIENTE, de modo que la cola sobrevive a reinicios. Tras el
+ * commit un pool de workers sube la imagen a Pinata (en streaming desde el
+ * Base64 guardado), registra el CID en la actividad y solo entonces envía la
+ * propuesta on-chain.
+ *
+ * Los fallos se reintentan con backoff exponencial (evidenciaProximoIntento);
+ * un sondeo periódico recoge los reintentos vencidos y lo pendiente tras un
+ * reinicio. Agotados los intentos la evidencia queda FALLIDA y la actividad
+ * no se propone.
+ */
+@Service
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@Slf4j
+public class EvidenciaUploadPipeline {
+
+    private static final int MAX_POR_SONDEO = 50;
+
+    private final ActividadRepository actividadRepository;
+    private final ActividadService actividadService;
+    private final IPFSService ipfsService;
+    private final int maxIntentos;
+    private final long backoffMs;
+    private final long backoffMaximoMs;
+
+    private final ExecutorService workers;
+    // Actividades encoladas o en subida, para no procesar dos veces la misma
+    private final Set<Long> enCurso = ConcurrentHashMap.newKeySet();
+
+    public EvidenciaUploadPipeline(ActividadRepository actividadRepository,
+            ActividadService actividadService,
+            IPFSService ipfsService,
+            @Value("${ipfs.evidencias.hilos:4}") int hilos,
+            @Value("${ipfs.evidencias.max-intentos:8}") int maxIntentos,
+            @Value("${ipfs.evidencias.backoff-ms:10000}") long backoffMs,
+            @Value("${ipfs.evidencias.backoff-maximo-ms:3600000}") long backoffMaximoMs) {
+        this.actividadRepository = actividadRepository;
+        this.actividadService = actividadService;
+        this.ipfsService = ipfsService;
+        this.maxIntentos = maxIntentos;
+        this.backoffMs = backoffMs;
+        this.backoffMaximoMs = backoffMaximoMs;
+
+        AtomicInteger contador = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(hilos, runnable -> {
+            Thread thread = new Thread(runnable, "evidencias-ipfs-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * La actividad solo es visible para los workers una vez confirmada la
+     * transacción que la registró
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alRegistrarEvidencia(EvidenciaPendienteEvent evento) {
+        encolar(evento.actividadId());
+    }
+
+    /**
+     * Recoge reintentos vencidos, evidencias pendientes de antes de un reinicio
+     * y evidencias subidas cuya propuesta no llegó a enviarse
+     */
+    @Scheduled(fixedDelayString = "${ipfs.evidencias.intervalo-ms:30000}")
+    public void reanudarPendientes() {
+        try {
+            List<Long> ids = actividadRepository.findIdsEvidenciaListaParaSubir(
+                    EstadoEvidencia.PENDIENTE, LocalDateTime.now(), PageRequest.of(0, MAX_POR_SONDEO));
+            ids.forEach(this::encolar);
+            actividadRepository.findIdsEvidenciaSinProponer(EstadoEvidencia.SUBIDA, PageRequest.of(0, MAX_POR_SONDEO))
+                    .forEach(this::encolar);
+        } catch (Exception e) {
+            log.error("❌ Error consultando evidencias pendientes", e);
+        }
+    }
+
+    public void encolar(Long actividadId) {
+        if (!enCurso.add(actividadId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    procesar(actividadId);
+                } finally {
+                    enCurso.remove(actividadId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            enCurso.remove(actividadId);
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        // Lo pendiente sigue en la base de datos y se retoma al arrancar
+        workers.shutdownNow();
+    }
+
+    private void procesar(Long actividadId) {
+        Actividad actividad = actividadRepository.findWithUsuarioById(actividadId).orElse(null);
+        if (actividad == null) {
+            return;
+        }
+        if (actividad.getEvidenciaEstado() == EstadoEvidencia.SUBIDA && actividad.getBlockchainTxEstado() == null) {
+            proponer(actividad);
+            return;
+        }
+        if (actividad.getEvidenciaEstado() != EstadoEvidencia.PENDIENTE) {
+            return;
+        }
+        if (actividad.getEvidenciaProximoIntento() != null
+                && actividad.getEvidenciaProximoIntento().isAfter(LocalDateTime.now())) {
+            return;
+        }
+
+        String imagen = actividad.getImagen();
+        String contentType = ImagenBase64.tipoContenido(imagen);
+        String cid;
+        try {
+            cid = ipfsService.uploadEvidencia(
+                    "actividad-" + actividadId + (contentType != null && contentType.endsWith("png") ? ".png" : ".jpg"),
+                    contentType != null ? contentType : "application/octet-stream",
+                    ImagenBase64.tamanoDecodificado(imagen),
+                    () -> ImagenBase64.decodificar(imagen),
+                    metadata(actividad));
+        } catch (Exception e) {
+            registrarFallo(actividad, e);
+            return;
+        }
+
+        // El CID y SUBIDA se guardan antes de proponer: si el proceso se corta
+        // después, el sondeo no vuelve a subir ni a proponer la actividad
+        actividad.setEvidenciaIpfs(cid);
+        actividad.setEvidenciaEstado(EstadoEvidencia.SUBIDA);
+        actividad.setEvidenciaProximoIntento(null);
+        actividadRepository.save(actividad);
+        log.info("📎 Evidencia de la actividad #{} subida a IPFS: {}", actividadId, cid);
+
+        proponer(actividad);
+    }
+
+    /**
+     * Con el CID conocido ya se puede proponer (o dejar EN_COLA si blockchain
+     * no responde). El hash y el nonce de la propuesta se guardan antes de
+     * difundirla, así que reanudarla no la duplica.
+     */
+    private void proponer(Actividad actividad) {
+        try {
+            actividadService.proponerEnBlockchain(actividad);
+        } catch (Exception e) {
+            log.error("❌ Error proponiendo actividad #{} en blockchain", actividad.getId(), e);
+        }
+        actividadRepository.save(actividad);
+    }
+
+    private void registrarFallo(Actividad actividad, Exception e) {
+        int intentos = actividad.getEvidenciaIntentos() != null ? actividad.getEvidenciaIntentos() + 1 : 1;
+        actividad.setEvidenciaIntentos(intentos);
+
+        if (intentos >= maxIntentos) {
+            actividad.setEvidenciaEstado(EstadoEvidencia.FALLIDA);
+            actividad.setEvidenciaProximoIntento(null);
+            log.error("🚨 Evidencia de la actividad #{} no se pudo subir tras {} intentos: {}",
+                    actividad.getId(), intentos, e.getMessage());
+        } else {
+            long espera = Math.min(backoffMaximoMs, backoffMs << Math.min(intentos - 1, 20));
+            actividad.setEvidenciaProximoIntento(LocalDateTime.now().plusNanos(espera * 1_000_000));
+            log.warn("⚠️ Error subiendo evidencia de la actividad #{} (intento {}), reintento en {} s: {}",
+                    actividad.getId(), intentos, espera / 1000, e.getMessage());
+        }
+        actividadRepository.save(actividad);
+    }
+
+    private static String metadata(Actividad actividad) {
+        return String.format(
+                "{\"usuario\":\"%s\",\"material\":\"%s\",\"peso\":%.2f,\"fecha\":\"%s\",\"registradoPor\":\"%s\"}",
+                actividad.getUsuario().getUsername(),
+                actividad.getResiduo().getNombre(),
+                actividad.getCantidad(),
+                actividad.getFecha() != null ? actividad.getFecha().toString() : LocalDateTime.now().toString(),
+                actividad.getRegistradoPor() != null
+                        && !actividad.getRegistradoPor().getId().equals(actividad.getUsuario().getId())
+                                ? "Centro de Acopio" : "Usuario");
+    }
+}
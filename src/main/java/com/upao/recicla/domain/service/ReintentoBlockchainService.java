@@ -0,0 +1,82 @@
+package com.upao.recicla.domain.service;
+
+import com.upao.recicla.blockchain.service.BlockchainCircuitBreaker;
+import com.upao.recicla.blockchain.service.QuemaCanjesPipeline;
+import com.upao.recicla.domain.entity.Actividad;
+import com.upao.recicla.domain.entity.Canje;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
+import com.upao.recicla.infra.repository.ActividadRepository;
+import com.upao.recicla.infra.repository.CanjeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Cola de reintentos de operaciones blockchain diferidas (estado EN_COLA)
+ *
+ * Las propuestas de actividades sin imagen, y las que no se pudieron enviar
+ * porque el circuito estaba abierto o el nodo no respondía, se envían aquí,
+ * fuera de la ruta HTTP, solo cuando el circuit breaker permite llamadas. Las quemas de canjes
+ * en cola se devuelven a {@link QuemaCanjesPipeline}.
+ */
+@Service
+@ConditionalOnProperty(name = "blockchain.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class ReintentoBlockchainService {
+
+    private final ActividadRepository actividadRepository;
+    private final CanjeRepository canjeRepository;
+    private final ActividadService actividadService;
+    private final QuemaCanjesPipeline quemaPipeline;
+    private final BlockchainCircuitBreaker circuitBreaker;
+
+    @Scheduled(fixedDelayString = "${blockchain.reintentos.intervalo-ms:30000}")
+    public void reintentarEnCola() {
+        if (!circuitBreaker.permiteLlamadas()) {
+            return;
+        }
+
+        try {
+            if (reintentarActividades()) {
+                reintentarCanjes();
+            }
+        } catch (Exception e) {
+            log.error("❌ Error procesando la cola de reintentos blockchain", e);
+        }
+    }
+
+    /**
+     * @return false si blockchain sigue sin estar disponible
+     */
+    private boolean reintentarActividades() {
+        List<Actividad> actividades = actividadRepository
+                .findTop50WithUsuarioByBlockchainTxEstadoOrderByIdAsc(EstadoTransaccion.EN_COLA);
+        if (!actividades.isEmpty()) {
+            log.info("🔁 Reintentando {} propuestas en cola", actividades.size());
+        }
+
+        for (Actividad actividad : actividades) {
+            actividadService.proponerEnBlockchain(actividad);
+            actividadRepository.save(actividad);
+            if (actividad.getBlockchainTxEstado() == EstadoTransaccion.EN_COLA) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reintentarCanjes() {
+        List<Canje> canjes = canjeRepository
+                .findTop200ByBlockchainTxEstadoOrderByIdAsc(EstadoTransaccion.EN_COLA);
+        if (!canjes.isEmpty()) {
+            log.info("🔁 Reencolando {} quemas en cola", canjes.size());
+        }
+
+        canjes.forEach(canje -> quemaPipeline.encolar(canje.getId()));
+    }
+}
@@ -1,8 +1,8 @@
 package com.upao.recicla.domain.service;
 
-import com.upao.recicla.blockchain.dto.TransactionResult;
-import com.upao.recicla.blockchain.service.BlockchainService;
+import com.upao.recicla.blockchain.service.WhitelistBatcher;
 import com.upao.recicla.domain.dto.usuarioDto.DatosRegistroUsuarioConWallet;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
 import com.upao.recicla.domain.entity.NivelUsuario;
 import com.upao.recicla.domain.entity.Rol;
 import com.upao.recicla.domain.entity.Usuario;
@@ -20,6 +20,8 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Optional;
 
@@ -33,7 +35,7 @@ public class UsuarioService {
     private final AuthenticationManager authenticationManager;
 
     @Autowired(required = false)
-    private BlockchainService blockchainService;
+    private WhitelistBatcher whitelistBatcher;
 
     public TokenResponse login(LoginRequest request) {
         authenticationManager.authenticate(
@@ -77,30 +79,16 @@ public class UsuarioService {
                 .walletAddress(datos.walletAddress())  // Wallet del usuario
                 .rol(Rol.PARTICIPANTE)
                 .nivel(NivelUsuario.PLATA)
+                .whitelistEstado(whitelistBatcher != null ? EstadoTransaccion.PENDIENTE : null)
                 .build();
 
         usuarioRepository.save(user);
 
-        // Registrar en blockchain (backend paga gas)
-        if (blockchainService != null) {
-            try {
-                log.info("Registrando usuario en blockchain whitelist...");
-                TransactionResult result = blockchainService.registerUserOnChain(
-                        datos.walletAddress(),
-                        datos.dni()
-                );
-
-                if (result.isSuccess()) {
-                    log.info("Usuario registrado en blockchain. TX: {}", result.getTransactionHash());
-                } else {
-                    log.error("Error en blockchain: {}", result.getErrorMessage());
-                    // Decidir si falla todo o continúa
-                    throw new RuntimeException("Error registrando en blockchain: " + result.getErrorMessage());
-                }
-            } catch (Exception e) {
-                log.error("Error al registrar en blockchain", e);
-                throw new RuntimeException("Error al registrar en blockchain: " + e.getMessage());
-            }
+        // Registrar en blockchain (backend paga gas): se agrupa con otros registros
+        // en una sola transacción addMultipleToWhitelist una vez confirmado el alta
+        if (whitelistBatcher != null) {
+            log.info("Usuario encolado para registro en blockchain whitelist");
+            encolarWhitelistTrasCommit(user.getId());
         } else {
             log.warn("Blockchain deshabilitado");
         }
@@ -111,6 +99,19 @@ public class UsuarioService {
                 .build();
     }
 
+    private void encolarWhitelistTrasCommit(Long usuarioId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            whitelistBatcher.encolar(usuarioId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                whitelistBatcher.encolar(usuarioId);
+            }
+        });
+    }
+
     public Page<Usuario> getAllUsuarios(Pageable pageable) {
         return usuarioRepository.findAll(pageable);
     }
@@ -0,0 +1,7 @@
+package com.upao.recicla.infra.exception;
+
+public class BlockchainNoDisponibleException extends RuntimeException {
+    public BlockchainNoDisponibleException(String message) {
+        super(message);
+    }
+}
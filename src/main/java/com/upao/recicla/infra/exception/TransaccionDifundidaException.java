@@ -0,0 +1,19 @@
+package com.upao.recicla.infra.exception;
+
+/**
+ * El envío falló después de difundir la transacción firmada (timeout, recibo
+ * no generado...): puede acabar minada y no debe reenviarse con otro nonce
+ */
+public class TransaccionDifundidaException extends RuntimeException {
+
+    private final String transactionHash;
+
+    public TransaccionDifundidaException(String transactionHash, Throwable cause) {
+        super("Transacción " + transactionHash + " difundida sin confirmación: " + cause.getMessage(), cause);
+        this.transactionHash = transactionHash;
+    }
+
+    public String getTransactionHash() {
+        return transactionHash;
+    }
+}
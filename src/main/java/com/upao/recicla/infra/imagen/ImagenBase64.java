@@ -0,0 +1,131 @@
+package com.upao.recicla.infra.imagen;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+
+/**
+ * Codificación en Base64 de las imágenes subidas sin cargarlas completas en
+ * memoria
+ *
+ * Los bytes se codifican a medida que se leen (buffer pequeño) directamente
+ * sobre el texto final, de modo que la única copia completa es el String que
+ * se guarda en la entidad.
+ */
+public final class ImagenBase64 {
+
+    private static final int TAMANO_BUFFER = 8192;
+
+    private ImagenBase64() {
+    }
+
+    /**
+     * Lee la imagen una vez desde su InputStream y la devuelve en Base64
+     */
+    public static String codificar(MultipartFile imagen) throws IOException {
+        Codificador codificador = new Codificador(imagen.getSize());
+        try (InputStream in = imagen.getInputStream()) {
+            byte[] buffer = new byte[TAMANO_BUFFER];
+            int leidos;
+            while ((leidos = in.read(buffer)) != -1) {
+                codificador.write(buffer, 0, leidos);
+            }
+        }
+        return codificador.resultado();
+    }
+
+    /**
+     * InputStream con los bytes de la imagen decodificados a medida que se
+     * leen, sin copiar el texto Base64
+     */
+    public static InputStream decodificar(String base64) {
+        return Base64.getDecoder().wrap(new InputStream() {
+            private int posicion;
+
+            @Override
+            public int read() {
+                return posicion < base64.length() ? base64.charAt(posicion++) : -1;
+            }
+        });
+    }
+
+    /**
+     * Tamaño en bytes de la imagen codificada
+     */
+    public static long tamanoDecodificado(String base64) {
+        int relleno = base64.endsWith("==") ? 2 : base64.endsWith("=") ? 1 : 0;
+        return (long) base64.length() / 4 * 3 - relleno;
+    }
+
+    /**
+     * Tipo de la imagen según su firma (PNG o JPEG), o null si no se reconoce
+     */
+    public static String tipoContenido(String base64) {
+        if (base64.startsWith("iVBORw0KGgo")) {
+            return "image/png";
+        }
+        if (base64.startsWith("/9j/")) {
+            return "image/jpeg";
+        }
+        return null;
+    }
+
+    /**
+     * OutputStream que codifica en Base64 lo que recibe sobre un único
+     * StringBuilder dimensionado de antemano
+     */
+    private static final class Codificador extends OutputStream {
+
+        private final StringBuilder texto;
+        private final OutputStream base64;
+        private boolean cerrado;
+
+        private Codificador(long tamanoEsperado) {
+            // Tamaño exacto del resultado: 4 caracteres por cada 3 bytes
+            long capacidad = 4 * ((Math.max(tamanoEsperado, 0) + 2) / 3);
+            this.texto = new StringBuilder((int) Math.min(capacidad, Integer.MAX_VALUE - 8));
+            this.base64 = Base64.getEncoder().wrap(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    texto.append((char) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    for (int i = off; i < off + len; i++) {
+                        texto.append((char) b[i]);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            base64.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            base64.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!cerrado) {
+                cerrado = true;
+                base64.close();
+            }
+        }
+
+        /**
+         * Cierra la codificación (añade el relleno final) y devuelve el texto
+         */
+        private String resultado() throws IOException {
+            close();
+            return texto.toString();
+        }
+    }
+}
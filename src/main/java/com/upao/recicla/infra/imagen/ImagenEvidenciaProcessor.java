@@ -0,0 +1,475 @@
+package com.upao.recicla.infra.imagen;
+
+import com.upao.recicla.infra.exception.ValidacionDeIntegridad;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Normalización de las imágenes de evidencia antes de guardarlas
+ *
+ * Cada imagen se decodifica, se orienta según su EXIF, se limita a una
+ * dimensión máxima y se recodifica como JPEG con la calidad configurada y sin
+ * metadatos (EXIF, GPS, perfiles). Una foto de móvil de varios MB queda en
+ * unos cientos de KB, tanto en actividades.imagen como en IPFS.
+ *
+ * Las imágenes mucho mayores que el destino se decodifican con submuestreo,
+ * de modo que nunca se carga en memoria el bitmap a resolución completa. El
+ * trabajo se hace en un pool acotado con cola limitada: si está lleno la
+ * petición se rechaza con 503 en lugar de acumular bitmaps en el heap. Si una
+ * decodificación supera el timeout se aborta el ImageReader desde su propio
+ * listener de progreso (interrumpir el hilo no detiene ImageIO y el lector
+ * JPEG no admite abort() desde otro hilo), de modo que el hilo vuelve al pool.
+ */
+@Component
+@Slf4j
+public class ImagenEvidenciaProcessor {
+
+    private final int maxDimension;
+    private final float calidad;
+    private final long maxPixeles;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor workers;
+
+    public ImagenEvidenciaProcessor(@Value("${imagenes.max-dimension:1280}") int maxDimension,
+            @Value("${imagenes.calidad-jpeg:0.8}") float calidad,
+            @Value("${imagenes.max-megapixeles:50}") long maxMegapixeles,
+            @Value("${imagenes.hilos:2}") int hilos,
+            @Value("${imagenes.cola:16}") int cola,
+            @Value("${imagenes.timeout-ms:15000}") long timeoutMs) {
+        this.maxDimension = maxDimension;
+        this.calidad = calidad;
+        this.maxPixeles = maxMegapixeles * 1_000_000;
+        this.timeoutMs = timeoutMs;
+
+        AtomicInteger contador = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cola), runnable -> {
+                    Thread thread = new Thread(runnable, "imagenes-" + contador.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Normaliza la imagen subida y la devuelve en Base64 (JPEG). Si ImageIO no
+     * soporta la variante del formato (p. ej. JPEG CMYK) se guarda el original
+     * sin sus segmentos de metadatos.
+     *
+     * @throws ValidacionDeIntegridad si el archivo no es una imagen, o no se
+     *         puede decodificar y no es un JPEG
+     * @throws ResponseStatusException 503 si el pool de procesamiento está lleno
+     */
+    public String normalizarBase64(MultipartFile imagen) throws IOException {
+        long inicio = System.currentTimeMillis();
+        byte[] jpeg = ejecutar(new Normalizacion(imagen));
+        if (jpeg == null) {
+            return originalSinMetadatos(imagen);
+        }
+        log.debug("🖼️ Imagen normalizada: {} -> {} bytes en {} ms",
+                imagen.getSize(), jpeg.length, System.currentTimeMillis() - inicio);
+        return Base64.getEncoder().encodeToString(jpeg);
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        workers.shutdownNow();
+    }
+
+    private byte[] ejecutar(Normalizacion tarea) {
+        Future<byte[]> futuro;
+        try {
+            futuro = workers.submit(tarea);
+        } catch (RejectedExecutionException e) {
+            log.warn("⚠️ Cola de procesamiento de imágenes llena");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Servidor ocupado procesando imágenes, inténtalo de nuevo.");
+        }
+
+        try {
+            return futuro.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ValidacionDeIntegridad validacion) {
+                throw validacion;
+            }
+            log.warn("⚠️ No se pudo normalizar la imagen, se guarda la original sin metadatos: {}",
+                    e.getCause().getMessage());
+            return null;
+        } catch (TimeoutException e) {
+            tarea.abortar();
+            futuro.cancel(true);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "El procesamiento de la imagen tardó demasiado.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Procesamiento interrumpido.");
+        }
+    }
+
+    private byte[] normalizar(MultipartFile imagen, Normalizacion tarea) throws IOException {
+        int orientacion;
+        try (InputStream in = imagen.getInputStream()) {
+            orientacion = leerOrientacionExif(in);
+        } catch (IOException e) {
+            orientacion = 1;
+        }
+
+        BufferedImage decodificada;
+        try (InputStream in = imagen.getInputStream()) {
+            decodificada = decodificar(in, tarea);
+        }
+        if (tarea.abortada) {
+            throw new IOException("Decodificación abortada por timeout");
+        }
+
+        BufferedImage destino = redimensionar(orientar(decodificada, orientacion));
+        return codificarJpeg(destino);
+    }
+
+    /**
+     * Decodifica con el submuestreo entero más grande que no deje la imagen
+     * por debajo de la dimensión máxima
+     */
+    private BufferedImage decodificar(InputStream in, Normalizacion tarea) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = entrada != null ? ImageIO.getImageReaders(entrada) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new ValidacionDeIntegridad("El archivo no es una imagen válida.");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.addIIOReadProgressListener(tarea);
+                reader.setInput(entrada, true, true);
+                int ancho = reader.getWidth(0);
+                int alto = reader.getHeight(0);
+                if ((long) ancho * alto > maxPixeles) {
+                    throw new ValidacionDeIntegridad("La imagen excede la resolución máxima permitida.");
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int submuestreo = Math.max(1, Math.max(ancho, alto) / maxDimension);
+                if (submuestreo > 1) {
+                    param.setSourceSubsampling(submuestreo, submuestreo, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Original en Base64 sin los segmentos de metadatos de la cabecera JPEG,
+     * para cuando ImageIO no puede recodificarlo
+     */
+    private static String originalSinMetadatos(MultipartFile imagen) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream((int) Math.min(imagen.getSize(), Integer.MAX_VALUE - 8));
+        try (InputStream in = imagen.getInputStream()) {
+            if (!copiarSinMetadatos(in, salida)) {
+                throw new ValidacionDeIntegridad("Formato de imagen no soportado.");
+            }
+        } catch (EOFException e) {
+            throw new ValidacionDeIntegridad("La imagen está dañada.");
+        }
+        return Base64.getEncoder().encodeToString(salida.toByteArray());
+    }
+
+    /**
+     * Copia un JPEG omitiendo los segmentos APP1-APP13 y APP15 (EXIF, GPS,
+     * XMP, perfil ICC, IPTC) y los comentarios. Se conservan APP0 (JFIF) y
+     * APP14 (Adobe), necesarios para interpretar el color, y todo desde SOS.
+     *
+     * @return false si no es un JPEG
+     */
+    static boolean copiarSinMetadatos(InputStream in, OutputStream out) throws IOException {
+        DataInputStream datos = new DataInputStream(in);
+        if (datos.readUnsignedShort() != 0xFFD8) {
+            return false;
+        }
+        escribirMarcador(out, 0xFFD8);
+
+        while (true) {
+            int marcador = datos.readUnsignedShort();
+            if ((marcador & 0xFF00) != 0xFF00) {
+                throw new ValidacionDeIntegridad("La imagen está dañada.");
+            }
+            if (marcador == 0xFFDA || marcador == 0xFFD9) {
+                escribirMarcador(out, marcador);
+                datos.transferTo(out);
+                return true;
+            }
+            int longitud = datos.readUnsignedShort();
+            if (longitud < 2) {
+                throw new ValidacionDeIntegridad("La imagen está dañada.");
+            }
+            boolean metadatos = marcador == 0xFFFE
+                    || (marcador >= 0xFFE1 && marcador <= 0xFFEF && marcador != 0xFFEE);
+            if (metadatos) {
+                datos.skipNBytes(longitud - 2);
+                continue;
+            }
+            escribirMarcador(out, marcador);
+            escribirMarcador(out, longitud);
+            byte[] segmento = new byte[longitud - 2];
+            datos.readFully(segmento);
+            out.write(segmento);
+        }
+    }
+
+    private static void escribirMarcador(OutputStream out, int valor) throws IOException {
+        out.write(valor >> 8);
+        out.write(valor & 0xFF);
+    }
+
+    /**
+     * Escala al tamaño máximo y pasa a RGB (JPEG no admite transparencia: fondo blanco)
+     */
+    private BufferedImage redimensionar(BufferedImage origen) {
+        int ancho = origen.getWidth();
+        int alto = origen.getHeight();
+        double escala = Math.min(1.0, (double) maxDimension / Math.max(ancho, alto));
+        int nuevoAncho = Math.max(1, (int) Math.round(ancho * escala));
+        int nuevoAlto = Math.max(1, (int) Math.round(alto * escala));
+
+        BufferedImage destino = new BufferedImage(nuevoAncho, nuevoAlto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, nuevoAncho, nuevoAlto);
+            g.drawImage(origen, 0, 0, nuevoAncho, nuevoAlto, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    /**
+     * Aplica la rotación EXIF (3 = 180°, 6 = 90° horario, 8 = 90° antihorario)
+     * porque los metadatos se descartan al recodificar
+     */
+    private static BufferedImage orientar(BufferedImage origen, int orientacion) {
+        if (orientacion != 3 && orientacion != 6 && orientacion != 8) {
+            return origen;
+        }
+        int ancho = origen.getWidth();
+        int alto = origen.getHeight();
+        boolean gira90 = orientacion != 3;
+
+        AffineTransform transformacion = new AffineTransform();
+        switch (orientacion) {
+            case 3 -> {
+                transformacion.translate(ancho, alto);
+                transformacion.rotate(Math.PI);
+            }
+            case 6 -> {
+                transformacion.translate(alto, 0);
+                transformacion.rotate(Math.PI / 2);
+            }
+            default -> {
+                transformacion.translate(0, ancho);
+                transformacion.rotate(-Math.PI / 2);
+            }
+        }
+
+        BufferedImage destino = new BufferedImage(gira90 ? alto : ancho, gira90 ? ancho : alto,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, destino.getWidth(), destino.getHeight());
+            g.drawImage(origen, transformacion, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    /**
+     * JPEG sin metadatos con la calidad configurada
+     */
+    private byte[] codificarJpeg(BufferedImage imagen) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(salida)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(calidad);
+            writer.write(null, new IIOImage(imagen, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return salida.toByteArray();
+    }
+
+    /**
+     * Orientación EXIF (tag 0x0112) de un JPEG, o 1 si no hay o no es JPEG.
+     * Solo recorre los segmentos de cabecera hasta encontrar APP1 Exif.
+     */
+    static int leerOrientacionExif(InputStream in) throws IOException {
+        DataInputStream datos = new DataInputStream(in);
+        if (datos.readUnsignedShort() != 0xFFD8) {
+            return 1;
+        }
+
+        while (true) {
+            int marcador = datos.readUnsignedShort();
+            if ((marcador & 0xFF00) != 0xFF00 || marcador == 0xFFDA || marcador == 0xFFD9) {
+                return 1;
+            }
+            int longitud = datos.readUnsignedShort() - 2;
+            if (longitud < 0) {
+                return 1;
+            }
+            if (marcador != 0xFFE1) {
+                datos.skipNBytes(longitud);
+                continue;
+            }
+
+            byte[] segmento = new byte[longitud];
+            datos.readFully(segmento);
+            return orientacionDeApp1(segmento);
+        }
+    }
+
+    private static int orientacionDeApp1(byte[] segmento) {
+        // "Exif\0\0" + cabecera TIFF
+        if (segmento.length < 14 || segmento[0] != 'E' || segmento[1] != 'x' || segmento[2] != 'i' || segmento[3] != 'f') {
+            return 1;
+        }
+        int tiff = 6;
+        if (segmento[tiff] != segmento[tiff + 1] || (segmento[tiff] != 'I' && segmento[tiff] != 'M')) {
+            return 1;
+        }
+        boolean littleEndian = segmento[tiff] == 'I';
+        // Desplazamiento de 32 bits sin signo: uno negativo o fuera del segmento no es válido
+        long desplazamiento = leerEntero(segmento, tiff + 4, 4, littleEndian) & 0xFFFFFFFFL;
+        if (desplazamiento < 8 || tiff + desplazamiento + 2 > segmento.length) {
+            return 1;
+        }
+        int ifd = tiff + (int) desplazamiento;
+
+        int entradas = leerEntero(segmento, ifd, 2, littleEndian);
+        for (int i = 0; i < entradas; i++) {
+            int entrada = ifd + 2 + i * 12;
+            if (entrada + 12 > segmento.length) {
+                return 1;
+            }
+            if (leerEntero(segmento, entrada, 2, littleEndian) == 0x0112) {
+                return leerEntero(segmento, entrada + 8, 2, littleEndian);
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Normalización de una imagen. Escucha el progreso de la decodificación
+     * para abortar el ImageReader en su propio hilo cuando se marca como
+     * abortada por timeout.
+     */
+    private final class Normalizacion implements Callable<byte[]>, IIOReadProgressListener {
+        private final MultipartFile imagen;
+        private volatile boolean abortada;
+
+        private Normalizacion(MultipartFile imagen) {
+            this.imagen = imagen;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            return normalizar(imagen, this);
+        }
+
+        void abortar() {
+            abortada = true;
+        }
+
+        @Override
+        public void imageStarted(ImageReader source, int imageIndex) {
+            imageProgress(source, 0);
+        }
+
+        @Override
+        public void imageProgress(ImageReader source, float percentageDone) {
+            if (abortada) {
+                source.abort();
+            }
+        }
+
+        @Override
+        public void sequenceStarted(ImageReader source, int minIndex) {
+        }
+
+        @Override
+        public void sequenceComplete(ImageReader source) {
+        }
+
+        @Override
+        public void imageComplete(ImageReader source) {
+        }
+
+        @Override
+        public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {
+        }
+
+        @Override
+        public void thumbnailProgress(ImageReader source, float percentageDone) {
+        }
+
+        @Override
+        public void thumbnailComplete(ImageReader source) {
+        }
+
+        @Override
+        public void readAborted(ImageReader source) {
+        }
+    }
+
+    private static int leerEntero(byte[] bytes, int posicion, int longitud, boolean littleEndian) {
+        int valor = 0;
+        for (int i = 0; i < longitud; i++) {
+            int b = bytes[posicion + i] & 0xFF;
+            valor = littleEndian ? valor | (b << (8 * i)) : (valor << 8) | b;
+        }
+        return valor;
+    }
+}
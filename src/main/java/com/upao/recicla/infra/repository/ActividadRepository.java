@@ -1,13 +1,45 @@
 package com.upao.recicla.infra.repository;
 
 import com.upao.recicla.domain.entity.Actividad;
+import com.upao.recicla.domain.entity.EstadoEvidencia;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface ActividadRepository extends JpaRepository<Actividad, Long> {
     List<Actividad> findByUsuarioId(Long usuarioId);
 
     List<Actividad> findByRegistradoPorId(Long registradoPorId);
+
+    // Seguimiento de recibos: páginas por id (keyset) para recorrer todas las pendientes
+    List<Actividad> findTop200ByBlockchainTxEstadoAndIdGreaterThanOrderByIdAsc(EstadoTransaccion estado, Long id);
+
+    // Cola de reintentos: incluye usuario y residuo para proponer fuera de una transacción
+    @EntityGraph(attributePaths = {"usuario", "residuo"})
+    List<Actividad> findTop50WithUsuarioByBlockchainTxEstadoOrderByIdAsc(EstadoTransaccion estado);
+
+    List<Actividad> findByBlockchainTxHash(String blockchainTxHash);
+
+    // Transacciones aún no minadas, para reconstruir las en vuelo al arrancar
+    List<Actividad> findByBlockchainTxEstadoAndBlockchainTxNonceGreaterThanEqual(EstadoTransaccion estado, Long nonce);
+
+    // Cola de subida de evidencias: solo ids, para no cargar las imágenes de todo el lote
+    @Query("select a.id from Actividad a where a.evidenciaEstado = :estado"
+            + " and (a.evidenciaProximoIntento is null or a.evidenciaProximoIntento <= :ahora) order by a.id")
+    List<Long> findIdsEvidenciaListaParaSubir(EstadoEvidencia estado, LocalDateTime ahora, Pageable pagina);
+
+    // Evidencias ya subidas cuya propuesta no llegó a enviarse (proceso cortado entre ambos pasos)
+    @Query("select a.id from Actividad a where a.evidenciaEstado = :estado"
+            + " and a.blockchainTxEstado is null order by a.id")
+    List<Long> findIdsEvidenciaSinProponer(EstadoEvidencia estado, Pageable pagina);
+
+    @EntityGraph(attributePaths = {"usuario", "residuo"})
+    Optional<Actividad> findWithUsuarioById(Long id);
 }
@@ -0,0 +1,20 @@
+package com.upao.recicla.infra.repository;
+
+import com.upao.recicla.domain.entity.BloqueBlockchain;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface BloqueBlockchainRepository extends JpaRepository<BloqueBlockchain, Long> {
+    Optional<BloqueBlockchain> findTopByOrderByNumeroDesc();
+
+    List<BloqueBlockchain> findByNumeroLessThanEqualOrderByNumeroDesc(Long numero);
+
+    @Transactional
+    void deleteByNumeroGreaterThan(Long numero);
+
+    @Transactional
+    void deleteByNumeroLessThan(Long numero);
+}
@@ -1,7 +1,25 @@
 package com.upao.recicla.infra.repository;
 
 import com.upao.recicla.domain.entity.Canje;
+import com.upao.recicla.domain.entity.EstadoTransaccion;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface CanjeRepository extends JpaRepository<Canje, Long> {
-}
+    List<Canje> findTop200ByBlockchainTxEstadoOrderByIdAsc(EstadoTransaccion estado);
+
+    // Seguimiento de recibos: páginas por id (keyset) para recorrer todas las pendientes
+    List<Canje> findTop200ByBlockchainTxEstadoAndIdGreaterThanOrderByIdAsc(EstadoTransaccion estado, Long id);
+
+    List<Canje> findByBlockchainTxHash(String blockchainTxHash);
+
+    // Transacciones aún no minadas, para reconstruir las en vuelo al arrancar
+    List<Canje> findByBlockchainTxEstadoAndBlockchainTxNonceGreaterThanEqual(EstadoTransaccion estado, Long nonce);
+
+    // Pipeline de quemas: lote de canjes con usuario y recompensa para quemar fuera de una transacción
+    @EntityGraph(attributePaths = {"usuario", "recompensa"})
+    List<Canje> findAllWithUsuarioByIdInOrderByIdAsc(Collection<Long> ids);
+}
\ No newline at end of file
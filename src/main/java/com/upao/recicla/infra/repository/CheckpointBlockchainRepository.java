@@ -0,0 +1,7 @@
+package com.upao.recicla.infra.repository;
+
+import com.upao.recicla.domain.entity.CheckpointBlockchain;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CheckpointBlockchainRepository extends JpaRepository<CheckpointBlockchain, String> {
+}
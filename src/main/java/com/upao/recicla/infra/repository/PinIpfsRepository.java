@@ -0,0 +1,11 @@
+package com.upao.recicla.infra.repository;
+
+import com.upao.recicla.domain.entity.PinIpfs;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface PinIpfsRepository extends JpaRepository<PinIpfs, String> {
+    // Deduplicación por el CIDv0 calculado localmente antes de subir
+    Optional<PinIpfs> findFirstByCidLocal(String cidLocal);
+}
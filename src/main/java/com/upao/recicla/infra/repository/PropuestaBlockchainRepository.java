@@ -0,0 +1,13 @@
+package com.upao.recicla.infra.repository;
+
+import com.upao.recicla.domain.entity.PropuestaBlockchain;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface PropuestaBlockchainRepository extends JpaRepository<PropuestaBlockchain, Long> {
+    List<PropuestaBlockchain> findByEjecutadaFalseAndRechazadaFalseOrderByActividadIdAsc();
+
+    // Propuestas modificadas por bloques posteriores al indicado (reorganizaciones)
+    List<PropuestaBlockchain> findByUltimoBloqueGreaterThan(Long bloque);
+}
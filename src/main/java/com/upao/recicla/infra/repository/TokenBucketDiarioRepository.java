@@ -0,0 +1,17 @@
+package com.upao.recicla.infra.repository;
+
+import com.upao.recicla.domain.entity.TipoMovimientoToken;
+import com.upao.recicla.domain.entity.TokenBucketDiario;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface TokenBucketDiarioRepository extends JpaRepository<TokenBucketDiario, Long> {
+    Optional<TokenBucketDiario> findByFechaAndTipoAndMaterial(LocalDate fecha, TipoMovimientoToken tipo, String material);
+
+    List<TokenBucketDiario> findByFechaBetweenOrderByFechaAscMaterialAsc(LocalDate desde, LocalDate hasta);
+
+    List<TokenBucketDiario> findByFechaBetweenAndMaterialOrderByFechaAsc(LocalDate desde, LocalDate hasta, String material);
+}
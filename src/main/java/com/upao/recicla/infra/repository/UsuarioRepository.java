@@ -1,5 +1,6 @@
 package com.upao.recicla.infra.repository;
 
+import com.upao.recicla.domain.entity.EstadoTransaccion;
 import com.upao.recicla.domain.entity.Rol;
 import com.upao.recicla.domain.entity.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -21,4 +22,16 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
     // Buscar por rol
     List<Usuario> findByRol(Rol rol);
+
+    // Registros en whitelist aún no enviados (en cola)
+    List<Usuario> findByWhitelistEstadoAndWhitelistTxHashIsNull(EstadoTransaccion estado);
+
+    // Registros en whitelist enviados, esperando recibo (páginas por id)
+    List<Usuario> findTop200ByWhitelistEstadoAndWhitelistTxHashIsNotNullAndIdGreaterThanOrderByIdAsc(
+            EstadoTransaccion estado, Long id);
+
+    List<Usuario> findByWhitelistTxHash(String whitelistTxHash);
+
+    // Registros aún no minados, para reconstruir las transacciones en vuelo al arrancar
+    List<Usuario> findByWhitelistEstadoAndWhitelistTxNonceGreaterThanEqual(EstadoTransaccion estado, Long nonce);
 }
\ No newline at end of file
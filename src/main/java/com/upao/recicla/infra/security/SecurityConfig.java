@@ -1,5 +1,6 @@
 package com.upao.recicla.infra.security;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -44,6 +45,10 @@ public class SecurityConfig implements WebMvcConfigurer {
                 // Cross-site request forgery (CSRF)
                 return http.csrf(csrf -> csrf.disable())
                                 .authorizeHttpRequests(authRequest -> authRequest
+                                                // Despachos internos de respuestas ya autorizadas (SSE/async, errores):
+                                                // el filtro JWT no se ejecuta en ellos
+                                                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR)
+                                                .permitAll()
                                                 .requestMatchers(HttpMethod.POST, "/usuario/login").permitAll()
                                                 .requestMatchers(HttpMethod.POST, "/usuario/registrar").permitAll()
                                                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
@@ -0,0 +1,121 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.ActividadPropuesta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.generated.Uint8;
+import org.web3j.utils.Convert;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmark de la lectura de actividades(uint256): {@link ActividadCodec}
+ * frente al camino de web3j que reemplazó (Function + FunctionEncoder para la
+ * llamada y FunctionReturnDecoder para la respuesta)
+ *
+ * No lo ejecuta surefire. Para correrlo:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     com.upao.recicla.blockchain.service.ActividadCodecBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActividadCodecBenchmark {
+
+	private static final BigInteger ID = BigInteger.valueOf(7);
+
+	private String respuesta;
+
+	@Setup
+	public void preparar() {
+		respuesta = "0x" + FunctionEncoder.encodeConstructor(List.of(
+				new Uint256(ID),
+				new Address("0x5b38da6a701c568545dcfcb03fcb875f56beddc4"),
+				new Uint256(25),
+				new Utf8String("plastico"),
+				new Utf8String("QmYwAPJzv5CZsnA625s3Xf2nemtYgPpHdWEz79ojWnPbdG"),
+				new Uint256(new BigInteger("12500000000000000000")),
+				new Uint256(1_700_000_000L),
+				new Uint8(2),
+				new Bool(true),
+				new Bool(false),
+				new Address("0xab8483f64d9c6d1ecf9b849ae677dd3315835cb2")));
+	}
+
+	@Benchmark
+	public String llamadaCodec() {
+		return ActividadCodec.llamadaActividades(ID);
+	}
+
+	@Benchmark
+	public String llamadaWeb3j() {
+		return FunctionEncoder.encode(funcionActividades(ID));
+	}
+
+	@Benchmark
+	public ActividadPropuesta decodificarCodec() {
+		return ActividadCodec.decodificarActividades(ID.longValue(), respuesta);
+	}
+
+	@Benchmark
+	public ActividadPropuesta decodificarWeb3j() {
+		List<Type> result = FunctionReturnDecoder.decode(respuesta, funcionActividades(ID).getOutputParameters());
+		return ActividadPropuesta.builder()
+				.actividadId(ID.longValue())
+				.usuarioWallet(result.get(1).getValue().toString())
+				.pesoKg(((BigInteger) result.get(2).getValue()).intValue())
+				.tipoMaterial(result.get(3).getValue().toString())
+				.evidenciaIPFS(result.get(4).getValue().toString())
+				.tokensCalculados(Convert.fromWei(result.get(5).getValue().toString(), Convert.Unit.ETHER))
+				.aprobaciones(((BigInteger) result.get(7).getValue()).intValue())
+				.ejecutada((Boolean) result.get(8).getValue())
+				.rechazada((Boolean) result.get(9).getValue())
+				.build();
+	}
+
+	/**
+	 * Misma función que construía BlockchainService antes del codec
+	 */
+	private static Function funcionActividades(BigInteger id) {
+		return new Function("actividades", List.of(new Uint256(id)), Arrays.asList(
+				new TypeReference<Uint256>() {}, new TypeReference<Address>() {}, new TypeReference<Uint256>() {},
+				new TypeReference<Utf8String>() {}, new TypeReference<Utf8String>() {}, new TypeReference<Uint256>() {},
+				new TypeReference<Uint256>() {}, new TypeReference<Uint8>() {}, new TypeReference<Bool>() {},
+				new TypeReference<Bool>() {}, new TypeReference<Address>() {}));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(ActividadCodecBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
@@ -0,0 +1,127 @@
+package com.upao.recicla.blockchain.service;
+
+import com.upao.recicla.blockchain.dto.ActividadPropuesta;
+import org.junit.jupiter.api.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.generated.Uint8;
+import org.web3j.utils.Convert;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ActividadCodecTests {
+
+	private static final String USUARIO = "0x5b38da6a701c568545dcfcb03fcb875f56beddc4";
+	private static final String PROPUESTO_POR = "0xab8483f64d9c6d1ecf9b849ae677dd3315835cb2";
+	private static final BigInteger TOKENS_WEI = new BigInteger("12500000000000000000");
+
+	// Mismas salidas que ReciclaToken.actividades(uint256)
+	private static final List<TypeReference<?>> SALIDAS_ACTIVIDADES = Arrays.asList(
+			new TypeReference<Uint256>() {}, new TypeReference<Address>() {}, new TypeReference<Uint256>() {},
+			new TypeReference<Utf8String>() {}, new TypeReference<Utf8String>() {}, new TypeReference<Uint256>() {},
+			new TypeReference<Uint256>() {}, new TypeReference<Uint8>() {}, new TypeReference<Bool>() {},
+			new TypeReference<Bool>() {}, new TypeReference<Address>() {});
+
+	// Mismas salidas que ReciclaToken.getActividad(uint256)
+	private static final List<TypeReference<?>> SALIDAS_GET_ACTIVIDAD = SALIDAS_ACTIVIDADES.subList(1, 11);
+
+	@Test
+	void selectoresCoincidenConFunctionEncoder() {
+		BigInteger id = BigInteger.valueOf(42);
+		assertEquals(FunctionEncoder.encode(funcion("actividades", id)), ActividadCodec.llamadaActividades(id));
+		assertEquals(FunctionEncoder.encode(funcion("getActividad", id)), ActividadCodec.llamadaGetActividad(id));
+		assertEquals(FunctionEncoder.encode(new Function("actividadCounter", List.of(), List.of())),
+				ActividadCodec.llamadaContador());
+	}
+
+	@Test
+	void decodificaActividadesIgualQueElWrapper() {
+		String respuesta = "0x" + FunctionEncoder.encodeConstructor(valores(true, "Plástico PET", "QmYwAPJzv5CZsnA625s3Xf2nemtYgPpHdWEz79ojWnPbdG"));
+
+		List<Type> wrapper = FunctionReturnDecoder.decode(respuesta, convertir(SALIDAS_ACTIVIDADES));
+		ActividadPropuesta codec = ActividadCodec.decodificarActividades(7, respuesta);
+
+		assertEquals(7L, codec.getActividadId());
+		assertEquals(wrapper.get(0).getValue(), BigInteger.valueOf(7));
+		comparar(wrapper.subList(1, 11), codec);
+	}
+
+	@Test
+	void decodificaGetActividadIgualQueElWrapper() {
+		List<Type> valores = valores(false, "", "QmPendiente");
+		String respuesta = "0x" + FunctionEncoder.encodeConstructor(valores);
+
+		List<Type> wrapper = FunctionReturnDecoder.decode(respuesta, convertir(SALIDAS_GET_ACTIVIDAD));
+		ActividadPropuesta codec = ActividadCodec.decodificarGetActividad(7, respuesta);
+
+		comparar(wrapper, codec);
+	}
+
+	@Test
+	void respuestaVaciaDevuelveNull() {
+		assertNull(ActividadCodec.decodificarActividades(1, "0x"));
+		assertNull(ActividadCodec.decodificarGetActividad(1, null));
+		assertEquals(BigInteger.ZERO, ActividadCodec.decodificarContador("0x"));
+	}
+
+	@Test
+	void decodificaContador() {
+		String respuesta = "0x" + FunctionEncoder.encodeConstructor(List.of(new Uint256(1234)));
+		assertEquals(BigInteger.valueOf(1234), ActividadCodec.decodificarContador(respuesta));
+	}
+
+	/**
+	 * Tupla de getActividad; con conId se antepone el id como en actividades()
+	 */
+	private static List<Type> valores(boolean conId, String material, String evidencia) {
+		List<Type> valores = new ArrayList<>();
+		if (conId) {
+			valores.add(new Uint256(7));
+		}
+		valores.add(new Address(USUARIO));
+		valores.add(new Uint256(25));
+		valores.add(new Utf8String(material));
+		valores.add(new Utf8String(evidencia));
+		valores.add(new Uint256(TOKENS_WEI));
+		valores.add(new Uint256(1_700_000_000L));
+		valores.add(new Uint8(2));
+		valores.add(new Bool(true));
+		valores.add(new Bool(false));
+		valores.add(new Address(PROPUESTO_POR));
+		return valores;
+	}
+
+	private static void comparar(List<Type> wrapper, ActividadPropuesta codec) {
+		assertEquals(wrapper.get(0).getValue(), codec.getUsuarioWallet());
+		assertEquals(((BigInteger) wrapper.get(1).getValue()).intValue(), codec.getPesoKg());
+		assertEquals(wrapper.get(2).getValue(), codec.getTipoMaterial());
+		assertEquals(wrapper.get(3).getValue(), codec.getEvidenciaIPFS());
+		assertEquals(Convert.fromWei(wrapper.get(4).getValue().toString(), Convert.Unit.ETHER),
+				codec.getTokensCalculados());
+		assertEquals(((BigInteger) wrapper.get(6).getValue()).intValue(), codec.getAprobaciones());
+		assertEquals(wrapper.get(7).getValue(), codec.getEjecutada());
+		assertEquals(wrapper.get(8).getValue(), codec.getRechazada());
+	}
+
+	private static Function funcion(String nombre, BigInteger id) {
+		return new Function(nombre, List.of(new Uint256(id)), List.of());
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static List<TypeReference<Type>> convertir(List<TypeReference<?>> salidas) {
+		return (List) salidas;
+	}
+}
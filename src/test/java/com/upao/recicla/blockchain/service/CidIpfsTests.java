@@ -0,0 +1,121 @@
+package com.upao.recicla.blockchain.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CidIpfsTests {
+
+	// Mismos CIDs que devuelve "ipfs add" (kubo, opciones por defecto)
+	private static final String CID_VACIO = "QmbFMke1KXqnYyBBWxB74N4c5SBnJMVAiMNRcGu6x1AwQH";
+	private static final String CID_HELLO_WORLD = "Qmf412jQZiuVUtdgnB36FXFX7xg5V6KEbSJ4dpQuhkLyfD";
+	private static final String CID_HELLO_WORLD_SALTO = "QmT78zSuBmuS4z925WZfrqQ1qHaJ56DQaTfyMUF7F8ff5o";
+
+	// Tres bloques (dos de 256 KiB y uno de 1000 bytes) con el byte i = i % 256
+	private static final int TAMANO_VARIOS_BLOQUES = 2 * CidIpfs.TAMANO_BLOQUE + 1000;
+	private static final String CID_VARIOS_BLOQUES = "QmaHkMA6Sm8ipQrvGdsDQJeoYUtFFanyk28MVT6Y5Rbm52";
+
+	private static final String CID_V1_BASE32 = "bafybeigdyrzt5sfp7udm7hu76uh7y26nf3efuylqabf3oclgtqy55fbzdi";
+	private static final String CID_V1_BASE58 = "zdj7Wic6KcJAfWz1c9o4M6kq9Lwd5BfbxkVafnrojaaGiSFxM";
+
+	@Test
+	void archivoVacio() throws IOException {
+		assertEquals(CID_VACIO, CidIpfs.calcularCidV0(new ByteArrayInputStream(new byte[0])));
+	}
+
+	@Test
+	void helloWorld() throws IOException {
+		assertEquals(CID_HELLO_WORLD, CidIpfs.calcularCidV0(texto("hello world")));
+		assertEquals(CID_HELLO_WORLD_SALTO, CidIpfs.calcularCidV0(texto("hello world\n")));
+	}
+
+	@Test
+	void variosBloques() throws IOException {
+		assertEquals(CID_VARIOS_BLOQUES, CidIpfs.calcularCidV0(secuencia(TAMANO_VARIOS_BLOQUES)));
+	}
+
+	@Test
+	void lecturasParcialesNoCambianElCid() throws IOException {
+		InputStream entrada = secuencia(TAMANO_VARIOS_BLOQUES);
+		InputStream aTrozos = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				return entrada.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return entrada.read(b, off, Math.min(len, 1000));
+			}
+		};
+		assertEquals(CID_VARIOS_BLOQUES, CidIpfs.calcularCidV0(aTrozos));
+	}
+
+	@Test
+	void masDeUnNivelDeDagNoSeCalcula() throws IOException {
+		long tamano = (long) (CidIpfs.MAX_ENLACES + 1) * CidIpfs.TAMANO_BLOQUE;
+		assertNull(CidIpfs.calcularCidV0(secuencia(tamano)));
+	}
+
+	@Test
+	void cidsValidos() {
+		assertTrue(CidIpfs.esValido(CID_VACIO));
+		assertTrue(CidIpfs.esValido(CID_HELLO_WORLD));
+		assertTrue(CidIpfs.esValido(CID_V1_BASE32));
+		assertTrue(CidIpfs.esValido(CID_V1_BASE58));
+	}
+
+	@Test
+	void cidsMalFormados() {
+		assertFalse(CidIpfs.esValido(null));
+		assertFalse(CidIpfs.esValido(""));
+		assertFalse(CidIpfs.esValido("Qm123"));
+		// Longitud de CIDv0 con caracteres fuera de base58 (0, O, I, l)
+		assertFalse(CidIpfs.esValido("Qm0OIl" + CID_VACIO.substring(6)));
+		// CIDv0 truncado
+		assertFalse(CidIpfs.esValido(CID_VACIO.substring(0, 45)));
+		// CIDv1 truncado: la longitud del digest no coincide
+		assertFalse(CidIpfs.esValido(CID_V1_BASE32.substring(0, CID_V1_BASE32.length() - 4)));
+		// Multibase no soportada
+		assertFalse(CidIpfs.esValido("f01701220" + "00".repeat(32)));
+		assertFalse(CidIpfs.esValido("ipfs://" + CID_VACIO));
+	}
+
+	private static InputStream texto(String contenido) {
+		return new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Contenido de prueba con el byte i = i % 256, generado sin reservarlo completo
+	 */
+	private static InputStream secuencia(long tamano) {
+		return new InputStream() {
+			private long posicion;
+
+			@Override
+			public int read() {
+				return posicion < tamano ? (int) (posicion++ % 256) : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (posicion >= tamano) {
+					return -1;
+				}
+				int leidos = (int) Math.min(len, tamano - posicion);
+				for (int i = 0; i < leidos; i++) {
+					b[off + i] = (byte) (posicion++ % 256);
+				}
+				return leidos;
+			}
+		};
+	}
+}